@@ -18,8 +18,9 @@ public class App extends SwingFrontEnd {
 	public Vec2f _currWindowSize;
 	
 	//Polymorphically calls game subclasses of Screen
-		//Keep updating in setScreen method
-	public Screen _currScreen;
+		//Keep updating in setScreen method; volatile, since a world
+		//stepping on its own thread can switch Screens
+	public volatile Screen _currScreen;
 
 	public App(String title, boolean fullscreen) {
 		super(title, fullscreen);
@@ -28,11 +29,14 @@ public class App extends SwingFrontEnd {
 	}
 	
 	/**
-	 * Updates _currScreen reference.
+	 * Updates _currScreen reference, after letting
+	 * the old Screen clean up (Screen.onExit).
 	 * 
 	 * @param screen
 	 */
 	public void setScreen(Screen screen) {
+		if (_currScreen != null) 
+			_currScreen.onExit();
 		_currScreen = screen;
 	}
 	
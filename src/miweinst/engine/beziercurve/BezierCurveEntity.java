@@ -40,7 +40,6 @@ public class BezierCurveEntity extends PhysicsEntity {
 /*		_path.addPoint(s.getLocation());
 		super.setShape(_path);*/
 		
-		super.setShape(_curve);
 		if (s instanceof PolygonShape) {
 			if (!_points[1]) {
 				_curve.ctrl_one = s.getLocation();
@@ -68,6 +67,8 @@ public class BezierCurveEntity extends PhysicsEntity {
 			}
 		}
 		_curve.updatePointArr();
+		//After points change, so world gets curve's new bounds
+		super.setShape(_curve);
 	}
 
 }
@@ -5,9 +5,14 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.geom.Path2D;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import miweinst.engine.collisiondetection.SeparatingAxis;
+import miweinst.engine.collisiondetection.ShapeCollisionInfo;
+import miweinst.engine.collisiondetection.StaticAABBTree;
+import miweinst.engine.gfx.Drawable;
 import miweinst.engine.shape.AARectShape;
 import miweinst.engine.shape.CircleShape;
 import miweinst.engine.shape.CompoundShape;
@@ -21,19 +26,102 @@ public class BezierPath extends Shape {
 	
 	//All endpoints/ctrl points in path
 	private ArrayList<Vec2f> _pts;	
-	private ArrayList<LineSegment> _segs;	
 	private ArrayList<CubicBezierCurve> _curves;
+	//Farthest a curve may be from the polyline standing in for it, in game units
+	private float _flatness;
+	public static final float FLATNESS = .05f;
+	//Pieces a curve is flattened into at most, however curvy
+	private static final int MAX_FLATTEN_PIECES = 1 << 10;
+	//t of a curve's ends, where C'' is largest
+	private static final float[] ENDS = {0, 1};
+	//Distance field settings, for circle tests in O(1) on static terrain; off
+	//while _fieldCell is 0. The field itself is baked by validate
+	private float _fieldCell;
+	private float _fieldBand;
+	//Whether circles about as close as the field is accurate are tested exactly
+	private boolean _fieldExact;
+	//Default band; should be past the biggest circle's radius, or those test exactly
+	public static final float FIELD_BAND = 10f;
+	//Gradient shorter than this is a ridge, with no good normal; test exactly
+	private static final float MIN_GRADIENT = .5f;
 //// Visualization
 	private static ArrayList<CircleShape> _drawDots;
 	private boolean _isFilled;
 	
 	private boolean _gravitationalBorder;
+	
+	//What collision tests read, built by validate and never changed after, so
+	//tests on narrowphase threads read it with no lock; null once stale
+	private volatile Baked _baked;
+	//Curves longer than this (around their control points) are split into 
+	//pieces about this long, so a box around a long curve isn't mostly empty
+	private static final float PIECE_LENGTH = 16f;
+	private static final int MAX_PIECES = 16;
+	//findClosestCurve runs on narrowphase threads too
+	private static final ThreadLocal<Nearby> NEARBY = new ThreadLocal<Nearby>() {
+		@Override
+		protected Nearby initialValue() {
+			return new Nearby();
+		}
+	};
+	private static class Nearby {
+		float[] bounds = new float[4];
+		ArrayList<Integer> curves = new ArrayList<Integer>();
+		float[] grad = new float[2];
+	}
+	/* Path as of one version: its curves; the tight bounds of their 
+	 * pieces, by index in curves, for findClosestCurve; path flattened 
+	 * to a polyline, [x0, y0, x1, y1, ...], and as a Path2D for drawing;
+	 * and its distance field, if on.*/
+	private static class Baked {
+		final ArrayList<CubicBezierCurve> curves;
+		final int version;
+		final StaticAABBTree<Integer> tree;
+		final float[] flat;
+		final int flatCount;
+		final Path2D flatPath;
+		final DistanceField field;
+		final boolean fieldExact;
+		Baked(ArrayList<CubicBezierCurve> curves, int version, StaticAABBTree<Integer> tree,
+				Polyline flat, DistanceField field, boolean fieldExact) {
+			this.curves = curves;
+			this.version = version;
+			this.tree = tree;
+			this.flat = flat.points;
+			this.flatCount = flat.count;
+			this.flatPath = flat.toPath();
+			this.field = field;
+			this.fieldExact = fieldExact;
+		}
+	}
+	/*Polyline being flattened into.*/
+	private static class Polyline {
+		float[] points = new float[16];
+		int count = 0;
+		void add(float x, float y) {
+			if (2*count + 2 > points.length) 
+				points = Arrays.copyOf(points, 2*points.length);
+			points[2*count] = x;
+			points[2*count+1] = y;
+			count++;
+		}
+		Path2D toPath() {
+			Path2D path = new Path2D.Float(Path2D.WIND_NON_ZERO, count);
+			for (int i=0; i<count; i++) {
+				if (i == 0) 
+					path.moveTo(points[0], points[1]);
+				else 
+					path.lineTo(points[2*i], points[2*i+1]);
+			}
+			return path;
+		}
+	}
 
 	public BezierPath() {
 		super(new Vec2f(0, 0), new Vec2f(0, 0));
 		_pts = new ArrayList<Vec2f>();
-		_segs = getDrawingSegments();
-		_curves = new ArrayList<CubicBezierCurve>();
+		_flatness = FLATNESS;
+		updateSegs();
 		_drawDots = new ArrayList<CircleShape>();		
 		
 		_isFilled = true;
@@ -41,8 +129,7 @@ public class BezierPath extends Shape {
 	public BezierPath(ArrayList<Vec2f> points) {
 		super(new Vec2f(0, 0), new Vec2f(0, 0));
 		_pts = points;
-		_segs = getDrawingSegments();
-		_curves = new ArrayList<CubicBezierCurve>();
+		_flatness = FLATNESS;
 		
 		_drawDots = new ArrayList<CircleShape>();
 		for (int i=0; i<points.size(); i++) {
@@ -92,9 +179,77 @@ public class BezierPath extends Shape {
 		_pts.add(pt);
 		updateSegs();
 	}
-	/*Must be called every time the Path points have been changed.*/
+	/*Must be called every time the Path points have been changed.
+	 * Makes a curve of every four points.*/
 	public void updateSegs() {
-		_segs = getDrawingSegments();
+		_curves = new ArrayList<CubicBezierCurve>();
+		for (int i=0; i<_pts.size() -3; i+= 3) 
+			_curves.add(new CubicBezierCurve(_pts.get(i), _pts.get(i+1), _pts.get(i+2), _pts.get(i+3)));
+		this.invalidateBounds();
+	}
+	
+	@Override
+	public void invalidateBounds() {
+		super.invalidateBounds();
+		_baked = null;
+	}
+	
+	/* Rebuilds what collision tests read, if path changed since: curves
+	 * replaced, or any of them moved. GameWorld calls it on every path
+	 * before each step's tests, which is what catches curves moved 
+	 * through getCurves; outside a world, call invalidateBounds on path
+	 * after moving them. Otherwise tests never check for changes.*/
+	public synchronized void validate() {
+		Baked baked = _baked;
+		int version = this.getVersion();
+		if (baked != null && baked.curves == _curves && baked.version == version) 
+			return;
+		DistanceField field = null;
+		if (_fieldCell > 0) {
+			//Flatter than field can tell apart, so sign is right near the path
+			Polyline fine = flatten(_curves, Math.min(_flatness, _fieldCell/16));
+			field = new DistanceField(fine.points, fine.count, _fieldCell, _fieldBand);
+		}
+		_baked = new Baked(_curves, version, buildCurveTree(_curves), 
+				flatten(_curves, _flatness), field, _fieldExact);
+	}
+	private Baked getBaked() {
+		Baked baked = _baked;
+		if (baked == null) {
+			this.validate();
+			baked = _baked;
+		}
+		return baked;
+	}
+	
+	public float getFlatness() {
+		return _flatness;
+	}
+	/*How far curves may stray from the polyline drawn for them.*/
+	public void setFlatness(float flatness) {
+		if (flatness <= 0) 
+			throw new IllegalArgumentException("Flatness must be positive");
+		_flatness = flatness;
+		_baked = null;
+	}
+	
+	/* Bakes a DistanceField of path, nodes cell apart, exact within band,
+	 * for circle tests to look up instead of solving for the closest 
+	 * point. Meant for static terrain: baked here, then again by validate
+	 * whenever the path changes. With exact, circles within a cell of
+	 * touching are still tested exactly. A cell of 0 turns it off.*/
+	public void setDistanceField(float cell, float band, boolean exact) {
+		if (cell < 0 || band <= 0) 
+			throw new IllegalArgumentException("Distance field cell can't be negative, band must be positive");
+		_fieldCell = cell;
+		_fieldBand = band;
+		_fieldExact = exact;
+		_baked = null;
+		this.validate();
+	}
+	/*Field as of last validate; null if off.*/
+	public DistanceField getDistanceField() {
+		return this.getBaked().field;
 	}
 	
 	/* Creates a curve between each knot, so returns 
@@ -173,62 +328,152 @@ public class BezierPath extends Shape {
 		return path;
 	}
 	
+	/*Union of bounds of every curve in path; empty if no curves.*/
+	@Override
+	protected void computeBounds(float[] bounds) {
+		bounds[0] = bounds[1] = Float.POSITIVE_INFINITY;
+		bounds[2] = bounds[3] = Float.NEGATIVE_INFINITY;
+		//Null while superclass constructor runs
+		if (_curves == null) 
+			return;
+		for (CubicBezierCurve c: _curves) {
+			bounds[0] = Math.min(bounds[0], c.getBoundsMinX());
+			bounds[1] = Math.min(bounds[1], c.getBoundsMinY());
+			bounds[2] = Math.max(bounds[2], c.getBoundsMaxX());
+			bounds[3] = Math.max(bounds[3], c.getBoundsMaxY());
+		}
+	}
+	
+	/*Path changes whenever any of its curves do.*/
+	@Override
+	public int getVersion() {
+		int version = super.getVersion();
+		if (_curves != null) {
+			for (CubicBezierCurve c: _curves) 
+				version += c.getVersion();
+		}
+		return version;
+	}
+	
+	/*Returns the CubicBezierCurves making up path, one per
+	 * four points. Rebuilt every time updateSegs is called.*/
+	public List<CubicBezierCurve> getCurves() {
+		return _curves;
+	}
+	
 	/*Return LineSegments for drawing.*/
 	public ArrayList<LineSegment> getDrawingSegments() {
-		float resolution = 100;
 		ArrayList<Vec2f> drawingPoints = new ArrayList<Vec2f>();
-		
-		_curves = new ArrayList<CubicBezierCurve>();
-		for (int i=0; i<_pts.size() -3; i+= 3) {
-			//Four points for curr curve in path
-			Vec2f p0 = _pts.get(i);
-			Vec2f p1 = _pts.get(i+1);
-			Vec2f p2 = _pts.get(i+2);
-			Vec2f p3 = _pts.get(i+3);
-		
-			if (i==0) {
-				drawingPoints.add(CubicBezierCurve.calculateBezierPoint(0, p0, p1, p2, p3));
-			}
-			for (int j=1; j<resolution; j++) {
-				float t = j/resolution;
-				drawingPoints.add(CubicBezierCurve.calculateBezierPoint(t, p0, p1, p2, p3));
-			}	
-			CubicBezierCurve curve = new CubicBezierCurve(p0, p1, p2, p3);
-			_curves.add(curve);
-		}		
+		Baked baked = this.getBaked();
+		for (int i=0; i<baked.flatCount; i++) 
+			drawingPoints.add(new Vec2f(baked.flat[2*i], baked.flat[2*i+1]));
 		return LineSegment.pointsToSegs(drawingPoints);
 	}
 	
+	/* Points of path flattened to a polyline, [x0, y0, x1, y1, ...], 
+	 * getFlatCount of them, each curve split only as far as it takes
+	 * to stay within flatness of it. As of last validate; don't modify.*/
+	public float[] getFlatPoints() {
+		return this.getBaked().flat;
+	}
+	public int getFlatCount() {
+		return this.getBaked().flatCount;
+	}
+	
+	/* Each curve is split evenly in t, into as few pieces as keep it
+	 * within flatness of its chords: a piece dt long strays at most 
+	 * dt^2/8*max|C''| from its chord, and C'' is linear in t, so largest
+	 * at an end. Points between come from the curve's batch evaluation;
+	 * ends are the curve's own, so curves meet and closed paths close.*/
+	private static Polyline flatten(List<CubicBezierCurve> curves, float flatness) {
+		Polyline out = new Polyline();
+		float[] dd = new float[4];
+		float[] ts = new float[0], xy = new float[0];
+		for (int i=0; i<curves.size(); i++) {
+			CubicBezierCurve c = curves.get(i);
+			if (i == 0) 
+				out.add(c.start.x, c.start.y);
+			c.findSecondDerivatives(ENDS, 2, dd);
+			float maxDD = (float) Math.sqrt(Math.max(dd[0]*dd[0] + dd[1]*dd[1], dd[2]*dd[2] + dd[3]*dd[3]));
+			int n = (int) Math.ceil(Math.sqrt(maxDD/(8*flatness)));
+			n = Math.max(1, Math.min(MAX_FLATTEN_PIECES, n));
+			if (ts.length < n-1) {
+				ts = new float[n-1];
+				xy = new float[2*(n-1)];
+			}
+			for (int k=1; k<n; k++) 
+				ts[k-1] = (float) k/n;
+			c.calculateBezierPoints(ts, n-1, xy);
+			for (int k=0; k<n-1; k++) 
+				out.add(xy[2*k], xy[2*k+1]);
+			out.add(c.end.x, c.end.y);
+		}
+		return out;
+	}
+	
 	/* Returns the curve in path that is closest to Shape s.
 	 * Compares distances to each curve in path. Optimized by
-	 * only comparing curves that s is nearby (Convex hull check). 
+	 * only comparing curves that s is nearby (bounds of s overlap
+	 * bounds of a piece of the curve, found in a tree of those). 
 	 * Returns null if no curves are nearby. Called in collision
 	 * methods below, solved bug where shapes would fall out or
 	 * slow down at knots between curves.*/
 	public CubicBezierCurve findClosestCurve(Shape s) {
+		Nearby nearby = NEARBY.get();
+		s.getBounds(nearby.bounds);
+		ArrayList<Integer> inBounds = nearby.curves;
+		inBounds.clear();
+		List<CubicBezierCurve> curves = this.queryCurves(nearby.bounds, inBounds);
+		if (inBounds.isEmpty()) 
+			return null;
+		//In path order, so ties (at knots) go to the earlier curve as always
+		Collections.sort(inBounds);
+		CubicBezierCurve curve = curves.get(inBounds.get(0));
+		//If in bounds of only one curve, return that curve
+		if (inBounds.get(inBounds.size()-1).equals(inBounds.get(0))) 
+			return curve;
 		float minDist = Float.POSITIVE_INFINITY;
-		CubicBezierCurve curve = null;
-		//If only collides with one convex hull, return that curve
-		ArrayList<CubicBezierCurve> inBounds = new ArrayList<CubicBezierCurve>();
-		for (CubicBezierCurve seg: _curves) {
-			if (seg.getWideBounds().collides(s)) {
-				inBounds.add(seg);
+		for (int i=0; i<inBounds.size(); i++) {
+			//Pieces of one curve come up together
+			if (i > 0 && inBounds.get(i).equals(inBounds.get(i-1))) 
+				continue;
+			CubicBezierCurve seg = curves.get(inBounds.get(i));
+			Vec2f point = seg.nearestPointOnCurve(s.getCentroid());
+			float dist = point.dist2(s.getCentroid());
+			if (dist < minDist) {
+				minDist = dist;
 				curve = seg;
 			}
 		}
-		//If in multiple convex hulls
-		if (inBounds.size() > 1) {
-			//for each curve with containing convex hull
-			for (CubicBezierCurve seg: inBounds) {
-				Vec2f point = seg.nearestPointOnCurve(s.getCentroid());
-				float dist = point.dist2(s.getCentroid());
-				if (dist < minDist) {
-					minDist = dist;
-					curve = seg;
-				}
+		return curve;
+	}
+	
+	/* Populates out with indices of curves with a piece whose bounds
+	 * overlap bounds. Returns the list of curves indexed.*/
+	private List<CubicBezierCurve> queryCurves(float[] bounds, List<Integer> out) {
+		Baked baked = this.getBaked();
+		baked.tree.queryRegion(bounds, out);
+		return baked.curves;
+	}
+	private static StaticAABBTree<Integer> buildCurveTree(List<CubicBezierCurve> curves) {
+		ArrayList<Integer> pieces = new ArrayList<Integer>();
+		float[] pieceBounds = new float[4*curves.size()];
+		float[] b = new float[4];
+		for (int i=0; i<curves.size(); i++) {
+			CubicBezierCurve curve = curves.get(i);
+			//Length of control polygon, never shorter than curve
+			float length = curve.start.dist(curve.ctrl_one) + curve.ctrl_one.dist(curve.ctrl_two) 
+					+ curve.ctrl_two.dist(curve.end);
+			int n = Math.max(1, Math.min(MAX_PIECES, (int) Math.ceil(length/PIECE_LENGTH)));
+			for (int k=0; k<n; k++) {
+				curve.getBounds(k/(float) n, (k+1)/(float) n, b);
+				if (4*pieces.size() + 4 > pieceBounds.length) 
+					pieceBounds = Arrays.copyOf(pieceBounds, 2*pieceBounds.length + 4);
+				System.arraycopy(b, 0, pieceBounds, 4*pieces.size(), 4);
+				pieces.add(i);
 			}
 		}
-		return curve;
+		return new StaticAABBTree<Integer>(pieces, pieceBounds);
 	}
 	
 	public static Path2D toPath(List<LineSegment> segs) {
@@ -250,7 +495,10 @@ public class BezierPath extends Shape {
 	}
 	
 	@Override
-	public boolean collides(Shape s) {	
+	public boolean collides(Shape s) {
+		//Circles look up the field, if baked
+		if (s instanceof CircleShape && this.getDistanceField() != null)
+			return this.collidesCircle((CircleShape) s);
 		CubicBezierCurve curve = this.findClosestCurve(s);
 		if (curve != null) {
 //			for (CubicBezierCurve curve: _curves) {
@@ -267,6 +515,34 @@ public class BezierPath extends Shape {
 	 * is closest to c. Avoids bugs at knots between curves.*/
 	@Override
 	public boolean collidesCircle(CircleShape c) {
+		Baked baked = this.getBaked();
+		DistanceField field = baked.field;
+		if (field != null) {
+			Nearby nearby = NEARBY.get();
+			Vec2f center = c.getCentroid();
+			float[] grad = nearby.grad;
+			float d = field.sample(center.x, center.y, grad);
+			float dist = Math.abs(d);
+			float r = c.getRadius();
+			float cell = field.getCell();
+			float mag = (float) Math.sqrt(grad[0]*grad[0] + grad[1]*grad[1]);
+			//Past band, or on a ridge, or close enough to need exact answer
+			boolean unknown = dist >= field.getBand() - cell && r >= dist - cell;
+			boolean noNormal = mag < MIN_GRADIENT && dist <= r;
+			boolean borderline = baked.fieldExact && Math.abs(dist - r) < cell;
+			if (!unknown && !noNormal && !borderline) {
+				this.setCollisionInfo(null);
+				c.setCollisionInfo(null);
+				if (dist > r) 
+					return false;
+				//Toward nearest point on path, out of which c is pushed
+				float scale = (d < 0 ? 1 : -1)*(r - dist)/mag;
+				Vec2f mtv = new Vec2f(scale*grad[0], scale*grad[1]);
+				this.setCollisionInfo(new ShapeCollisionInfo(this, c, mtv));
+				c.setCollisionInfo(new ShapeCollisionInfo(c, this, mtv.smult(-1)));
+				return true;
+			}
+		}
 		//Only collides with curve that is closest to c
 		CubicBezierCurve closestCurve = this.findClosestCurve(c);
 		//Null check
@@ -303,6 +579,8 @@ public class BezierPath extends Shape {
 	
 	@Override
 	public Vec2f poi(Shape s) {
+		if (s instanceof CircleShape && this.getDistanceField() != null) 
+			return this.poiCircle((CircleShape) s);
 		for (CubicBezierCurve curve: _curves) {
 			if (curve.poi(s) != null)
 				return curve.poi(s);
@@ -317,8 +595,18 @@ public class BezierPath extends Shape {
 		}
 		return null;
 	}
+	/*With a distance field, nearest point on path to c's center.*/
 	@Override
 	public Vec2f poiCircle(CircleShape c) {
+		DistanceField field = this.getDistanceField();
+		if (field != null) {
+			float[] grad = NEARBY.get().grad;
+			Vec2f center = c.getCentroid();
+			float d = field.sample(center.x, center.y, grad);
+			float mag = (float) Math.sqrt(grad[0]*grad[0] + grad[1]*grad[1]);
+			if (mag >= MIN_GRADIENT && Math.abs(d) < field.getBand() - field.getCell()) 
+				return new Vec2f(center.x - d*grad[0]/mag, center.y - d*grad[1]/mag);
+		}
 		for (CubicBezierCurve curve: _curves) {
 			if (curve.poiCircle(c) != null)
 				return curve.poi(c);
@@ -380,7 +668,7 @@ public class BezierPath extends Shape {
 		 * could break it up into _fillColor and _borderColor
 		 * if ever want it to be different colors b/w fill and border.*/
 		if (_isFilled) {
-			Path2D path = toPath(_segs);
+			Path2D path = this.getBaked().flatPath;
 			g.fill(path);
 ///////
 			/*For levels where we don't want black to signify 
@@ -400,4 +688,30 @@ public class BezierPath extends Shape {
 				dot.draw(g);
 			}*/			
 	}
+	/* What draw draws now. The baked polyline never changes once made,
+	 * so it's kept rather than copied; curves are copied.*/
+	@Override
+	public Drawable snapshot() {
+		final Color color = this.getColor();
+		final Path2D path = _isFilled ? this.getBaked().flatPath : null;
+		final boolean border = _gravitationalBorder;
+		final Drawable[] curves = new Drawable[_curves.size()];
+		for (int i=0; i<curves.length; i++) 
+			curves[i] = _curves.get(i).snapshot();
+		return new Drawable() {
+			public void draw(Graphics2D g) {
+				if (path != null) {
+					g.setColor(color);
+					g.fill(path);
+					if (border) {
+						g.setStroke(new BasicStroke(3));
+						g.setColor(Constants.GRAVITATIONAL_COL);
+						g.draw(path);
+					}
+				}
+				for (Drawable curve: curves) 
+					curve.draw(g);
+			}
+		};
+	}
 }
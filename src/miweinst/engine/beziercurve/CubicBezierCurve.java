@@ -5,9 +5,11 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.geom.CubicCurve2D;
 import java.util.ArrayList;
-import java.util.List;
 
+import miweinst.engine.collisiondetection.CollisionLog;
+import miweinst.engine.collisiondetection.ShapeBounds;
 import miweinst.engine.collisiondetection.ShapeCollisionInfo;
+import miweinst.engine.gfx.Drawable;
 import miweinst.engine.shape.AARectShape;
 import miweinst.engine.shape.CircleShape;
 import miweinst.engine.shape.PolygonShape;
@@ -15,18 +17,49 @@ import miweinst.engine.shape.Shape;
 
 import org.ddogleg.solver.Polynomial;
 import org.ddogleg.solver.PolynomialOps;
-import org.ddogleg.solver.PolynomialRoots;
-import org.ddogleg.solver.RootFinderType;
-import org.ejml.data.Complex64F;
 
 import cs195n.Vec2f;
 
 public class CubicBezierCurve extends BezierCurve {
 
+	//Shapes are tested from narrowphase threads too, so one solver per thread
+	private static final ThreadLocal<NearestPointSolver> SOLVER = new ThreadLocal<NearestPointSolver>() {
+		@Override
+		protected NearestPointSolver initialValue() {
+			return new NearestPointSolver();
+		}
+	};
+	//Same for t, point and normal passed through the batch methods
+	private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch();
+		}
+	};
+	private static class Scratch {
+		float[] t = new float[1];
+		float[] point = new float[2];
+		float[] normal = new float[2];
+	}
+
+	//Binomials (n choose k) at [n][k], for choose
+	private static final int[][] BINOMIALS = new int[16][];
+	static {
+		for (int n=0; n<BINOMIALS.length; n++) {
+			BINOMIALS[n] = new int[n+1];
+			BINOMIALS[n][0] = BINOMIALS[n][n] = 1;
+			for (int k=1; k<n; k++)
+				BINOMIALS[n][k] = BINOMIALS[n-1][k-1] + BINOMIALS[n-1][k];
+		}
+	}
+	//Slack around tight bounds, in game units
+	private static final float BOUNDS_PAD = .001f;
+
 	public Vec2f start, ctrl_one, ctrl_two, end;
 	private Vec2f[] _points;
+	//Power basis of curve, low to high power, for evaluating many t at once
+	private float[] _coefX, _coefY;
 
-	private ArrayList<LineSegment> _segs;
 	private ArrayList<Vec2f> _pois;
 
 	////Visualization
@@ -39,15 +72,11 @@ public class CubicBezierCurve extends BezierCurve {
 	public CubicBezierCurve() {
 		super(new Vec2f(0, 0), new Vec2f(0, 0));	
 		_points = new Vec2f[4];
-		//List to be populated by findDrawingPoints
-		_segs = new ArrayList<LineSegment>();
 		this.init(new Vec2f(35, 40), new Vec2f(45.5f, 63), new Vec2f(40, 22), new Vec2f(70, 40.6f));
 	}
 	public CubicBezierCurve(Vec2f point1, Vec2f point2, Vec2f point3, Vec2f point4) {
 		super(point1, new Vec2f(0, 0));
 		_points = new Vec2f[4];
-		//List to be populated by findDrawingPoints
-		_segs = new ArrayList<LineSegment>();
 		this.init(point1, point2, point3, point4);		
 	}
 
@@ -87,14 +116,86 @@ public class CubicBezierCurve extends BezierCurve {
 		end = _points[3];
 		updateSegs();
 	}
-	/**Updates LineSegment references in _segs*/
+	/**Updates what's kept of the points (power basis, bounds)*/
 	private void updateSegs() {
-		//Populate list of LineSegments _segs
-		ArrayList<Vec2f> pointList = new ArrayList<Vec2f>();
-		for (float t=0; t <= 1; t += .01f) 
-			pointList.add(getCasteljauPoint(t)); 
-		ArrayList<LineSegment> segList = LineSegment.pointsToSegs(pointList);
-		_segs = segList;
+		this.updateCoefs();
+		this.invalidateBounds();
+	}
+	
+	/*Power basis: P0 + 3(P1-P0)t + 3(P2-2P1+P0)t^2 + (P3-3P2+3P1-P0)t^3*/
+	private void updateCoefs() {
+		if (_coefX == null) {
+			_coefX = new float[4];
+			_coefY = new float[4];
+		}
+		_coefX[0] = _points[0].x;
+		_coefX[1] = 3*(_points[1].x - _points[0].x);
+		_coefX[2] = 3*(_points[2].x - 2*_points[1].x + _points[0].x);
+		_coefX[3] = _points[3].x - 3*_points[2].x + 3*_points[1].x - _points[0].x;
+		_coefY[0] = _points[0].y;
+		_coefY[1] = 3*(_points[1].y - _points[0].y);
+		_coefY[2] = 3*(_points[2].y - 2*_points[1].y + _points[0].y);
+		_coefY[3] = _points[3].y - 3*_points[2].y + 3*_points[1].y - _points[0].y;
+	}
+	
+	/*Tight bounds of the whole curve, not of its convex hull.*/
+	@Override
+	protected void computeBounds(float[] bounds) {
+		this.getBounds(0, 1, bounds);
+	}
+	
+	/* Populates bounds with [minX, minY, maxX, maxY] of the part of curve 
+	 * from t0 to t1: its two ends, and wherever in between it turns around 
+	 * in x or y, i.e. at roots of the derivative (a quadratic) of each.
+	 * Padded by BOUNDS_PAD, so rounding never leaves curve poking out.*/
+	public void getBounds(float t0, float t1, float[] bounds) {
+		for (int axis=0; axis<2; axis++) {
+			float p0 = coord(_points[0], axis), p1 = coord(_points[1], axis);
+			float p2 = coord(_points[2], axis), p3 = coord(_points[3], axis);
+			float a = coord(t0, p0, p1, p2, p3);
+			float b = coord(t1, p0, p1, p2, p3);
+			float min = Math.min(a, b), max = Math.max(a, b);
+			//dB/dt / 3 = at^2 + bt + c
+			double qa = (double) -p0 + 3.0*p1 - 3.0*p2 + p3;
+			double qb = 2.0*((double) p0 - 2.0*p1 + p2);
+			double qc = (double) p1 - p0;
+			float r0 = Float.NaN, r1 = Float.NaN;
+			if (qa == 0) {
+				if (qb != 0) 
+					r0 = (float) (-qc/qb);
+			}
+			else {
+				double disc = qb*qb - 4*qa*qc;
+				if (disc >= 0) {
+					//Stable form: no cancellation when qa is tiny next to qb
+					double q = -.5*(qb + (qb < 0 ? -1 : 1)*Math.sqrt(disc));
+					r0 = (float) (q/qa);
+					if (q != 0)
+						r1 = (float) (qc/q);
+				}
+			}
+			//NaN fails both comparisons, so is skipped
+			if (r0 > t0 && r0 < t1) {
+				float v = coord(r0, p0, p1, p2, p3);
+				min = Math.min(min, v);
+				max = Math.max(max, v);
+			}
+			if (r1 > t0 && r1 < t1) {
+				float v = coord(r1, p0, p1, p2, p3);
+				min = Math.min(min, v);
+				max = Math.max(max, v);
+			}
+			bounds[axis] = min - BOUNDS_PAD;
+			bounds[axis+2] = max + BOUNDS_PAD;
+		}
+	}
+	private static float coord(Vec2f p, int axis) {
+		return axis == 0 ? p.x : p.y;
+	}
+	/*One coordinate of curve at t, given that coordinate of its four points.*/
+	private static float coord(float t, float p0, float p1, float p2, float p3) {
+		float u = 1-t;
+		return u*u*u*p0 + 3*u*u*t*p1 + 3*u*t*t*p2 + t*t*t*p3;
 	}
 
 	/**Location of curve is defined as the starting endpoint. 
@@ -116,6 +217,9 @@ public class CubicBezierCurve extends BezierCurve {
 	 * Makes changes in array of _points and then udpates the endpoints and
 	 * control _points using updatePoints.*/
 	public void translate(Vec2f d) {
+		//Static curves are set to where they already are every tick
+		if (d.isZero()) 
+			return;
 		for (int i=0; i<_points.length; i++) {
 			Vec2f p = _points[i];
 			_points[i] = new Vec2f(p.x + d.x, p.y + d.y);
@@ -203,74 +307,62 @@ public class CubicBezierCurve extends BezierCurve {
 		return new Vec2f(-dt.y, dt.x).normalized();
 	}
 
+	/* Batch versions of the above, for loops over many t at once: count
+	 * values of ts, each evaluated into out as [x0, y0, x1, y1, ...], by
+	 * Horner's scheme on the power basis, allocating nothing. Derivatives
+	 * here aren't normalized (normals are). Not the same arithmetic as
+	 * de Casteljau; the power basis loses a little to cancellation, up to
+	 * ~4e-4 units on curves +-250 units across.*/
+	public void calculateBezierPoints(float[] ts, int count, float[] out) {
+		float x0 = _coefX[0], x1 = _coefX[1], x2 = _coefX[2], x3 = _coefX[3];
+		float y0 = _coefY[0], y1 = _coefY[1], y2 = _coefY[2], y3 = _coefY[3];
+		for (int i=0; i<count; i++) {
+			float t = ts[i];
+			out[2*i] = ((x3*t + x2)*t + x1)*t + x0;
+			out[2*i+1] = ((y3*t + y2)*t + y1)*t + y0;
+		}
+	}
+	/*C'(t) = c1 + 2c2t + 3c3t^2*/
+	public void findDerivatives(float[] ts, int count, float[] out) {
+		float x1 = _coefX[1], x2 = 2*_coefX[2], x3 = 3*_coefX[3];
+		float y1 = _coefY[1], y2 = 2*_coefY[2], y3 = 3*_coefY[3];
+		for (int i=0; i<count; i++) {
+			float t = ts[i];
+			out[2*i] = (x3*t + x2)*t + x1;
+			out[2*i+1] = (y3*t + y2)*t + y1;
+		}
+	}
+	/*C''(t) = 2c2 + 6c3t*/
+	public void findSecondDerivatives(float[] ts, int count, float[] out) {
+		float x2 = 2*_coefX[2], x3 = 6*_coefX[3];
+		float y2 = 2*_coefY[2], y3 = 6*_coefY[3];
+		for (int i=0; i<count; i++) {
+			float t = ts[i];
+			out[2*i] = x3*t + x2;
+			out[2*i+1] = y3*t + y2;
+		}
+	}
+	/*Unit normals, the way findNormal turns them; (0, 0) where C'(t) is.*/
+	public void findNormals(float[] ts, int count, float[] out) {
+		this.findDerivatives(ts, count, out);
+		for (int i=0; i<count; i++) {
+			float dx = out[2*i], dy = out[2*i+1];
+			float mag = (float) Math.sqrt(dx*dx + dy*dy);
+			float inv = mag == 0 ? 0 : 1/mag;
+			out[2*i] = -dy*inv;
+			out[2*i+1] = dx*inv;
+		}
+	}
+
 	/**Find the point P (defined by P(t)) on the Bezier curve that is closest to 
 	 * the point M, which can be anywhere. The line seg MP (i.e. M-P) is orthogonal
 	 * to the tangent/derivative of P (dP/dt), so MP.dot(dP/dt) == 0. 
-	 * Therefore M.minus(P).dot(derivative(getT(P))) == 0, then use root finding.*/
+	 * Therefore M.minus(P).dot(derivative(getT(P))) == 0, then use root finding
+	 * (see NearestPointSolver).*/
 	public float nearestTOnCurve(final Vec2f m) {
-
-		//USING DDOGLEG LIBRARY ROOTFINDING
-		Polynomial poly = getPCurveDotProduct(m);
-
-		PolynomialRoots finder = PolynomialOps.createRootFinder(6, RootFinderType.EVD);
-
-		if( !finder.process(poly) )
-			throw new RuntimeException("Failed to find solution!");
-
-		List<Complex64F> roots = finder.getRoots();
-
-		float closest = -1f;
-		float closestDist = Float.POSITIVE_INFINITY;
-		
-		roots.add(new Complex64F(0d, 0d));
-		roots.add(new Complex64F(1d, 0d));
-		
-		for(Complex64F z : roots) {
-			if(z.isReal() && z.getReal() >= 0d && z.getReal() <= 1d) {
-				float dist = this.getCasteljauPoint((float)z.getReal()).dist(m);
-				if(dist < closestDist) {
-					closest = (float) z.getReal();
-					closestDist = dist;
-				}
-			}
-		}
-		assert(closest != Float.POSITIVE_INFINITY);
-
-		return closest;
-
-
-
-		
-//		//Minimum distance between M and P, i.e. M.minus(P).dot(derivative(getT(P))) == 0
-//		float t_val = 0;		
-//		//Dot/Orthogonal check; project orthogonal
-//		float minDot = Float.POSITIVE_INFINITY;
-//		for (float t=0; t<=1; t=t+1/SAMPLE_RESOLUTION) {
-//			Vec2f p = getCasteljauPoint(t);
-//			 float dot = m.minus(p).dot(findDerivative(t));			 
-//			 //minDot should be trivially close to 0
-//			 if (Math.abs(dot) < minDot) {
-//				minDot = Math.abs(dot);
-//				t_val = t;
-//			 }
-//		}
-//		return t_val;
-		 
-
-//		//Simple distance minimizing through sampling curve
-//		float t_val = 0;
-//				float minDist = Float.POSITIVE_INFINITY;
-//		for (float t=0; t<=1; t=t+1/SAMPLE_RESOLUTION) {
-//			Vec2f p = getCasteljauPoint(t);
-//			float dist = m.dist2(p);
-//			if (dist < minDist) {
-//				minDist = dist;
-//				t_val = t;
-//			}
-//		}
-//		return t_val;
-
+		return SOLVER.get().nearestT(_points, m.x, m.y);
 	}
+	
 	public Vec2f nearestPointOnCurve(Vec2f m) {
 		return getCasteljauPoint(nearestTOnCurve(m));
 	}
@@ -498,8 +590,8 @@ public class CubicBezierCurve extends BezierCurve {
 	 * since circles have arbitrary rotation and curves don't rotate.*/
 	@Override
 	public boolean collidesCircle(CircleShape c) {	
-		//Only collide if circle in convex hull
-		if (!getWideBounds().collides(c)) {
+		//Only collide if circle in bounds
+		if (!ShapeBounds.overlaps(this, c)) {
 			return false;
 		}
 		this.setCollisionInfo(null);
@@ -531,8 +623,8 @@ public class CubicBezierCurve extends BezierCurve {
 	/**Collision and point of intersection for Polygons.*/
 	@Override
 	public boolean collidesPolygon(PolygonShape p) {
-		//Only check for collision if polygon in convex hull
-		if (!getWideBounds().collides(p)) {
+		//Only check for collision if polygon in bounds
+		if (!ShapeBounds.overlaps(this, p)) {
 			return false;
 		}		
 		this.setCollisionInfo(null);
@@ -542,7 +634,8 @@ public class CubicBezierCurve extends BezierCurve {
 		Vec2f[] verts = p.getVertices();		
 		ArrayList<LineSegment> sides = new ArrayList<LineSegment>();
 		ArrayList<LineSegment> mtv_segs = new ArrayList<LineSegment>();
-		_pois.clear();
+		//Filled locally, then kept for poiPolygon through CollisionLog
+		final ArrayList<Vec2f> pois = new ArrayList<Vec2f>();
 		//For each side of Polygon:
 		for (int i=0; i<verts.length; i++) {
 			Vec2f src = verts[i];
@@ -563,16 +656,26 @@ public class CubicBezierCurve extends BezierCurve {
 						mtv_segs.add(new LineSegment(poi, dst));
 					else 
 						mtv_segs.add(new LineSegment(src, poi));					
-					_pois.add(poi);
+					pois.add(poi);
 				}	
 			}	
 			sides.add(seg);
 		}
+		CollisionLog.apply(new Runnable() {
+			public void run() {
+				_pois = pois;
+			}
+		});
 		if (collision) {			
-			Vec2f poi = Vec2f.average(_pois);
-			float ct = this.nearestTOnCurve(poi);			
-			Vec2f unit_norm = this.findNormal(ct).normalized();
-			Vec2f closestPoint = getCasteljauPoint(ct);
+			Vec2f poi = Vec2f.average(pois);
+			float ct = this.nearestTOnCurve(poi);
+			//Point and normal at ct through the batch methods, into scratch
+			Scratch scratch = SCRATCH.get();
+			scratch.t[0] = ct;
+			this.calculateBezierPoints(scratch.t, 1, scratch.point);
+			this.findNormals(scratch.t, 1, scratch.normal);
+			Vec2f unit_norm = new Vec2f(scratch.normal[0], scratch.normal[1]);
+			Vec2f closestPoint = new Vec2f(scratch.point[0], scratch.point[1]);
 			Vec2f pointAlongNorm = closestPoint.plus(unit_norm);
 			LineSegment closestSide = null;
 			Vec2f sidePoint = null;
@@ -609,10 +712,15 @@ public class CubicBezierCurve extends BezierCurve {
 				}			
 			}		
 			if (mtv != null) {
-				CircleShape circle = new CircleShape(closestPoint, .5f);
+				final CircleShape circle = new CircleShape(closestPoint, .5f);
 				circle.setColor(Color.black);
-				_drawDots.add(circle);
-				_drawLines.add(mtvSeg);
+				final LineSegment line = mtvSeg;
+				CollisionLog.apply(new Runnable() {
+					public void run() {
+						_drawDots.add(circle);
+						_drawLines.add(line);
+					}
+				});
 				this.setCollisionInfo(new ShapeCollisionInfo(this, p, mtv));
 				p.setCollisionInfo(new ShapeCollisionInfo(p, this, mtv.smult(1)));
 			}
@@ -678,29 +786,22 @@ public class CubicBezierCurve extends BezierCurve {
 			line.draw(g);
 		}*/
 	}
-
-	
-	/**
-	 * see http://www.iut-arles.up.univ-mrs.fr/web/romain-raffin/sites/romain-raffin/IMG/pdf/Solving_the_nearest_point_on_curve_problem.pdf
-	 * @return
-	 */
-	private Polynomial getPCurveDotProduct(Vec2f p) {
-		int n = 3;
-		Polynomial result = Polynomial.wrap(0d);
-		for(int i = 0; i <= n; i++) {
-			for(int j = 0; j <= n-1; j++) {
-				float z = choose(n, i)*choose(n-1, j)/choose(2*n-1, i+j);
-				Vec2f c = getPoint(i).minus(p);
-				Vec2f d = (getPoint(j+1).minus(getPoint(j))).smult((float)n);
-				float w = c.dot(d.smult(z));
-				Polynomial toAdd = getBernsteinPolynomial(2*n-1, i+j);
-				toAdd = PolynomialOps.multiply(toAdd, Polynomial.wrap(w), null);
-				result = PolynomialOps.add(result, toAdd, null);
+	/*What draw draws now, of a copy of the curve.*/
+	@Override
+	public Drawable snapshot() {
+		final CubicCurve2D curve = new CubicCurve2D.Float(start.x, start.y, ctrl_one.x, ctrl_one.y, ctrl_two.x, ctrl_two.y, end.x, end.y);
+		final float width = _drawBorder ? getBorderWidth() : 0;
+		final Color color = super.getColor();
+		return new Drawable() {
+			public void draw(Graphics2D g) {
+				g.setStroke(new BasicStroke(width));
+				g.setColor(color);
+				g.draw(curve);
 			}
-		}
-		return result;
+		};
 	}
 
+	
 	/**
 	 * Gets the desired Bernstein polynomial. See
 	 * http://www.iut-arles.up.univ-mrs.fr/web/romain-raffin/sites/romain-raffin/IMG/pdf/Solving_the_nearest_point_on_curve_problem.pdf
@@ -758,6 +859,8 @@ public class CubicBezierCurve extends BezierCurve {
 			System.err.println("Error: invalid input for choose");
 			return 0f;
 		}
+		if (n < BINOMIALS.length)
+			return BINOMIALS[n][k];
 		int numerator = 1;
 		int denominator = 1;
 		for(int i = 1; i <=k; i++) {
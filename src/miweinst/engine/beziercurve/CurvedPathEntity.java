@@ -78,5 +78,17 @@ public class CurvedPathEntity extends PhysicsEntity {
 		if (props.containsKey("color")) {
 			_bezierPath.setColor(GameWorld.stringToColor(props.get("color")));
 		}
+		//Bake distance field for circles to collide with (cell size, game units)
+		if (props.containsKey("distance_field")) {
+			try {
+				float band = BezierPath.FIELD_BAND;
+				if (props.containsKey("distance_field_band")) 
+					band = Float.parseFloat(props.get("distance_field_band").trim());
+				boolean exact = Boolean.parseBoolean(props.get("distance_field_exact"));
+				_bezierPath.setDistanceField(Float.parseFloat(props.get("distance_field").trim()), band, exact);
+			} catch (NumberFormatException e) {
+				System.err.println("Distance field cell and band must be numbers (CurvedPathEntity.setProperties)");
+			}
+		}
 	}
 }
@@ -0,0 +1,220 @@
+package miweinst.engine.beziercurve;
+
+import java.util.Arrays;
+
+/* Distance to a polyline (a flattened BezierPath), baked once into a grid
+ * of nodes cell apart, with its gradient, so a query is a bilinear lookup
+ * instead of a closest-point solve. Negative inside if the polyline is
+ * closed, so the gradient always points away from the inside.
+ *
+ * Only a band around the polyline is exact; nodes farther than band away
+ * hold band (or -band), and so does anywhere off the grid. The grid spans
+ * the polyline's bounds padded by band. Only nodes a couple of cells from
+ * the polyline are measured against it; the rest take the nearest point
+ * of a neighbour, swept across the grid and back, so baking costs about
+ * the same however long the polyline or wide the band.
+ *
+ * Interpolating across the surface is only smooth if closed; an open
+ * polyline's distance has a crease along it, so is best left to an exact
+ * test right at it. Never changes once baked, so any number of threads
+ * can sample it.*/
+
+public class DistanceField {
+
+	//Most nodes baked; cell grows to stay under it
+	public static final int MAX_NODES = 1 << 20;
+	//Cells around each segment measured directly
+	private static final int SEED_CELLS = 2;
+
+	private float _minX, _minY;
+	private float _cell;
+	private int _cols, _rows;
+	private float _band;
+	//Signed distance and its gradient at node (i, j), at j*_cols + i
+	private float[] _dist;
+	private float[] _gradX, _gradY;
+
+	/* Bakes field of count points in flat, [x0, y0, x1, y1, ...], joined
+	 * in order; closed if last point is the first.*/
+	public DistanceField(float[] flat, int count, float cell, float band) {
+		if (cell <= 0 || band <= 0)
+			throw new IllegalArgumentException("Distance field cell and band must be positive");
+		float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+		for (int i=0; i<count; i++) {
+			minX = Math.min(minX, flat[2*i]);
+			minY = Math.min(minY, flat[2*i+1]);
+			maxX = Math.max(maxX, flat[2*i]);
+			maxY = Math.max(maxY, flat[2*i+1]);
+		}
+		if (count == 0)
+			minX = minY = maxX = maxY = 0;
+		_band = band;
+		_minX = minX - band;
+		_minY = minY - band;
+		float width = maxX - minX + 2*band, height = maxY - minY + 2*band;
+		while ((long) ((int) (width/cell) + 2) * ((int) (height/cell) + 2) > MAX_NODES)
+			cell *= 1.5f;
+		_cell = cell;
+		_cols = (int) (width/cell) + 2;
+		_rows = (int) (height/cell) + 2;
+		int n = _cols*_rows;
+		_dist = new float[n];
+		_gradX = new float[n];
+		_gradY = new float[n];
+		//Nearest point on polyline found so far, squared distance to it in _dist
+		float[] nearX = new float[n], nearY = new float[n];
+		Arrays.fill(_dist, band*band);
+		for (int s=0; s+1<count; s++)
+			this.bakeSegment(flat[2*s], flat[2*s+1], flat[2*s+2], flat[2*s+3], nearX, nearY);
+		this.sweep(nearX, nearY);
+		for (int k=0; k<n; k++)
+			_dist[k] = (float) Math.sqrt(_dist[k]);
+		boolean closed = count > 2 && flat[0] == flat[2*count-2] && flat[1] == flat[2*count-1];
+		if (closed)
+			this.bakeInside(flat, count);
+		this.bakeGradient();
+	}
+
+	public float getCell() {
+		return _cell;
+	}
+	public float getBand() {
+		return _band;
+	}
+
+	/* Signed distance at (x, y), interpolated from the four nodes around
+	 * it, and its gradient into grad. The gradient is about unit length,
+	 * but shorter where nodes disagree on which way is away, like along
+	 * a ridge halfway between two sides. Off the grid, band and (0, 0).*/
+	public float sample(float x, float y, float[] grad) {
+		float fx = (x - _minX)/_cell, fy = (y - _minY)/_cell;
+		int i = (int) Math.floor(fx), j = (int) Math.floor(fy);
+		if (i < 0 || j < 0 || i >= _cols-1 || j >= _rows-1) {
+			grad[0] = grad[1] = 0;
+			return _band;
+		}
+		float tx = fx - i, ty = fy - j;
+		int k = j*_cols + i;
+		grad[0] = lerp(_gradX, k, tx, ty);
+		grad[1] = lerp(_gradY, k, tx, ty);
+		return lerp(_dist, k, tx, ty);
+	}
+
+	private float lerp(float[] a, int k, float tx, float ty) {
+		float bottom = a[k] + (a[k+1] - a[k])*tx;
+		float top = a[k+_cols] + (a[k+_cols+1] - a[k+_cols])*tx;
+		return bottom + (top - bottom)*ty;
+	}
+
+	/* Lowers nodes within a few cells of segment to their squared distance
+	 * from it, keeping the nearest point.*/
+	private void bakeSegment(float ax, float ay, float bx, float by, float[] nearX, float[] nearY) {
+		float pad = SEED_CELLS*_cell;
+		int i0 = Math.max(0, (int) Math.floor((Math.min(ax, bx) - pad - _minX)/_cell));
+		int i1 = Math.min(_cols-1, (int) Math.ceil((Math.max(ax, bx) + pad - _minX)/_cell));
+		int j0 = Math.max(0, (int) Math.floor((Math.min(ay, by) - pad - _minY)/_cell));
+		int j1 = Math.min(_rows-1, (int) Math.ceil((Math.max(ay, by) + pad - _minY)/_cell));
+		float dx = bx - ax, dy = by - ay;
+		float len2 = dx*dx + dy*dy;
+		for (int j=j0; j<=j1; j++) {
+			float y = _minY + j*_cell;
+			for (int i=i0; i<=i1; i++) {
+				float x = _minX + i*_cell;
+				float t = len2 == 0 ? 0 : ((x - ax)*dx + (y - ay)*dy)/len2;
+				t = Math.max(0, Math.min(1, t));
+				float px = ax + t*dx, py = ay + t*dy;
+				float d = (px - x)*(px - x) + (py - y)*(py - y);
+				int k = j*_cols + i;
+				if (d < _dist[k]) {
+					_dist[k] = d;
+					nearX[k] = px;
+					nearY[k] = py;
+				}
+			}
+		}
+	}
+
+	/* Carries nearest points out from the seeded nodes: down the grid,
+	 * each node trying the nearest points of the neighbours already
+	 * visited, then back up. Close to exact; off only by a hair where
+	 * the nearest point jumps, near ridges.*/
+	private void sweep(float[] nearX, float[] nearY) {
+		for (int j=0; j<_rows; j++) {
+			for (int i=0; i<_cols; i++) {
+				this.take(i, j, i-1, j, nearX, nearY);
+				this.take(i, j, i-1, j-1, nearX, nearY);
+				this.take(i, j, i, j-1, nearX, nearY);
+				this.take(i, j, i+1, j-1, nearX, nearY);
+			}
+			for (int i=_cols-1; i>=0; i--)
+				this.take(i, j, i+1, j, nearX, nearY);
+		}
+		for (int j=_rows-1; j>=0; j--) {
+			for (int i=_cols-1; i>=0; i--) {
+				this.take(i, j, i+1, j, nearX, nearY);
+				this.take(i, j, i+1, j+1, nearX, nearY);
+				this.take(i, j, i, j+1, nearX, nearY);
+				this.take(i, j, i-1, j+1, nearX, nearY);
+			}
+			for (int i=0; i<_cols; i++)
+				this.take(i, j, i-1, j, nearX, nearY);
+		}
+	}
+
+	/*Node (i, j) takes neighbour (ni, nj)'s nearest point, if it has one closer.*/
+	private void take(int i, int j, int ni, int nj, float[] nearX, float[] nearY) {
+		if (ni < 0 || nj < 0 || ni >= _cols || nj >= _rows)
+			return;
+		int k = j*_cols + i, nk = nj*_cols + ni;
+		//Neighbour not reached yet
+		if (_dist[nk] >= _band*_band)
+			return;
+		float x = _minX + i*_cell, y = _minY + j*_cell;
+		float px = nearX[nk], py = nearY[nk];
+		float d = (px - x)*(px - x) + (py - y)*(py - y);
+		if (d < _dist[k]) {
+			_dist[k] = d;
+			nearX[k] = px;
+			nearY[k] = py;
+		}
+	}
+
+	/* Negates nodes inside closed polyline, a row at a time: where the
+	 * row crosses the polyline, sorted, and every other span is inside.*/
+	private void bakeInside(float[] flat, int count) {
+		float[] xs = new float[count];
+		for (int j=0; j<_rows; j++) {
+			float y = _minY + j*_cell;
+			int n = 0;
+			for (int s=0; s+1<count; s++) {
+				float ay = flat[2*s+1], by = flat[2*s+3];
+				//Half open, so a vertex on the row counts once
+				if ((ay <= y) != (by <= y)) {
+					float ax = flat[2*s], bx = flat[2*s+2];
+					xs[n++] = ax + (y - ay)/(by - ay)*(bx - ax);
+				}
+			}
+			Arrays.sort(xs, 0, n);
+			for (int c=0; c+1<n; c+=2) {
+				int i0 = Math.max(0, (int) Math.ceil((xs[c] - _minX)/_cell));
+				int i1 = Math.min(_cols-1, (int) Math.floor((xs[c+1] - _minX)/_cell));
+				for (int i=i0; i<=i1; i++)
+					_dist[j*_cols + i] = -_dist[j*_cols + i];
+			}
+		}
+	}
+
+	/*Central differences, one-sided at the edges of the grid.*/
+	private void bakeGradient() {
+		for (int j=0; j<_rows; j++) {
+			for (int i=0; i<_cols; i++) {
+				int k = j*_cols + i;
+				int l = i > 0 ? k-1 : k, r = i < _cols-1 ? k+1 : k;
+				int b = j > 0 ? k-_cols : k, t = j < _rows-1 ? k+_cols : k;
+				_gradX[k] = (r == l) ? 0 : (_dist[r] - _dist[l])/((r - l)*_cell);
+				_gradY[k] = (t == b) ? 0 : (_dist[t] - _dist[b])/((t - b)/_cols*_cell);
+			}
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package miweinst.engine.beziercurve;
+
+import cs195n.Vec2f;
+
+/* Finds the t of the point on a cubic Bezier curve nearest a point M.
+ * That's an endpoint or a root of (B(t) - M).B'(t) = 0, a quintic, 
+ * solved here without building Polynomials or an eigenvalue decomposition.
+ *
+ * Every real root of a polynomial in [0, 1] lies between two roots of
+ * its derivative, where it's monotonic, so the quintic's roots come from
+ * its derivatives' roots: a linear one solved directly, then each degree
+ * up in turn, by safeguarded Newton in each interval that changes sign.
+ * All scratch is kept here, so one solver per thread, reused.*/
+
+public class NearestPointSolver {
+
+	private static final int DEGREE = 5;
+	//Close enough in t; well under float resolution
+	private static final double EPSILON = 1e-12;
+	private static final int MAX_ITERATIONS = 64;
+
+	//_coef[d] is d-th derivative of quintic, low to high power
+	private double[][] _coef;
+	//Roots in (0, 1) of each derivative, ascending, and how many
+	private double[][] _roots;
+	private int[] _numRoots;
+	//Power basis of curve, low to high power
+	private double[] _x, _y;
+
+	public NearestPointSolver() {
+		_coef = new double[DEGREE+1][DEGREE+1];
+		_roots = new double[DEGREE+1][DEGREE];
+		_numRoots = new int[DEGREE+1];
+		_x = new double[4];
+		_y = new double[4];
+	}
+
+	/* t of the point on the curve through points (start, two control
+	 * points, end) nearest (mx, my); the first t found of any tied.*/
+	public float nearestT(Vec2f[] points, float mx, float my) {
+		this.setCurve(points);
+		//Offset of curve from M: B(t) - M
+		double qx = _x[0] - mx, qy = _y[0] - my;
+		double ax = _x[3], ay = _y[3];
+		double bx = _x[2], by = _y[2];
+		double cx = _x[1], cy = _y[1];
+		//(at^3 + bt^2 + ct + q).(3at^2 + 2bt + c)
+		double[] f = _coef[0];
+		f[0] = qx*cx + qy*cy;
+		f[1] = cx*cx + cy*cy + 2*(qx*bx + qy*by);
+		f[2] = 3*(bx*cx + by*cy) + 3*(ax*qx + ay*qy);
+		f[3] = 4*(ax*cx + ay*cy) + 2*(bx*bx + by*by);
+		f[4] = 5*(ax*bx + ay*by);
+		f[5] = 3*(ax*ax + ay*ay);
+		int n = this.solve();
+
+		//Candidates: endpoints and roots of quintic, which is _roots[0]
+		float best = 0;
+		double bestDist = this.dist2(0, mx, my);
+		double[] roots = _roots[0];
+		for (int i=0; i<n; i++) {
+			double dist = this.dist2(roots[i], mx, my);
+			if (dist < bestDist) {
+				best = (float) roots[i];
+				bestDist = dist;
+			}
+		}
+		if (this.dist2(1, mx, my) < bestDist)
+			best = 1;
+		return best;
+	}
+
+	/*Fills power basis of curve: P0 + 3(P1-P0)t + 3(P2-2P1+P0)t^2 + (P3-3P2+3P1-P0)t^3*/
+	private void setCurve(Vec2f[] p) {
+		_x[0] = p[0].x;
+		_x[1] = 3.0*(p[1].x - p[0].x);
+		_x[2] = 3.0*(p[2].x - 2.0*p[1].x + p[0].x);
+		_x[3] = (double) p[3].x - 3.0*p[2].x + 3.0*p[1].x - p[0].x;
+		_y[0] = p[0].y;
+		_y[1] = 3.0*(p[1].y - p[0].y);
+		_y[2] = 3.0*(p[2].y - 2.0*p[1].y + p[0].y);
+		_y[3] = (double) p[3].y - 3.0*p[2].y + 3.0*p[1].y - p[0].y;
+	}
+
+	private double dist2(double t, float mx, float my) {
+		double x = ((_x[3]*t + _x[2])*t + _x[1])*t + _x[0] - mx;
+		double y = ((_y[3]*t + _y[2])*t + _y[1])*t + _y[0] - my;
+		return x*x + y*y;
+	}
+
+	/* Roots of the quintic in (0, 1), into _roots[0]; returns how many.
+	 * Works up from the linear fourth derivative.*/
+	private int solve() {
+		for (int d=1; d<DEGREE; d++) {
+			double[] prev = _coef[d-1];
+			double[] next = _coef[d];
+			int degree = DEGREE - d;
+			for (int i=0; i<=degree; i++)
+				next[i] = (i+1)*prev[i+1];
+		}
+		//Linear
+		double[] line = _coef[DEGREE-1];
+		_numRoots[DEGREE-1] = 0;
+		if (line[1] != 0) {
+			double t = -line[0]/line[1];
+			if (t > 0 && t < 1)
+				_roots[DEGREE-1][_numRoots[DEGREE-1]++] = t;
+		}
+		for (int d=DEGREE-2; d>=0; d--)
+			_numRoots[d] = this.rootsBetween(_coef[d], DEGREE - d, _roots[d+1], _numRoots[d+1], _roots[d]);
+		return _numRoots[0];
+	}
+
+	/* Roots in (0, 1) of polynomial p of given degree, monotonic between
+	 * consecutive critical points (roots of its derivative), into out.*/
+	private int rootsBetween(double[] p, int degree, double[] critical, int numCritical, double[] out) {
+		int n = 0;
+		double lo = 0;
+		double flo = eval(p, degree, lo);
+		for (int i=0; i<=numCritical; i++) {
+			double hi = i < numCritical ? critical[i] : 1;
+			double fhi = eval(p, degree, hi);
+			//Root right on a critical point; counted once, not at 1
+			if (fhi == 0) {
+				if (hi < 1 && (n == 0 || out[n-1] != hi))
+					out[n++] = hi;
+			}
+			else if (flo != 0 && (flo < 0) != (fhi < 0)) {
+				out[n++] = this.refine(p, degree, lo, hi, flo);
+			}
+			lo = hi;
+			flo = fhi;
+		}
+		return n;
+	}
+
+	/* Newton from midpoint of [lo, hi], where p changes sign once;
+	 * falls back to bisection whenever a step leaves the bracket.*/
+	private double refine(double[] p, int degree, double lo, double hi, double flo) {
+		double t = .5*(lo + hi);
+		for (int iter=0; iter<MAX_ITERATIONS; iter++) {
+			double f = p[degree], df = 0;
+			for (int i=degree-1; i>=0; i--) {
+				df = df*t + f;
+				f = f*t + p[i];
+			}
+			if (f == 0)
+				return t;
+			//Keep bracket around sign change
+			if ((f < 0) == (flo < 0))
+				lo = t;
+			else
+				hi = t;
+			if (hi - lo < EPSILON)
+				return .5*(lo + hi);
+			double next = df != 0 ? t - f/df : lo;
+			if (next <= lo || next >= hi)
+				next = .5*(lo + hi);
+			if (Math.abs(next - t) < EPSILON)
+				return next;
+			t = next;
+		}
+		return t;
+	}
+
+	private static double eval(double[] p, int degree, double t) {
+		double f = p[degree];
+		for (int i=degree-1; i>=0; i--)
+			f = f*t + p[i];
+		return f;
+	}
+}
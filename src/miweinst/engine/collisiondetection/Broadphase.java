@@ -0,0 +1,38 @@
+package miweinst.engine.collisiondetection;
+
+import java.util.List;
+
+import miweinst.engine.world.PhysicsEntity;
+import cs195n.Vec2f;
+
+/* Broadphase stage of collision detection. Keeps a spatial index over
+ * the bounds of every PhysicsEntity's Shape in the GameWorld, and only
+ * reports the entities whose bounds overlap, so the double dispatch 
+ * narrowphase (Shape.collides) only runs on candidate pairs.
+ * 
+ * Overlapping pairs persist between steps; the PairListener is told
+ * when a pair begins or ends overlapping.
+ * 
+ * GameWorld calls update() every time an Entity might have moved.*/
+
+public interface Broadphase {
+	/*Adds Entity to index. Adding an Entity twice only updates its bounds.*/
+	void add(PhysicsEntity e);
+	void remove(PhysicsEntity e);
+	/*Removes every Entity from index.*/
+	void clear();
+	/*Refreshes bounds of Entity. Returns true if the bounds changed
+	 * since the last update, false if Entity did not move.*/
+	boolean update(PhysicsEntity e);
+	/*Populates out with every other Entity in index whose 
+	 * bounds overlap the bounds of e. Order is unspecified.*/
+	void query(PhysicsEntity e, List<PhysicsEntity> out);
+	/*Populates out with every Entity whose bounds overlap bounds,
+	 * stored as [minX, minY, maxX, maxY].*/
+	void queryRegion(float[] bounds, List<PhysicsEntity> out);
+	/*Populates out with every Entity whose bounds might be hit by
+	 * ray from src through dst (same ray as Ray class).*/
+	void queryRay(Vec2f src, Vec2f dst, List<PhysicsEntity> out);
+	/*Sets listener for overlap begin/end events, or null.*/
+	void setPairListener(PairListener listener);
+}
@@ -4,59 +4,92 @@ import java.util.ArrayList;
 
 import miweinst.engine.world.PhysicsEntity;
 
-/*One class created for each CollisionGroup, and */
+/*One class created for each CollisionGroup, and its members 
+ * collide with every group except those in its filter. Groups
+ * are numbered 0 to 31, one bit each, so a group is stored as a 
+ * category bit on its Entities and its filter as a bitfield; the
+ * mask of a member is every bit not in the filter.*/
 
 public class CollisionGroup {
+	public static final int MAX_GROUPS = 32;
 	//Constant for each instance, so doesn't need accessor/mutator
 	public final int group;
-	private ArrayList<Integer> _filter;
+	private int _filter;
 	private ArrayList<PhysicsEntity> _entities;
 	
 	public CollisionGroup(int group) {
+		if (group < 0 || group >= MAX_GROUPS) 
+			throw new IllegalArgumentException("Collision group must be 0 to " + (MAX_GROUPS-1) + ": " + group);
 		this.group = group;
-		_filter = new ArrayList<Integer>();
+		_filter = 0;
 		_entities = new ArrayList<PhysicsEntity>();
 	}
 	
+	/*Bit of a collision group, as used for Entity categories/masks.*/
+	public static int bit(int group) {
+		if (group < 0 || group >= MAX_GROUPS) 
+			throw new IllegalArgumentException("Collision group must be 0 to " + (MAX_GROUPS-1) + ": " + group);
+		return 1 << group;
+	}
+	
+	/*Turns String of comma separated groups, i.e. "1,4", into bitfield.*/
+	public static int parseGroups(String groups) {
+		int bits = 0;
+		for (String g: groups.split(",")) {
+			if (!g.trim().isEmpty()) 
+				bits |= bit(Integer.parseInt(g.trim()));
+		}
+		return bits;
+	}
+	
+	/*Category and mask bits given to members of this group.*/
+	public int getCategoryBits() {
+		return bit(group);
+	}
+	public int getMaskBits() {
+		return ~_filter;
+	}
+	
 	/*Accessor/Mutator for list of other collision groups
 	 * filtered from this collision group*/
 	public Integer[] getFilter() {
-		return _filter.toArray(new Integer[_filter.size()]);
+		ArrayList<Integer> groups = new ArrayList<Integer>();
+		for (int g=0; g<MAX_GROUPS; g++) {
+			if (inFilter(g)) 
+				groups.add(g);
+		}
+		return groups.toArray(new Integer[groups.size()]);
 	}
 	public void setFilter(int... groups) {
 		for (int g: groups) {
-			_filter.add(g);
+			_filter |= bit(g);
+		}
+		//Members already added get new mask
+		for (PhysicsEntity e: _entities) {
+			e.setCollisionMask(getMaskBits());
 		}
 	}
 	
-	/*Accessor/Mutator for the Entity members of this collision group. */
+	/*Accessor/Mutator for the Entity members of this collision group. 
+	 * Adding an Entity sets its category and mask to this group's.*/
 	public PhysicsEntity[] getEntities() {
 		return _entities.toArray(new PhysicsEntity[_entities.size()]);
 	}
 	public void addEntity(PhysicsEntity... ents) {
 		for (PhysicsEntity e: ents) {
 			_entities.add(e);
+			e.setCollisionCategory(getCategoryBits());
+			e.setCollisionMask(getMaskBits());
 		}
 	}
 	
 	public boolean isMember(PhysicsEntity ent) {
 		return _entities.contains(ent);
-//		for (PhysicsEntity e: _entities) {
-//			if (e == ent)
-//				return true;
-//		}
-//		return false;
 	}
 
 	/*Returns whether or not the specified group
-	 * is allowed to collide with this group, based
-	 * on whether it is in the filter.*/
+	 * is filtered from colliding with this group.*/
 	public boolean inFilter(int group) {
-		return _filter.contains(group);
-/*		for (Integer g: _filter) {
-			if (g == group)
-				return false;
-		}
-		return true;*/
+		return (_filter & bit(group)) != 0;
 	}
 }
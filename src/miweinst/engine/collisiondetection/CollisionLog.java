@@ -0,0 +1,112 @@
+package miweinst.engine.collisiondetection;
+
+import java.util.ArrayList;
+
+import miweinst.engine.shape.Shape;
+
+/* Record of everything a shape collision test writes, so the test can run
+ * on another thread without touching shared Shapes, then be applied later
+ * on the main thread exactly as if it had run there.
+ *
+ * While a log is recording on a thread, Shape.setCollisionInfo goes into
+ * the log instead of the Shape, and getCollisionInfo sees what the log
+ * wrote. Reading info the test didn't write itself marks the log as
+ * depending on outside state; such a log can't be replayed and the test
+ * has to run again. Any other side effect of a test is passed to
+ * CollisionLog.apply, which runs it now or defers it to replay.*/
+
+public class CollisionLog {
+
+	private static final ThreadLocal<CollisionLog> RECORDING = new ThreadLocal<CollisionLog>();
+
+	//Shape and info it was given, in order written
+	private ArrayList<Shape> _shapes;
+	private ArrayList<ShapeCollisionInfo> _infos;
+	private ArrayList<Runnable> _effects;
+	//Each write, index into _shapes if >= 0, else -1-index into _effects
+	private ArrayList<Integer> _order;
+	private boolean _replayable;
+
+	public CollisionLog() {
+		_shapes = new ArrayList<Shape>();
+		_infos = new ArrayList<ShapeCollisionInfo>();
+		_effects = new ArrayList<Runnable>();
+		_order = new ArrayList<Integer>();
+		_replayable = true;
+	}
+
+	/*Log recording on this thread, or null if writes go straight to Shapes.*/
+	public static CollisionLog current() {
+		return RECORDING.get();
+	}
+
+	/*Runs effect now, or defers it to replay if this thread is recording.*/
+	public static void apply(Runnable effect) {
+		CollisionLog log = RECORDING.get();
+		if (log == null)
+			effect.run();
+		else {
+			log._order.add(-1-log._effects.size());
+			log._effects.add(effect);
+		}
+	}
+
+	/*Records narrowphase's test of shape against other into this log,
+	 * returns its result. A test that throws isn't replayable, so it
+	 * runs again and throws where it would have anyway.*/
+	public boolean record(Narrowphase narrowphase, Shape shape, Shape other) {
+		this.clear();
+		RECORDING.set(this);
+		try {
+			return narrowphase.collides(shape, other);
+		} catch (RuntimeException e) {
+			_replayable = false;
+			return false;
+		} catch (AssertionError e) {
+			_replayable = false;
+			return false;
+		} finally {
+			RECORDING.remove();
+		}
+	}
+
+	public void clear() {
+		_shapes.clear();
+		_infos.clear();
+		_effects.clear();
+		_order.clear();
+		_replayable = true;
+	}
+
+	/*Called by Shape while recording.*/
+	public void setCollisionInfo(Shape s, ShapeCollisionInfo info) {
+		_order.add(_shapes.size());
+		_shapes.add(s);
+		_infos.add(info);
+	}
+	/*Last info written to s, or fallback if test never wrote it.*/
+	public ShapeCollisionInfo getCollisionInfo(Shape s, ShapeCollisionInfo fallback) {
+		for (int i=_shapes.size()-1; i >= 0; i--) {
+			if (_shapes.get(i) == s)
+				return _infos.get(i);
+		}
+		_replayable = false;
+		return fallback;
+	}
+
+	/*Whether replaying gives the same result as running test again.*/
+	public boolean isReplayable() {
+		return _replayable;
+	}
+
+	/*Applies every recorded write, in the order the test made them.
+	 * Must not be called while recording.*/
+	public void replay() {
+		for (int i: _order) {
+			if (i >= 0)
+				_shapes.get(i).setCollisionInfo(_infos.get(i));
+			else
+				_effects.get(-1-i).run();
+		}
+	}
+}
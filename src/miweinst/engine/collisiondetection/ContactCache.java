@@ -0,0 +1,172 @@
+package miweinst.engine.collisiondetection;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import miweinst.engine.world.PhysicsEntity;
+import cs195n.Vec2f;
+
+/* Contacts that persist between fixed steps, keyed by pair of Entities
+ * (either order). Each Contact keeps its point, normal and the total
+ * normal impulse the response applied last step, so the response can
+ * warm start from it next step instead of starting from nothing.
+ *
+ * A Contact not touched during a step is dropped at the end of it, so
+ * only pairs that were touching last step get warm started. Kept in
+ * insertion order so anything iterating contacts stays deterministic.*/
+
+public class ContactCache {
+
+	//Overlap position correction leaves, so resting contacts persist
+	public static final float SLOP = .05f;
+
+	private LinkedHashMap<Key, Contact> _contacts;
+	//Reused for lookups, so finding a Contact doesn't allocate
+	private Key _probe;
+	private int _step;
+	private boolean _warmStarting;
+
+	public ContactCache() {
+		_contacts = new LinkedHashMap<Key, Contact>();
+		_probe = new Key(null, null);
+		_step = 0;
+		_warmStarting = true;
+	}
+
+	/*Whether response should warm start from cached impulses.
+	 * Contacts are still tracked when off.*/
+	public boolean isWarmStarting() {
+		return _warmStarting;
+	}
+	public void setWarmStarting(boolean warm) {
+		_warmStarting = warm;
+	}
+
+	/*Contact between a and b, or null if they weren't
+	 * touching last step and haven't touched this step.*/
+	public Contact find(PhysicsEntity a, PhysicsEntity b) {
+		_probe.a = a;
+		_probe.b = b;
+		Contact c = _contacts.get(_probe);
+		_probe.a = _probe.b = null;
+		return c;
+	}
+
+	/*Gets Contact between a and b, creating it if new, and
+	 * marks it as touching this step so it is kept.*/
+	public Contact touch(PhysicsEntity a, PhysicsEntity b) {
+		Contact c = this.find(a, b);
+		if (c == null) {
+			c = new Contact(a, b);
+			_contacts.put(new Key(a, b), c);
+		}
+		c._step = _step;
+		return c;
+	}
+
+	/*Ends a step: drops every Contact not touched during it.*/
+	public void step() {
+		Iterator<Contact> it = _contacts.values().iterator();
+		while (it.hasNext()) {
+			if (it.next()._step != _step)
+				it.remove();
+		}
+		_step++;
+	}
+
+	/*Drops every Contact of e, i.e. when it leaves the world.*/
+	public void remove(PhysicsEntity e) {
+		Iterator<Contact> it = _contacts.values().iterator();
+		while (it.hasNext()) {
+			Contact c = it.next();
+			if (c._a == e || c._b == e)
+				it.remove();
+		}
+	}
+
+	public void clear() {
+		_contacts.clear();
+	}
+
+	public int size() {
+		return _contacts.size();
+	}
+
+	/*Copies current Contacts into out, in the order they began.*/
+	public void getContacts(ArrayList<Contact> out) {
+		out.addAll(_contacts.values());
+	}
+
+	/* One persistent contact. Impulse is the accumulated impulse along
+	 * the normal, always >= 0 so contacts only ever push apart. Normal
+	 * points out of getA(), as its MTV does.*/
+	public static class Contact {
+		private PhysicsEntity _a, _b;
+		private Vec2f _point;
+		private Vec2f _normal;
+		private float _impulse;
+		private int _step;
+
+		private Contact(PhysicsEntity a, PhysicsEntity b) {
+			_a = a;
+			_b = b;
+			_point = new Vec2f(0, 0);
+			_normal = new Vec2f(0, 0);
+			_impulse = 0;
+			_step = -1;
+		}
+
+		public PhysicsEntity getA() {
+			return _a;
+		}
+		public PhysicsEntity getB() {
+			return _b;
+		}
+
+		public Vec2f getPoint() {
+			return _point;
+		}
+		public Vec2f getNormal() {
+			return _normal;
+		}
+		/*Normal of e, flipped if e is getB().*/
+		public Vec2f getNormal(PhysicsEntity e) {
+			return e == _a ? _normal : _normal.invert();
+		}
+		public void set(Vec2f point, Vec2f normal, PhysicsEntity from) {
+			_point = point;
+			_normal = from == _a ? normal : normal.invert();
+		}
+
+		public float getImpulse() {
+			return _impulse;
+		}
+		public void setImpulse(float impulse) {
+			_impulse = impulse;
+		}
+	}
+
+	/*Unordered pair, equal no matter which Entity is first.*/
+	private static class Key {
+		private PhysicsEntity a, b;
+
+		private Key(PhysicsEntity a, PhysicsEntity b) {
+			this.a = a;
+			this.b = b;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(a) ^ System.identityHashCode(b);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key k = (Key) o;
+			return (a == k.a && b == k.b) || (a == k.b && b == k.a);
+		}
+	}
+}
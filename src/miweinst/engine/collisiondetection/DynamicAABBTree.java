@@ -0,0 +1,452 @@
+package miweinst.engine.collisiondetection;
+
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import miweinst.engine.world.PhysicsEntity;
+import cs195n.Vec2f;
+
+/* Dynamic bounding volume tree. Every Entity is a leaf whose box is its
+ * bounds grown by FAT_MARGIN, and every internal node's box contains both
+ * children. An Entity that moves only a little stays inside its fat box,
+ * so the tree is only restructured when an Entity leaves it. Leaves are
+ * inserted next to the sibling that grows the tree's perimeter the least,
+ * and AVL rotations keep the tree balanced.
+ *
+ * Nodes are stored in parallel arrays indexed by node id, and freed nodes
+ * are reused. Queries still test the exact bounds of each leaf, so pairs
+ * are the same as with any other Broadphase.*/
+
+public class DynamicAABBTree implements Broadphase {
+
+	public static final float FAT_MARGIN = 1f;
+	private static final int NULL = -1;
+
+	private float[] _minX, _minY, _maxX, _maxY;
+	private int[] _parent, _child1, _child2, _height;
+	private Proxy[] _proxy;
+	private int _root;
+	//Freed nodes linked through _parent
+	private int _free;
+	private int _capacity;
+	private int[] _stack;
+
+	private HashMap<PhysicsEntity, Proxy> _proxies;
+	private PairSet _pairs;
+	private ArrayList<PhysicsEntity> _overlapping;
+	private float[] _scratch;
+
+	public DynamicAABBTree() {
+		_capacity = 0;
+		_minX = _minY = _maxX = _maxY = new float[0];
+		_parent = _child1 = _child2 = _height = new int[0];
+		_proxy = new Proxy[0];
+		_root = NULL;
+		_free = NULL;
+		this.grow(16);
+		_stack = new int[64];
+		_proxies = new HashMap<PhysicsEntity, Proxy>();
+		_pairs = new PairSet();
+		_overlapping = new ArrayList<PhysicsEntity>();
+		_scratch = new float[4];
+	}
+
+	@Override
+	public void add(PhysicsEntity e) {
+		if (_proxies.containsKey(e)) {
+			update(e);
+			return;
+		}
+		Proxy p = new Proxy(e);
+		e.getShape().getBounds(p.bounds);
+		_proxies.put(e, p);
+		insertProxy(p);
+		syncPairs(p);
+	}
+
+	@Override
+	public void remove(PhysicsEntity e) {
+		Proxy p = _proxies.remove(e);
+		if (p == null)
+			return;
+		removeProxy(p);
+		_pairs.removeAll(e);
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(_proxy, null);
+		_root = NULL;
+		_free = NULL;
+		for (int i=_capacity-1; i>=0; i--)
+			freeNode(i);
+		_proxies.clear();
+		_pairs.clear();
+	}
+
+	@Override
+	public boolean update(PhysicsEntity e) {
+		Proxy p = _proxies.get(e);
+		if (p == null) {
+			add(e);
+			return true;
+		}
+		e.getShape().getBounds(_scratch);
+		if (ShapeBounds.equal(_scratch, p.bounds))
+			return false;
+		System.arraycopy(_scratch, 0, p.bounds, 0, 4);
+		//Only reinsert if Entity left its fat box
+		int leaf = p.leaf;
+		if (leaf == NULL || ShapeBounds.isEmpty(p.bounds)
+				|| p.bounds[ShapeBounds.MIN_X] < _minX[leaf] || p.bounds[ShapeBounds.MIN_Y] < _minY[leaf]
+				|| p.bounds[ShapeBounds.MAX_X] > _maxX[leaf] || p.bounds[ShapeBounds.MAX_Y] > _maxY[leaf]) {
+			removeProxy(p);
+			insertProxy(p);
+		}
+		syncPairs(p);
+		return true;
+	}
+
+	@Override
+	public void query(PhysicsEntity e, List<PhysicsEntity> out) {
+		if (_proxies.containsKey(e)) {
+			out.addAll(_pairs.getPartners(e));
+			return;
+		}
+		e.getShape().getBounds(_scratch);
+		queryRegion(_scratch, out);
+	}
+
+	@Override
+	public void queryRegion(float[] bounds, List<PhysicsEntity> out) {
+		if (_root == NULL || ShapeBounds.isEmpty(bounds))
+			return;
+		int top = 0;
+		_stack[top++] = _root;
+		while (top > 0) {
+			int node = _stack[--top];
+			if (bounds[ShapeBounds.MIN_X] > _maxX[node] || _minX[node] > bounds[ShapeBounds.MAX_X]
+					|| bounds[ShapeBounds.MIN_Y] > _maxY[node] || _minY[node] > bounds[ShapeBounds.MAX_Y])
+				continue;
+			if (isLeaf(node)) {
+				if (ShapeBounds.overlaps(bounds, _proxy[node].bounds))
+					out.add(_proxy[node].entity);
+			}
+			else {
+				top = push(top, _child1[node]);
+				top = push(top, _child2[node]);
+			}
+		}
+	}
+
+	@Override
+	public void queryRay(Vec2f src, Vec2f dst, List<PhysicsEntity> out) {
+		if (_root == NULL)
+			return;
+		float dx = dst.x - src.x, dy = dst.y - src.y;
+		int top = 0;
+		_stack[top++] = _root;
+		while (top > 0) {
+			int node = _stack[--top];
+			if (ShapeBounds.rayEntry(_minX[node], _minY[node], _maxX[node], _maxY[node],
+					src.x, src.y, dx, dy) == Float.POSITIVE_INFINITY)
+				continue;
+			if (isLeaf(node)) {
+				out.add(_proxy[node].entity);
+			}
+			else {
+				top = push(top, _child1[node]);
+				top = push(top, _child2[node]);
+			}
+		}
+	}
+
+	@Override
+	public void setPairListener(PairListener listener) {
+		_pairs.setListener(listener);
+	}
+
+	/*Height of tree, 0 if single leaf or empty.*/
+	public int getHeight() {
+		return _root == NULL ? 0 : _height[_root];
+	}
+
+	/*Pairs of p are the leaves whose exact bounds overlap p's.*/
+	private void syncPairs(Proxy p) {
+		_overlapping.clear();
+		queryRegion(p.bounds, _overlapping);
+		_overlapping.remove(p.entity);
+		_pairs.sync(p.entity, _overlapping);
+	}
+
+	private int push(int top, int node) {
+		if (top == _stack.length)
+			_stack = Arrays.copyOf(_stack, _stack.length*2);
+		_stack[top] = node;
+		return top+1;
+	}
+
+	/**Node allocation*/
+
+	private void grow(int capacity) {
+		int old = _capacity;
+		_minX = Arrays.copyOf(_minX, capacity);
+		_minY = Arrays.copyOf(_minY, capacity);
+		_maxX = Arrays.copyOf(_maxX, capacity);
+		_maxY = Arrays.copyOf(_maxY, capacity);
+		_parent = Arrays.copyOf(_parent, capacity);
+		_child1 = Arrays.copyOf(_child1, capacity);
+		_child2 = Arrays.copyOf(_child2, capacity);
+		_height = Arrays.copyOf(_height, capacity);
+		_proxy = Arrays.copyOf(_proxy, capacity);
+		_capacity = capacity;
+		for (int i=capacity-1; i>=old; i--)
+			freeNode(i);
+	}
+
+	private int allocateNode() {
+		if (_free == NULL)
+			grow(_capacity*2);
+		int node = _free;
+		_free = _parent[node];
+		_parent[node] = NULL;
+		_child1[node] = NULL;
+		_child2[node] = NULL;
+		_height[node] = 0;
+		_proxy[node] = null;
+		return node;
+	}
+
+	private void freeNode(int node) {
+		_parent[node] = _free;
+		_height[node] = -1;
+		_proxy[node] = null;
+		_free = node;
+	}
+
+	private boolean isLeaf(int node) {
+		return _child1[node] == NULL;
+	}
+
+	/**Leaf insertion and removal*/
+
+	/*Empty bounds never overlap anything, so they are not put in tree.*/
+	private void insertProxy(Proxy p) {
+		if (ShapeBounds.isEmpty(p.bounds)) {
+			p.leaf = NULL;
+			return;
+		}
+		int leaf = allocateNode();
+		_minX[leaf] = p.bounds[ShapeBounds.MIN_X] - FAT_MARGIN;
+		_minY[leaf] = p.bounds[ShapeBounds.MIN_Y] - FAT_MARGIN;
+		_maxX[leaf] = p.bounds[ShapeBounds.MAX_X] + FAT_MARGIN;
+		_maxY[leaf] = p.bounds[ShapeBounds.MAX_Y] + FAT_MARGIN;
+		_proxy[leaf] = p;
+		p.leaf = leaf;
+		insertLeaf(leaf);
+	}
+
+	private void removeProxy(Proxy p) {
+		if (p.leaf == NULL)
+			return;
+		removeLeaf(p.leaf);
+		freeNode(p.leaf);
+		p.leaf = NULL;
+	}
+
+	private void insertLeaf(int leaf) {
+		if (_root == NULL) {
+			_root = leaf;
+			_parent[leaf] = NULL;
+			return;
+		}
+		//Find cheapest sibling, by perimeter of boxes that would grow
+		int index = _root;
+		while (!isLeaf(index)) {
+			int c1 = _child1[index], c2 = _child2[index];
+			float area = perimeter(index);
+			float combined = unionPerimeter(index, leaf);
+			float cost = 2*combined;
+			float inheritance = 2*(combined - area);
+			float cost1 = childCost(c1, leaf) + inheritance;
+			float cost2 = childCost(c2, leaf) + inheritance;
+			if (cost < cost1 && cost < cost2)
+				break;
+			index = cost1 < cost2 ? c1 : c2;
+		}
+		int sibling = index;
+
+		//New parent of sibling and leaf
+		int oldParent = _parent[sibling];
+		int newParent = allocateNode();
+		_parent[newParent] = oldParent;
+		setUnion(newParent, sibling, leaf);
+		_height[newParent] = _height[sibling] + 1;
+		if (oldParent != NULL) {
+			if (_child1[oldParent] == sibling)
+				_child1[oldParent] = newParent;
+			else
+				_child2[oldParent] = newParent;
+		}
+		else {
+			_root = newParent;
+		}
+		_child1[newParent] = sibling;
+		_child2[newParent] = leaf;
+		_parent[sibling] = newParent;
+		_parent[leaf] = newParent;
+
+		refit(_parent[leaf]);
+	}
+
+	private void removeLeaf(int leaf) {
+		if (leaf == _root) {
+			_root = NULL;
+			return;
+		}
+		int parent = _parent[leaf];
+		int grandParent = _parent[parent];
+		int sibling = _child1[parent] == leaf ? _child2[parent] : _child1[parent];
+		if (grandParent != NULL) {
+			if (_child1[grandParent] == parent)
+				_child1[grandParent] = sibling;
+			else
+				_child2[grandParent] = sibling;
+			_parent[sibling] = grandParent;
+			freeNode(parent);
+			refit(grandParent);
+		}
+		else {
+			_root = sibling;
+			_parent[sibling] = NULL;
+			freeNode(parent);
+		}
+	}
+
+	/*Walks up from node, rebalancing and recomputing boxes and heights.*/
+	private void refit(int node) {
+		while (node != NULL) {
+			node = balance(node);
+			int c1 = _child1[node], c2 = _child2[node];
+			_height[node] = 1 + Math.max(_height[c1], _height[c2]);
+			setUnion(node, c1, c2);
+			node = _parent[node];
+		}
+	}
+
+	/*Rotates taller grandchild of a up if a's children
+	 * differ in height by more than one. Returns new
+	 * root of subtree.*/
+	private int balance(int a) {
+		if (isLeaf(a) || _height[a] < 2)
+			return a;
+		int b = _child1[a], c = _child2[a];
+		int diff = _height[c] - _height[b];
+		//Rotate c up
+		if (diff > 1) {
+			int f = _child1[c], g = _child2[c];
+			_child1[c] = a;
+			_parent[c] = _parent[a];
+			_parent[a] = c;
+			replaceChild(_parent[c], a, c);
+			if (_height[f] > _height[g]) {
+				_child2[c] = f;
+				_child2[a] = g;
+				_parent[g] = a;
+				setUnion(a, b, g);
+				setUnion(c, a, f);
+				_height[a] = 1 + Math.max(_height[b], _height[g]);
+				_height[c] = 1 + Math.max(_height[a], _height[f]);
+			}
+			else {
+				_child2[c] = g;
+				_child2[a] = f;
+				_parent[f] = a;
+				setUnion(a, b, f);
+				setUnion(c, a, g);
+				_height[a] = 1 + Math.max(_height[b], _height[f]);
+				_height[c] = 1 + Math.max(_height[a], _height[g]);
+			}
+			return c;
+		}
+		//Rotate b up
+		if (diff < -1) {
+			int d = _child1[b], e = _child2[b];
+			_child1[b] = a;
+			_parent[b] = _parent[a];
+			_parent[a] = b;
+			replaceChild(_parent[b], a, b);
+			if (_height[d] > _height[e]) {
+				_child2[b] = d;
+				_child1[a] = e;
+				_parent[e] = a;
+				setUnion(a, c, e);
+				setUnion(b, a, d);
+				_height[a] = 1 + Math.max(_height[c], _height[e]);
+				_height[b] = 1 + Math.max(_height[a], _height[d]);
+			}
+			else {
+				_child2[b] = e;
+				_child1[a] = d;
+				_parent[d] = a;
+				setUnion(a, c, d);
+				setUnion(b, a, e);
+				_height[a] = 1 + Math.max(_height[c], _height[d]);
+				_height[b] = 1 + Math.max(_height[a], _height[e]);
+			}
+			return b;
+		}
+		return a;
+	}
+
+	private void replaceChild(int parent, int oldChild, int newChild) {
+		if (parent == NULL) {
+			_root = newChild;
+		}
+		else if (_child1[parent] == oldChild) {
+			_child1[parent] = newChild;
+		}
+		else {
+			_child2[parent] = newChild;
+		}
+	}
+
+	/*Cost of descending into child when inserting leaf.*/
+	private float childCost(int child, int leaf) {
+		if (isLeaf(child))
+			return unionPerimeter(child, leaf);
+		return unionPerimeter(child, leaf) - perimeter(child);
+	}
+
+	private float perimeter(int n) {
+		return 2*((_maxX[n] - _minX[n]) + (_maxY[n] - _minY[n]));
+	}
+
+	private float unionPerimeter(int a, int b) {
+		float w = Math.max(_maxX[a], _maxX[b]) - Math.min(_minX[a], _minX[b]);
+		float h = Math.max(_maxY[a], _maxY[b]) - Math.min(_minY[a], _minY[b]);
+		return 2*(w + h);
+	}
+
+	private void setUnion(int node, int a, int b) {
+		_minX[node] = Math.min(_minX[a], _minX[b]);
+		_minY[node] = Math.min(_minY[a], _minY[b]);
+		_maxX[node] = Math.max(_maxX[a], _maxX[b]);
+		_maxY[node] = Math.max(_maxY[a], _maxY[b]);
+	}
+
+	private static class Proxy {
+		private PhysicsEntity entity;
+		//Exact bounds, leaf box is fattened
+		private float[] bounds;
+		private int leaf;
+
+		private Proxy(PhysicsEntity e) {
+			entity = e;
+			bounds = new float[4];
+			leaf = NULL;
+		}
+	}
+}
@@ -0,0 +1,339 @@
+package miweinst.engine.collisiondetection;
+
+import java.util.Arrays;
+
+import miweinst.engine.shape.CircleShape;
+import miweinst.engine.shape.PolygonShape;
+import miweinst.engine.shape.Shape;
+import cs195n.Vec2f;
+
+/* Narrowphase for convex polygons and circles using GJK on support
+ * functions, with EPA for penetration depth. Both only ever ask a shape
+ * for its farthest vertex in a direction, so cost grows with vertex count
+ * instead of with the product of both shapes' vertex counts like SAT.
+ *
+ * GJK walks a simplex of the Minkowski difference A - B toward the origin;
+ * the shapes overlap if it ends up around the origin. EPA then expands that
+ * simplex into a polygon until it reaches the edge of A - B closest to the
+ * origin, which gives the MTV. A circle is a point with a radius around it:
+ * GJK finds the distance from polygon to center, and EPA only runs if the
+ * center is inside.
+ *
+ * MTVs are the same SAT finds (the edges of A - B are the edges of A and B),
+ * up to rounding. Touching counts as no collision, also like SAT. Any pair
+ * that isn't polygon-polygon or polygon-circle uses the Shapes' own tests.*/
+
+public class GJKNarrowphase implements Narrowphase {
+
+	private static final int MAX_ITERATIONS = 64;
+	//Relative distance under which GJK and EPA stop getting closer
+	private static final float TOLERANCE = 1e-6f;
+
+	//Simplex and polytope storage, one per thread so tests can run at once
+	private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch();
+		}
+	};
+
+	@Override
+	public boolean collides(Shape a, Shape b) {
+		if (a instanceof PolygonShape && b instanceof PolygonShape)
+			return this.collidesPolygons((PolygonShape) a, (PolygonShape) b);
+		if (a instanceof PolygonShape && b instanceof CircleShape)
+			return this.collidesCircle((PolygonShape) a, (CircleShape) b);
+		if (a instanceof CircleShape && b instanceof PolygonShape)
+			return this.collidesCircle((PolygonShape) b, (CircleShape) a);
+		return a.collides(b);
+	}
+
+	private boolean collidesPolygons(PolygonShape a, PolygonShape b) {
+		a.setCollisionInfo(null);
+		b.setCollisionInfo(null);
+		Scratch s = SCRATCH.get();
+		if (!gjk(a, b, s) || !epa(a, b, s))
+			return false;
+		Vec2f mtv = new Vec2f(s.nx*s.depth, s.ny*s.depth);
+		a.setCollisionInfo(new ShapeCollisionInfo(a, b, mtv.smult(-1)));
+		b.setCollisionInfo(new ShapeCollisionInfo(b, a, mtv));
+		return true;
+	}
+
+	private boolean collidesCircle(PolygonShape p, CircleShape c) {
+		p.setCollisionInfo(null);
+		c.setCollisionInfo(null);
+		Scratch s = SCRATCH.get();
+		Vec2f center = c.getCentroid();
+		s.cx = center.x;
+		s.cy = center.y;
+		float r = c.getRadius();
+		Vec2f mtv;
+		//Center outside polygon, circle pushed straight away from closest point
+		if (!gjk(p, null, s)) {
+			float dist = (float) Math.sqrt(s.vx*s.vx + s.vy*s.vy);
+			if (dist >= r)
+				return false;
+			mtv = new Vec2f(-s.vx/dist*(r-dist), -s.vy/dist*(r-dist));
+		}
+		//Center inside, pushed out through closest edge and then its radius
+		else {
+			//Center right on an edge, no direction to push it; let SAT pick one
+			if (!epa(p, null, s))
+				return p.collidesCircle(c);
+			mtv = new Vec2f(s.nx*(s.depth+r), s.ny*(s.depth+r));
+		}
+		p.setCollisionInfo(new ShapeCollisionInfo(p, c, mtv.smult(-1)));
+		c.setCollisionInfo(new ShapeCollisionInfo(c, p, mtv));
+		return true;
+	}
+
+	/* GJK on A - B, B being the point (s.cx, s.cy) if null. Returns true
+	 * if the origin is in or on A - B, leaving the simplex that reached it;
+	 * otherwise leaves the point of A - B closest to the origin in s.vx, s.vy.*/
+	private static boolean gjk(PolygonShape a, PolygonShape b, Scratch s) {
+		//Start from a support point, so it is on edge of A - B
+		support(a, b, 1, 0, s);
+		float vx = s.wx, vy = s.wy;
+		s.n = 0;
+		for (int iter=0; iter<MAX_ITERATIONS; iter++) {
+			float vv = vx*vx + vy*vy;
+			if (vv == 0)
+				return true;
+			support(a, b, -vx, -vy, s);
+			//No point further toward origin than v, so v is closest
+			if (vv - (vx*s.wx + vy*s.wy) <= TOLERANCE*vv)
+				break;
+			s.sx[s.n] = s.wx;
+			s.sy[s.n] = s.wy;
+			s.n++;
+			if (closestOnSimplex(s))
+				return true;
+			vx = s.vx;
+			vy = s.vy;
+		}
+		s.vx = vx;
+		s.vy = vy;
+		return false;
+	}
+
+	/* Replaces simplex with the smallest part of it closest to the origin,
+	 * and puts that closest point in s.vx, s.vy. Returns true if the
+	 * origin is inside a triangle simplex.*/
+	private static boolean closestOnSimplex(Scratch s) {
+		if (s.n == 1) {
+			s.vx = s.sx[0];
+			s.vy = s.sy[0];
+			return false;
+		}
+		if (s.n == 2) {
+			closestOnSegment(s, 0, 1);
+			return false;
+		}
+		//Triangle, regions as in Ericson's closest point on triangle
+		float ax = s.sx[0], ay = s.sy[0], bx = s.sx[1], by = s.sy[1], cx = s.sx[2], cy = s.sy[2];
+		float abx = bx-ax, aby = by-ay, acx = cx-ax, acy = cy-ay;
+		float d1 = -(abx*ax + aby*ay), d2 = -(acx*ax + acy*ay);
+		if (d1 <= 0 && d2 <= 0) {
+			keep(s, 0, -1);
+			return false;
+		}
+		float d3 = -(abx*bx + aby*by), d4 = -(acx*bx + acy*by);
+		if (d3 >= 0 && d4 <= d3) {
+			keep(s, 1, -1);
+			return false;
+		}
+		float vc = d1*d4 - d3*d2;
+		if (vc <= 0 && d1 >= 0 && d3 <= 0) {
+			keep(s, 0, 1);
+			closestOnSegment(s, 0, 1);
+			return false;
+		}
+		float d5 = -(abx*cx + aby*cy), d6 = -(acx*cx + acy*cy);
+		if (d6 >= 0 && d5 <= d6) {
+			keep(s, 2, -1);
+			return false;
+		}
+		float vb = d5*d2 - d1*d6;
+		if (vb <= 0 && d2 >= 0 && d6 <= 0) {
+			keep(s, 0, 2);
+			closestOnSegment(s, 0, 1);
+			return false;
+		}
+		float va = d3*d6 - d5*d4;
+		if (va <= 0 && (d4-d3) >= 0 && (d5-d6) >= 0) {
+			keep(s, 1, 2);
+			closestOnSegment(s, 0, 1);
+			return false;
+		}
+		return true;
+	}
+
+	/*Closest point to origin on simplex segment i-j, dropping an
+	 * endpoint from simplex if that is the closest point.*/
+	private static void closestOnSegment(Scratch s, int i, int j) {
+		float ax = s.sx[i], ay = s.sy[i];
+		float abx = s.sx[j]-ax, aby = s.sy[j]-ay;
+		float len2 = abx*abx + aby*aby;
+		float t = len2 == 0 ? 0 : -(ax*abx + ay*aby)/len2;
+		if (t <= 0) {
+			keep(s, i, -1);
+		}
+		else if (t >= 1) {
+			keep(s, j, -1);
+		}
+		else {
+			s.vx = ax + t*abx;
+			s.vy = ay + t*aby;
+		}
+	}
+
+	/*Shrinks simplex to points i and j (j < 0 for just i).*/
+	private static void keep(Scratch s, int i, int j) {
+		float ix = s.sx[i], iy = s.sy[i];
+		if (j >= 0) {
+			float jx = s.sx[j], jy = s.sy[j];
+			s.sx[1] = jx;
+			s.sy[1] = jy;
+			s.n = 2;
+		}
+		else {
+			s.n = 1;
+			s.vx = ix;
+			s.vy = iy;
+		}
+		s.sx[0] = ix;
+		s.sy[0] = iy;
+	}
+
+	/* EPA from the simplex GJK left around the origin. Returns false if
+	 * origin is on the edge of A - B (only touching); otherwise puts the
+	 * outward normal of the closest edge in s.nx, s.ny and its distance
+	 * from the origin in s.depth.*/
+	private static boolean epa(PolygonShape a, PolygonShape b, Scratch s) {
+		if (!initPolytope(a, b, s))
+			return false;
+		for (int iter=0; iter<MAX_ITERATIONS; iter++) {
+			//Edge closest to origin
+			int closest = -1;
+			float minDist = Float.POSITIVE_INFINITY, nx = 0, ny = 0;
+			for (int i=0; i<s.count; i++) {
+				int j = i+1 == s.count ? 0 : i+1;
+				float ex = s.px[j]-s.px[i], ey = s.py[j]-s.py[i];
+				float len = (float) Math.sqrt(ex*ex + ey*ey);
+				if (len == 0)
+					continue;
+				float ix = ey/len, iy = -ex/len;
+				float dist = ix*s.px[i] + iy*s.py[i];
+				if (dist < minDist) {
+					minDist = dist;
+					nx = ix;
+					ny = iy;
+					closest = i;
+				}
+			}
+			if (closest < 0 || minDist <= 0)
+				return false;
+			support(a, b, nx, ny, s);
+			float d = nx*s.wx + ny*s.wy;
+			s.nx = nx;
+			s.ny = ny;
+			s.depth = minDist;
+			//Edge is on A - B, nothing further out in its direction
+			if (d - minDist <= TOLERANCE*Math.max(1, d))
+				return true;
+			insert(s, closest+1, s.wx, s.wy);
+		}
+		return true;
+	}
+
+	/* Starts EPA polytope, counterclockwise, from GJK's simplex. A simplex
+	 * that is only a segment through the origin gets a point on each side
+	 * of it. Returns false if origin is on the edge of A - B.*/
+	private static boolean initPolytope(PolygonShape a, PolygonShape b, Scratch s) {
+		s.count = 0;
+		if (s.n == 3) {
+			float cross = (s.sx[1]-s.sx[0])*(s.sy[2]-s.sy[0]) - (s.sy[1]-s.sy[0])*(s.sx[2]-s.sx[0]);
+			if (cross != 0) {
+				int second = cross > 0 ? 1 : 2, third = cross > 0 ? 2 : 1;
+				insert(s, 0, s.sx[0], s.sy[0]);
+				insert(s, 1, s.sx[second], s.sy[second]);
+				insert(s, 2, s.sx[third], s.sy[third]);
+				return true;
+			}
+		}
+		//Origin is on a point or segment of simplex; points of A - B are on its edge
+		if (s.n < 2)
+			return false;
+		float px = s.sx[0], py = s.sy[0], qx = s.sx[s.n-1], qy = s.sy[s.n-1];
+		float lx = -(qy-py), ly = qx-px;
+		if (lx == 0 && ly == 0)
+			return false;
+		support(a, b, -lx, -ly, s);
+		float rx = s.wx, ry = s.wy;
+		if (-(lx*rx + ly*ry) <= 0)
+			return false;
+		support(a, b, lx, ly, s);
+		if (lx*s.wx + ly*s.wy <= 0)
+			return false;
+		insert(s, 0, px, py);
+		insert(s, 1, rx, ry);
+		insert(s, 2, qx, qy);
+		insert(s, 3, s.wx, s.wy);
+		return true;
+	}
+
+	private static void insert(Scratch s, int at, float x, float y) {
+		if (s.count == s.px.length) {
+			s.px = Arrays.copyOf(s.px, s.count*2);
+			s.py = Arrays.copyOf(s.py, s.count*2);
+		}
+		System.arraycopy(s.px, at, s.px, at+1, s.count-at);
+		System.arraycopy(s.py, at, s.py, at+1, s.count-at);
+		s.px[at] = x;
+		s.py[at] = y;
+		s.count++;
+	}
+
+	/* Point of A - B farthest in direction (dx, dy), into s.wx, s.wy.
+	 * Reads vertex coordinates straight off the polygons, no Vec2fs.*/
+	private static void support(PolygonShape a, PolygonShape b, float dx, float dy, Scratch s) {
+		int i = farthest(a, dx, dy);
+		float bx = s.cx, by = s.cy;
+		if (b != null) {
+			int j = farthest(b, -dx, -dy);
+			bx = b.getVertexX(j);
+			by = b.getVertexY(j);
+		}
+		s.wx = a.getVertexX(i) - bx;
+		s.wy = a.getVertexY(i) - by;
+	}
+	/*Index of vertex of p farthest in direction (dx, dy).*/
+	private static int farthest(PolygonShape p, float dx, float dy) {
+		int best = 0;
+		float max = p.getVertexX(0)*dx + p.getVertexY(0)*dy;
+		for (int i=1; i<p.getSize(); i++) {
+			float proj = p.getVertexX(i)*dx + p.getVertexY(i)*dy;
+			if (proj > max) {
+				max = proj;
+				best = i;
+			}
+		}
+		return best;
+	}
+
+	private static class Scratch {
+		//Simplex, and closest point on it
+		private float[] sx = new float[3], sy = new float[3];
+		private int n;
+		private float vx, vy;
+		//Last support point
+		private float wx, wy;
+		//EPA polytope and result
+		private float[] px = new float[16], py = new float[16];
+		private int count;
+		private float nx, ny, depth;
+		//Circle center, standing in for B
+		private float cx, cy;
+	}
+}
@@ -0,0 +1,16 @@
+package miweinst.engine.collisiondetection;
+
+import miweinst.engine.shape.Shape;
+
+/* Narrowphase stage of collision detection: the exact test between two
+ * Shapes whose bounds overlap. Same contract as Shape.collides; returns
+ * whether a and b collide and, if they do, sets ShapeCollisionInfo on
+ * both, each with the MTV that moves that Shape out of the other. On no
+ * collision, infos are left null or as the Shapes' own tests leave them.
+ * 
+ * Implementations are called from ParallelNarrowphase's threads at once,
+ * so they must not keep state between calls.*/
+
+public interface Narrowphase {
+	boolean collides(Shape a, Shape b);
+}
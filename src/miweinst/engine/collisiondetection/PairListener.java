@@ -0,0 +1,11 @@
+package miweinst.engine.collisiondetection;
+
+import miweinst.engine.world.PhysicsEntity;
+
+/* Notified by a Broadphase when the bounds of two 
+ * Entities start or stop overlapping.*/
+
+public interface PairListener {
+	void overlapBegin(PhysicsEntity a, PhysicsEntity b);
+	void overlapEnd(PhysicsEntity a, PhysicsEntity b);
+}
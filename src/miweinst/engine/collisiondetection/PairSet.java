@@ -0,0 +1,145 @@
+package miweinst.engine.collisiondetection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import miweinst.engine.world.PhysicsEntity;
+
+/* Persistent set of overlapping Entity pairs kept by a Broadphase
+ * between steps. Every pair is stored in the partner list of both 
+ * Entities, and the PairListener is notified only when a pair is 
+ * added or removed, not every step it persists.*/
+
+public class PairSet {
+	
+	private static final List<PhysicsEntity> NONE = Collections.emptyList();
+	
+	private HashMap<PhysicsEntity, Partners> _partners;
+	private PairListener _listener;
+	//Incremented every pass of sync, marks Entities seen in that pass
+	private int _stamp;
+	
+	public PairSet() {
+		_partners = new HashMap<PhysicsEntity, Partners>();
+		_listener = null;
+		_stamp = 0;
+	}
+	
+	public void setListener(PairListener listener) {
+		_listener = listener;
+	}
+	
+	/*Returns Entities overlapping e; empty if none. Not a copy.*/
+	public List<PhysicsEntity> getPartners(PhysicsEntity e) {
+		Partners p = _partners.get(e);
+		if (p == null) 
+			return NONE;
+		return p.list;
+	}
+	
+	public boolean contains(PhysicsEntity a, PhysicsEntity b) {
+		Partners p = _partners.get(a);
+		return p != null && p.list.contains(b);
+	}
+	
+	/*Adds pair and fires overlapBegin. Does nothing if already a pair.*/
+	public void add(PhysicsEntity a, PhysicsEntity b) {
+		if (contains(a, b)) 
+			return;
+		pair(a, b);
+	}
+	
+	/*Removes pair and fires overlapEnd. Does nothing if not a pair.*/
+	public void remove(PhysicsEntity a, PhysicsEntity b) {
+		Partners p = _partners.get(a);
+		if (p == null || !p.list.remove(b)) 
+			return;
+		_partners.get(b).list.remove(a);
+		if (_listener != null) 
+			_listener.overlapEnd(a, b);
+	}
+	
+	/*Removes every pair containing e.*/
+	public void removeAll(PhysicsEntity e) {
+		Partners p = _partners.remove(e);
+		if (p == null) 
+			return;
+		for (PhysicsEntity other: p.list) {
+			_partners.get(other).list.remove(e);
+			if (_listener != null) 
+				_listener.overlapEnd(e, other);
+		}
+	}
+	
+	/*Makes current the exact set of partners of e, firing
+	 * overlapEnd for lost pairs and overlapBegin for new ones.
+	 * Membership is checked by stamping Entities, so this is linear
+	 * in the number of partners instead of quadratic.*/
+	public void sync(PhysicsEntity e, List<PhysicsEntity> current) {
+		ArrayList<PhysicsEntity> list = partnersOf(e).list;
+		//Stamp everything still overlapping, then drop unstamped partners in place
+		_stamp++;
+		for (int i=0; i<current.size(); i++) 
+			partnersOf(current.get(i)).stamp = _stamp;
+		int kept = 0;
+		for (int i=0; i<list.size(); i++) {
+			PhysicsEntity other = list.get(i);
+			if (_partners.get(other).stamp == _stamp) {
+				list.set(kept++, other);
+				continue;
+			}
+			_partners.get(other).list.remove(e);
+			if (_listener != null) 
+				_listener.overlapEnd(e, other);
+		}
+		for (int i=list.size()-1; i>=kept; i--) 
+			list.remove(i);
+		//Stamp remaining partners, anything unstamped in current is new
+		_stamp++;
+		for (int i=0; i<list.size(); i++) 
+			_partners.get(list.get(i)).stamp = _stamp;
+		for (int i=0; i<current.size(); i++) {
+			PhysicsEntity other = current.get(i);
+			Partners p = _partners.get(other);
+			if (p.stamp == _stamp || other == e) 
+				continue;
+			p.stamp = _stamp;
+			pair(e, other);
+		}
+	}
+	
+	/*Forgets every pair without notifying listener.*/
+	public void clear() {
+		_partners.clear();
+	}
+	
+	/*Records a pair known not to exist yet and fires overlapBegin.*/
+	private void pair(PhysicsEntity a, PhysicsEntity b) {
+		partnersOf(a).list.add(b);
+		partnersOf(b).list.add(a);
+		if (_listener != null) 
+			_listener.overlapBegin(a, b);
+	}
+	
+	private Partners partnersOf(PhysicsEntity e) {
+		Partners p = _partners.get(e);
+		if (p == null) {
+			p = new Partners();
+			_partners.put(e, p);
+		}
+		return p;
+	}
+	
+	/*Partner list of one Entity, plus the sync pass it was last seen in.*/
+	private static class Partners {
+		private ArrayList<PhysicsEntity> list;
+		private int stamp;
+		
+		private Partners() {
+			list = new ArrayList<PhysicsEntity>();
+			stamp = -1;
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package miweinst.engine.collisiondetection;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import miweinst.engine.shape.Shape;
+import miweinst.engine.world.PhysicsEntity;
+
+/* Runs shape collision tests of a step's candidate pairs ahead of time,
+ * split across a ForkJoinPool, each into its own CollisionLog. The pair
+ * loop then replays a pair's log instead of testing it again, in the same
+ * order it always tests pairs, so response stays single threaded and
+ * results are the same as testing every pair in the loop.
+ *
+ * Tests run against where Shapes were at the start of the step. Nothing
+ * moves during the loop any more (response waits for the solver), but a
+ * collides override still might, so a result is only replayed if neither
+ * Shape changed since (see Shape.getVersion); otherwise the pair is
+ * tested again in the loop.*/
+
+public class ParallelNarrowphase {
+
+	//Fewest pairs given to one task before it splits no further
+	private static final int GRAIN = 4;
+
+	private ForkJoinPool _pool;
+	//Pairs added this step, and Pair objects kept for reuse
+	private ArrayList<Pair> _pairs;
+	private ArrayList<Pair> _free;
+	//Pairs by Entity whose collides is called
+	private HashMap<PhysicsEntity, ArrayList<Pair>> _byEntity;
+	private ArrayList<ArrayList<Pair>> _freeLists;
+	private Narrowphase _tester;
+
+	public ParallelNarrowphase(int threads) {
+		_pool = new ForkJoinPool(threads);
+		_pairs = new ArrayList<Pair>();
+		_free = new ArrayList<Pair>();
+		_byEntity = new HashMap<PhysicsEntity, ArrayList<Pair>>();
+		_freeLists = new ArrayList<ArrayList<Pair>>();
+	}
+
+	public int getThreads() {
+		return _pool.getParallelism();
+	}
+
+	/*Stops pool threads. Not usable after.*/
+	public void shutdown() {
+		_pool.shutdown();
+	}
+
+	/*Forgets every pair and result.*/
+	public void clear() {
+		for (Pair p: _pairs) {
+			p.a = p.b = null;
+			p.shapeA = p.shapeB = null;
+			p.log.clear();
+			_free.add(p);
+		}
+		_pairs.clear();
+		for (ArrayList<Pair> list: _byEntity.values()) {
+			list.clear();
+			_freeLists.add(list);
+		}
+		_byEntity.clear();
+	}
+
+	/*Adds pair to be tested as a.collides(b).*/
+	public void add(PhysicsEntity a, PhysicsEntity b) {
+		Pair p = _free.isEmpty() ? new Pair() : _free.remove(_free.size()-1);
+		p.a = a;
+		p.b = b;
+		p.shapeA = a.getShape();
+		p.shapeB = b.getShape();
+		_pairs.add(p);
+		ArrayList<Pair> list = _byEntity.get(a);
+		if (list == null) {
+			list = _freeLists.isEmpty() ? new ArrayList<Pair>() : _freeLists.remove(_freeLists.size()-1);
+			_byEntity.put(a, list);
+		}
+		list.add(p);
+	}
+
+	public int size() {
+		return _pairs.size();
+	}
+
+	/*Tests every pair added since clear with narrowphase,
+	 * blocking until all are done.*/
+	public void run(Narrowphase narrowphase) {
+		_tester = narrowphase;
+		for (Pair p: _pairs) {
+			p.versionA = p.shapeA.getVersion();
+			p.versionB = p.shapeB.getVersion();
+		}
+		if (!_pairs.isEmpty())
+			_pool.invoke(new TestPairs(0, _pairs.size()));
+	}
+
+	/* If pair was tested ahead of time and neither Shape has changed
+	 * since, replays the test's writes to the Shapes and returns its
+	 * result. Returns null if the pair has to be tested again.*/
+	public Boolean replay(PhysicsEntity a, PhysicsEntity b) {
+		ArrayList<Pair> list = _byEntity.get(a);
+		if (list == null)
+			return null;
+		for (Pair p: list) {
+			if (p.b != b)
+				continue;
+			if (p.shapeA != a.getShape() || p.shapeB != b.getShape()
+					|| p.versionA != p.shapeA.getVersion() || p.versionB != p.shapeB.getVersion()
+					|| !p.log.isReplayable())
+				return null;
+			p.log.replay();
+			return p.collides;
+		}
+		return null;
+	}
+
+	private static class Pair {
+		private PhysicsEntity a, b;
+		private Shape shapeA, shapeB;
+		private int versionA, versionB;
+		private boolean collides;
+		private CollisionLog log = new CollisionLog();
+	}
+
+	/*Tests pairs in [start, end), splitting in half until small enough.*/
+	private class TestPairs extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private int _start, _end;
+
+		private TestPairs(int start, int end) {
+			_start = start;
+			_end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (_end - _start <= GRAIN) {
+				for (int i=_start; i<_end; i++) {
+					Pair p = _pairs.get(i);
+					p.collides = p.log.record(_tester, p.shapeA, p.shapeB);
+				}
+			}
+			else {
+				int mid = (_start + _end) >>> 1;
+				invokeAll(new TestPairs(_start, mid), new TestPairs(mid, _end));
+			}
+		}
+	}
+}
@@ -106,4 +106,71 @@ public class Ray {
 			return minT.y;
 		return null;
 	}
+	
+	/* The same casts on raw coordinates, so many rays can be cast
+	 * without making a Ray, Vec2f or Tuple for each: ray from (sx, sy)
+	 * along unit (dx, dy). Return distance along the ray to the point
+	 * cast(Shape) would return, or -1 if it would return null.*/
+	public static float cast(float sx, float sy, float dx, float dy, Shape s) {
+		if (s instanceof CircleShape) 
+			return cast(sx, sy, dx, dy, (CircleShape) s);
+		if (s instanceof AARectShape) {
+			AARectShape r = (AARectShape) s;
+			return castBox(sx, sy, dx, dy, r.getMinX(), r.getMinY(), r.getMaxX(), r.getMaxY());
+		}
+		if (s instanceof PolygonShape) 
+			return cast(sx, sy, dx, dy, (PolygonShape) s);
+		return -1;
+	}
+	public static float cast(float sx, float sy, float dx, float dy, CircleShape circle) {
+		Vec2f c = circle.getCentroid();
+		float r = circle.getRadius();
+		//Distance along ray to center's projection, and squared distance off it
+		float cx = c.x - sx, cy = c.y - sy;
+		float along = cx*dx + cy*dy;
+		if (along <= 0) 
+			return -1;
+		float off2 = Math.max(0, cx*cx + cy*cy - along*along);
+		if (off2 >= r*r) 
+			return -1;
+		float half = (float) Math.sqrt(r*r - off2);
+		//From outside, where the ray enters; from inside, where it leaves
+		if (cx*cx + cy*cy < r*r) 
+			return along + half;
+		return along - half;
+	}
+	public static float cast(float sx, float sy, float dx, float dy, PolygonShape p) {
+		float min = -1;
+		int n = p.getSize();
+		for (int i=0; i<n; i++) {
+			int j = i < n-1 ? i+1 : 0;
+			float t = castEdge(sx, sy, dx, dy, p.getVertexX(i), p.getVertexY(i), p.getVertexX(j), p.getVertexY(j));
+			if (t > 0 && (min < 0 || t < min)) 
+				min = t;
+		}
+		return min;
+	}
+	private static float castBox(float sx, float sy, float dx, float dy, float minX, float minY, float maxX, float maxY) {
+		float min = -1;
+		float t = castEdge(sx, sy, dx, dy, maxX, maxY, minX, maxY);
+		if (t > 0 && (min < 0 || t < min)) min = t;
+		t = castEdge(sx, sy, dx, dy, minX, maxY, minX, minY);
+		if (t > 0 && (min < 0 || t < min)) min = t;
+		t = castEdge(sx, sy, dx, dy, minX, minY, maxX, minY);
+		if (t > 0 && (min < 0 || t < min)) min = t;
+		t = castEdge(sx, sy, dx, dy, maxX, minY, maxX, maxY);
+		if (t > 0 && (min < 0 || t < min)) min = t;
+		return min;
+	}
+	/*rayEdge on raw coordinates: distance to edge ab if ray crosses it ahead, else -1.*/
+	private static float castEdge(float sx, float sy, float dx, float dy, float ax, float ay, float bx, float by) {
+		float aCross = (ax - sx)*dy - (ay - sy)*dx;
+		float bCross = (bx - sx)*dy - (by - sy)*dx;
+		if (aCross*bCross >= 0) 
+			return -1;
+		//Edge normal; needn't be unit, it cancels out
+		float nx = -(ay - by), ny = ax - bx;
+		float t = ((bx - sx)*nx + (by - sy)*ny)/(dx*nx + dy*ny);
+		return t > 0 ? t : -1;
+	}
 }
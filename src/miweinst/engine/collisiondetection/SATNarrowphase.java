@@ -0,0 +1,13 @@
+package miweinst.engine.collisiondetection;
+
+import miweinst.engine.shape.Shape;
+
+/* Default narrowphase, the Shapes' own double dispatch tests
+ * (separating axes for polygons and circles).*/
+
+public class SATNarrowphase implements Narrowphase {
+	@Override
+	public boolean collides(Shape a, Shape b) {
+		return a.collides(b);
+	}
+}
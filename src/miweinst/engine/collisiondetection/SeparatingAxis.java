@@ -1,7 +1,5 @@
 package miweinst.engine.collisiondetection;
 
-import java.awt.geom.PathIterator;
-
 import cs195n.Vec2f;
 import miweinst.engine.shape.AARectShape;
 import miweinst.engine.shape.CircleShape;
@@ -29,10 +27,7 @@ public class SeparatingAxis {
 	 * range projected onto _axis. Returns a boolean for whether
 	 * those ranges' min/max overlap.*/
 	public boolean isOverlapping(Vec2f rangeA, Vec2f rangeB) {
-		if (rangeA.x < rangeB.y && rangeB.x < rangeA.y) {
-			return true;
-		}		
-		return false;
+		return isOverlapping(rangeA.x, rangeA.y, rangeB.x, rangeB.y);
 	}
 	
 	/*Returns the Minimum Translation Vector of
@@ -40,20 +35,10 @@ public class SeparatingAxis {
 	 * ranges are stored in Vec2f as Vec2f(min, max). 
 	 * Uses class Float so it can return null. */
 	public Float intervalMTV(Vec2f rangeA, Vec2f rangeB) {
-		if (this.isOverlapping(rangeA, rangeB)) {
-			Float aRight = rangeB.y - rangeA.x;
-			Float aLeft = rangeA.y - rangeB.x;
-			//Shouldn't occur because only called on collision
-			if (aLeft < 0 || aRight < 0) {
-				System.err.println("Error: No actual overlap? (SeparatingAxis.intervalMTV)");
-				return null;
-			}
-			if (aRight < aLeft) 
-				return aRight;
-			else 
-				return -aLeft;
-		}
-		else return null;
+		float mtv = intervalMTV(rangeA.x, rangeA.y, rangeB.x, rangeB.y);
+		if (Float.isNaN(mtv)) 
+			return null;
+		return mtv;
 	}
 	
 	/* Projects the center of the circle
@@ -88,36 +73,56 @@ public class SeparatingAxis {
 	 * stores reference to minimum and maximum
 	 * projection of vertex to return in Vec2f.*/
 	public Vec2f project(PolygonShape p) {		
-		Float min = null;
-		Float max = null;
-		//Project each vertex of each shape
-		PathIterator iter = p.toPath().getPathIterator(null);
-		while (iter.isDone() == false) {
-			float[] arr = new float[2];
-			iter.currentSegment(arr);			
-			if (iter.currentSegment(arr) == PathIterator.SEG_CLOSE) {
-				break;
-			}		
-			Vec2f vert = new Vec2f(arr[0], arr[1]);
-			float proj = vert.dot(_axis);
-
-			//First iteration, initialize min/max at vertex[0]
-			if (min == null && max == null) {
-				min = max = proj;
-			}
-			if (proj < min) {
-				min = proj;
-			}
-			if (proj > max) {
-				max = proj;
-			}
-			iter.next();
-			}				
-		Vec2f range = new Vec2f(min, max);
-		return range;
+		return new Vec2f(projectMin(p, _axis.x, _axis.y), projectMax(p, _axis.x, _axis.y));
 	}
 	
 	public float projectPoint(Vec2f p) {
 		return p.dot(_axis);
 	}
+	
+	/* Float versions of the above, for collision tests that go through
+	 * many axes a step and shouldn't make a SeparatingAxis and range
+	 * Vec2fs for each. Axis (ax, ay) must already be normalized; ranges
+	 * are passed as min, max.*/
+	
+	public static boolean isOverlapping(float aMin, float aMax, float bMin, float bMax) {
+		return aMin < bMax && bMin < aMax;
+	}
+	/*MTV of overlap of range a out of range b, NaN if no overlap.*/
+	public static float intervalMTV(float aMin, float aMax, float bMin, float bMax) {
+		if (!isOverlapping(aMin, aMax, bMin, bMax)) 
+			return Float.NaN;
+		float aRight = bMax - aMin;
+		float aLeft = aMax - bMin;
+		//Shouldn't occur because only called on collision
+		if (aLeft < 0 || aRight < 0) {
+			System.err.println("Error: No actual overlap? (SeparatingAxis.intervalMTV)");
+			return Float.NaN;
+		}
+		if (aRight < aLeft) 
+			return aRight;
+		else 
+			return -aLeft;
+	}
+	/*Min and max of p's vertices projected onto (ax, ay).*/
+	public static float projectMin(PolygonShape p, float ax, float ay) {
+		int n = p.getSize();
+		float min = p.getVertexX(0)*ax + p.getVertexY(0)*ay;
+		for (int i=1; i<n; i++) {
+			float proj = p.getVertexX(i)*ax + p.getVertexY(i)*ay;
+			if (proj < min) 
+				min = proj;
+		}
+		return min;
+	}
+	public static float projectMax(PolygonShape p, float ax, float ay) {
+		int n = p.getSize();
+		float max = p.getVertexX(0)*ax + p.getVertexY(0)*ay;
+		for (int i=1; i<n; i++) {
+			float proj = p.getVertexX(i)*ax + p.getVertexY(i)*ay;
+			if (proj > max) 
+				max = proj;
+		}
+		return max;
+	}
 }
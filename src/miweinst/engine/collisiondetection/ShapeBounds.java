@@ -0,0 +1,78 @@
+package miweinst.engine.collisiondetection;
+
+import miweinst.engine.shape.Shape;
+
+/* Helpers for axis-aligned bounds stored as four floats,
+ * [minX, minY, maxX, maxY], as returned by Shape.getBounds. 
+ * Bounds are conservative for the narrowphase: if two bounds do
+ * not overlap, Shape.collides on the two shapes cannot detect 
+ * a collision.*/
+
+public class ShapeBounds {
+	public static final int MIN_X = 0, MIN_Y = 1, MAX_X = 2, MAX_Y = 3;
+	private static final float RAY_EPSILON = .001f;
+	
+	public static boolean isEmpty(float[] bounds) {
+		return bounds[MIN_X] > bounds[MAX_X] || bounds[MIN_Y] > bounds[MAX_Y];
+	}
+	
+	public static boolean equal(float[] a, float[] b) {
+		return a[MIN_X] == b[MIN_X] && a[MIN_Y] == b[MIN_Y] 
+				&& a[MAX_X] == b[MAX_X] && a[MAX_Y] == b[MAX_Y];
+	}
+	
+	/* Slab test of ray from (ox, oy) in direction (dx, dy) against box.
+	 * Returns ray parameter t >= 0 where ray enters box (0 if it starts 
+	 * inside), or POSITIVE_INFINITY if it misses. Box is padded by 
+	 * RAY_EPSILON so hits exactly on an edge aren't lost to rounding.*/
+	public static float rayEntry(float minX, float minY, float maxX, float maxY,
+			float ox, float oy, float dx, float dy) {
+		float tMin = 0, tMax = Float.POSITIVE_INFINITY;
+		minX -= RAY_EPSILON; minY -= RAY_EPSILON;
+		maxX += RAY_EPSILON; maxY += RAY_EPSILON;
+		//X slab
+		if (dx == 0) {
+			if (ox < minX || ox > maxX) return Float.POSITIVE_INFINITY;
+		}
+		else {
+			float t1 = (minX - ox)/dx, t2 = (maxX - ox)/dx;
+			tMin = Math.max(tMin, Math.min(t1, t2));
+			tMax = Math.min(tMax, Math.max(t1, t2));
+		}
+		//Y slab
+		if (dy == 0) {
+			if (oy < minY || oy > maxY) return Float.POSITIVE_INFINITY;
+		}
+		else {
+			float t1 = (minY - oy)/dy, t2 = (maxY - oy)/dy;
+			tMin = Math.max(tMin, Math.min(t1, t2));
+			tMax = Math.min(tMax, Math.max(t1, t2));
+		}
+		if (tMin > tMax) 
+			return Float.POSITIVE_INFINITY;
+		return tMin;
+	}
+	public static float rayEntry(float[] b, float ox, float oy, float dx, float dy) {
+		return rayEntry(b[MIN_X], b[MIN_Y], b[MAX_X], b[MAX_Y], ox, oy, dx, dy);
+	}
+	
+	/*Inclusive overlap test, because touching shapes 
+	 * can still be reported as colliding by narrowphase.*/
+	public static boolean overlaps(float[] a, float[] b) {
+		return a[MIN_X] <= b[MAX_X] && b[MIN_X] <= a[MAX_X] 
+				&& a[MIN_Y] <= b[MAX_Y] && b[MIN_Y] <= a[MAX_Y];
+	}
+	
+	/*Same, for cached bounds of two Shapes.*/
+	public static boolean overlaps(Shape a, Shape b) {
+		return a.getBoundsMinX() <= b.getBoundsMaxX() && b.getBoundsMinX() <= a.getBoundsMaxX() 
+				&& a.getBoundsMinY() <= b.getBoundsMaxY() && b.getBoundsMinY() <= a.getBoundsMaxY();
+	}
+	
+	/*Squared distance from (x, y) to nearest point of bounds, 0 inside.*/
+	public static float dist2(float[] b, float x, float y) {
+		float dx = Math.max(0, Math.max(b[MIN_X] - x, x - b[MAX_X]));
+		float dy = Math.max(0, Math.max(b[MIN_Y] - y, y - b[MAX_Y]));
+		return dx*dx + dy*dy;
+	}
+}
@@ -0,0 +1,324 @@
+package miweinst.engine.collisiondetection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import miweinst.engine.world.PhysicsEntity;
+import cs195n.Vec2f;
+
+/* Uniform grid broadphase. Space is divided into square cells of 
+ * _cellSize, and each Entity is stored in every cell its bounds touch,
+ * in a CellTable keyed by packed cell coordinates (so the grid is unbounded
+ * and untouched cells cost nothing). Querying an Entity only looks at the 
+ * cells it touches. 
+ * 
+ * Entities that span more than MAX_CELLS cells (i.e. level bounds, 
+ * long curved paths) are kept in a separate list and tested against
+ * every query, so they don't flood the grid.
+ * 
+ * Overlapping pairs of an Entity are recomputed from its cells 
+ * whenever its bounds change, and kept in a PairSet.*/
+
+public class SpatialHashBroadphase implements Broadphase {
+	
+	public static final float DEFAULT_CELL_SIZE = 10f;
+	private static final int MAX_CELLS = 64;
+	
+	private float _cellSize;
+	private CellTable _cells;
+	private HashMap<PhysicsEntity, Proxy> _proxies;
+	private ArrayList<Proxy> _oversized;
+	//Incremented every query, so Entities in multiple cells only reported once
+	private int _stamp;
+	private float[] _scratch;
+	private PairSet _pairs;
+	private ArrayList<PhysicsEntity> _overlapping;
+	
+	public SpatialHashBroadphase() {
+		this(DEFAULT_CELL_SIZE);
+	}
+	public SpatialHashBroadphase(float cellSize) {
+		_cellSize = cellSize;
+		_cells = new CellTable();
+		_proxies = new HashMap<PhysicsEntity, Proxy>();
+		_oversized = new ArrayList<Proxy>();
+		_stamp = 0;
+		_scratch = new float[4];
+		_pairs = new PairSet();
+		_overlapping = new ArrayList<PhysicsEntity>();
+	}
+	
+	public float getCellSize() {
+		return _cellSize;
+	}
+
+	@Override
+	public void add(PhysicsEntity e) {
+		if (_proxies.containsKey(e)) {
+			update(e);
+			return;
+		}
+		Proxy p = new Proxy(e);
+		e.getShape().getBounds(p.bounds);
+		_proxies.put(e, p);
+		insert(p);
+		syncPairs(p);
+	}
+
+	@Override
+	public void remove(PhysicsEntity e) {
+		Proxy p = _proxies.remove(e);
+		if (p != null) {
+			erase(p);
+			_pairs.removeAll(e);
+		}
+	}
+	
+	@Override
+	public void clear() {
+		_cells.clear();
+		_proxies.clear();
+		_oversized.clear();
+		_pairs.clear();
+	}
+	
+	@Override
+	public void setPairListener(PairListener listener) {
+		_pairs.setListener(listener);
+	}
+
+	@Override
+	public boolean update(PhysicsEntity e) {
+		Proxy p = _proxies.get(e);
+		if (p == null) {
+			add(e);
+			return true;
+		}
+		e.getShape().getBounds(_scratch);
+		if (ShapeBounds.equal(_scratch, p.bounds)) 
+			return false;
+		System.arraycopy(_scratch, 0, p.bounds, 0, 4);
+		//Only re-bucket if Entity moved into different cells
+		if (p.oversized || cell(_scratch[ShapeBounds.MIN_X]) != p.minCX 
+				|| cell(_scratch[ShapeBounds.MIN_Y]) != p.minCY
+				|| cell(_scratch[ShapeBounds.MAX_X]) != p.maxCX 
+				|| cell(_scratch[ShapeBounds.MAX_Y]) != p.maxCY) {
+			erase(p);
+			insert(p);
+		}
+		syncPairs(p);
+		return true;
+	}
+
+	@Override
+	public void query(PhysicsEntity e, List<PhysicsEntity> out) {
+		Proxy p = _proxies.get(e);
+		if (p != null) {
+			out.addAll(_pairs.getPartners(e));
+		}
+		else {
+			e.getShape().getBounds(_scratch);
+			collect(null, _scratch, out);
+		}
+	}
+	
+	@Override
+	public void queryRegion(float[] bounds, List<PhysicsEntity> out) {
+		collect(null, bounds, out);
+	}
+	
+	/*Rays are unbounded, so this checks every proxy.*/
+	@Override
+	public void queryRay(Vec2f src, Vec2f dst, List<PhysicsEntity> out) {
+		float dx = dst.x - src.x, dy = dst.y - src.y;
+		for (Proxy p: _proxies.values()) 
+			if (ShapeBounds.rayEntry(p.bounds, src.x, src.y, dx, dy) != Float.POSITIVE_INFINITY) 
+				out.add(p.entity);
+	}
+	
+	/*Finds current overlaps of proxy from cells and updates its pairs.*/
+	private void syncPairs(Proxy p) {
+		_overlapping.clear();
+		collect(p, p.bounds, _overlapping);
+		_pairs.sync(p.entity, _overlapping);
+	}
+	
+	/*Populates out with every proxy other than p overlapping bounds.*/
+	private void collect(Proxy p, float[] bounds, List<PhysicsEntity> out) {
+		_stamp++;
+		for (Proxy other: _oversized) 
+			report(p, other, bounds, out);
+		if (ShapeBounds.isEmpty(bounds)) 
+			return;
+		//Oversized query Entity, check against every proxy instead of walking cells
+		if (cellCount(bounds) > MAX_CELLS) {
+			for (Proxy other: _proxies.values()) 
+				if (!other.oversized) 
+					report(p, other, bounds, out);
+			return;
+		}
+		int minCX = cell(bounds[ShapeBounds.MIN_X]), maxCX = cell(bounds[ShapeBounds.MAX_X]);
+		int minCY = cell(bounds[ShapeBounds.MIN_Y]), maxCY = cell(bounds[ShapeBounds.MAX_Y]);
+		for (int cx=minCX; cx<=maxCX; cx++) {
+			for (int cy=minCY; cy<=maxCY; cy++) {
+				ArrayList<Proxy> bucket = _cells.get(key(cx, cy));
+				if (bucket == null) continue;
+				for (Proxy other: bucket) 
+					report(p, other, bounds, out);
+			}
+		}
+	}
+	
+	/*Adds other to out if not already reported this query and bounds overlap.*/
+	private void report(Proxy p, Proxy other, float[] bounds, List<PhysicsEntity> out) {
+		if (other == p || other.stamp == _stamp) 
+			return;
+		other.stamp = _stamp;
+		if (ShapeBounds.overlaps(bounds, other.bounds)) 
+			out.add(other.entity);
+	}
+	
+	/*Puts proxy in every cell its bounds touch, or oversized list.*/
+	private void insert(Proxy p) {
+		if (ShapeBounds.isEmpty(p.bounds)) {
+			p.oversized = false;
+			p.minCX = p.minCY = 0;
+			p.maxCX = p.maxCY = -1;
+			return;
+		}
+		p.oversized = cellCount(p.bounds) > MAX_CELLS;
+		if (p.oversized) {
+			_oversized.add(p);
+			return;
+		}
+		p.minCX = cell(p.bounds[ShapeBounds.MIN_X]);
+		p.minCY = cell(p.bounds[ShapeBounds.MIN_Y]);
+		p.maxCX = cell(p.bounds[ShapeBounds.MAX_X]);
+		p.maxCY = cell(p.bounds[ShapeBounds.MAX_Y]);
+		for (int cx=p.minCX; cx<=p.maxCX; cx++) {
+			for (int cy=p.minCY; cy<=p.maxCY; cy++) {
+				_cells.getOrCreate(key(cx, cy)).add(p);
+			}
+		}
+	}
+	
+	/*Removes proxy from every cell it was inserted in. Emptied buckets
+	 * stay in the table, so Entities moving back and forth don't churn them.*/
+	private void erase(Proxy p) {
+		if (p.oversized) {
+			_oversized.remove(p);
+			return;
+		}
+		for (int cx=p.minCX; cx<=p.maxCX; cx++) {
+			for (int cy=p.minCY; cy<=p.maxCY; cy++) {
+				ArrayList<Proxy> bucket = _cells.get(key(cx, cy));
+				if (bucket != null) 
+					bucket.remove(p);
+			}
+		}
+	}
+	
+	private int cell(float coord) {
+		return (int) Math.floor(coord/_cellSize);
+	}
+	
+	private long cellCount(float[] bounds) {
+		//Infinite bounds always oversized
+		if (Float.isInfinite(bounds[ShapeBounds.MIN_X]) || Float.isInfinite(bounds[ShapeBounds.MAX_X])
+				|| Float.isInfinite(bounds[ShapeBounds.MIN_Y]) || Float.isInfinite(bounds[ShapeBounds.MAX_Y])) 
+			return Long.MAX_VALUE;
+		long w = (long) cell(bounds[ShapeBounds.MAX_X]) - cell(bounds[ShapeBounds.MIN_X]) + 1;
+		long h = (long) cell(bounds[ShapeBounds.MAX_Y]) - cell(bounds[ShapeBounds.MIN_Y]) + 1;
+		return w*h;
+	}
+	
+	/*Packs two cell coordinates into one long.*/
+	private static long key(int cx, int cy) {
+		return ((long) cx << 32) | (cy & 0xffffffffL);
+	}
+	
+	/* Buckets by packed cell key. Open addressing with linear probing on
+	 * primitive long keys, so cell lookups don't box. Slots are never 
+	 * removed, only all at once by clear(); a null bucket marks a free slot.*/
+	private static class CellTable {
+		private long[] keys;
+		private ArrayList<Proxy>[] buckets;
+		private int size;
+		
+		private CellTable() {
+			alloc(64);
+		}
+		
+		private ArrayList<Proxy> get(long key) {
+			int mask = keys.length - 1;
+			for (int i=slot(key, mask); buckets[i] != null; i=(i+1) & mask) 
+				if (keys[i] == key) 
+					return buckets[i];
+			return null;
+		}
+		
+		private ArrayList<Proxy> getOrCreate(long key) {
+			ArrayList<Proxy> bucket = get(key);
+			if (bucket != null) 
+				return bucket;
+			//Keep load under half so probes stay short
+			if (2*(size + 1) > keys.length) 
+				grow();
+			bucket = new ArrayList<Proxy>();
+			put(key, bucket);
+			size++;
+			return bucket;
+		}
+		
+		private void clear() {
+			Arrays.fill(buckets, null);
+			size = 0;
+		}
+		
+		private void put(long key, ArrayList<Proxy> bucket) {
+			int mask = keys.length - 1;
+			int i = slot(key, mask);
+			while (buckets[i] != null) 
+				i = (i+1) & mask;
+			keys[i] = key;
+			buckets[i] = bucket;
+		}
+		
+		private void grow() {
+			long[] oldKeys = keys;
+			ArrayList<Proxy>[] oldBuckets = buckets;
+			alloc(2*oldKeys.length);
+			for (int i=0; i<oldKeys.length; i++) 
+				if (oldBuckets[i] != null) 
+					put(oldKeys[i], oldBuckets[i]);
+		}
+		
+		@SuppressWarnings("unchecked")
+		private void alloc(int capacity) {
+			keys = new long[capacity];
+			buckets = new ArrayList[capacity];
+		}
+		
+		/*Mixes both packed coordinates into the low bits before masking.*/
+		private static int slot(long key, int mask) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int) (h >>> 32) & mask;
+		}
+	}
+	
+	private static class Proxy {
+		private PhysicsEntity entity;
+		private float[] bounds;
+		private int minCX, minCY, maxCX, maxCY;
+		private boolean oversized;
+		private int stamp;
+		
+		private Proxy(PhysicsEntity e) {
+			entity = e;
+			bounds = new float[4];
+			stamp = -1;
+		}
+	}
+}
@@ -0,0 +1,213 @@
+package miweinst.engine.collisiondetection;
+
+import java.util.Arrays;
+import java.util.List;
+
+/* Immutable bounding volume tree for things that never move, built once
+ * top-down: each node's items are split at the median center along the
+ * longer axis of its box, until LEAF_SIZE or fewer items remain. Boxes
+ * are stored in one flat float array, four floats per node, and items
+ * are reordered so every leaf is a contiguous range.
+ *
+ * Build a new tree if any item moves or the set of items changes. Never
+ * changes once built, so any number of threads can query it at once.*/
+
+public class StaticAABBTree<T> {
+
+	private static final int LEAF_SIZE = 2;
+
+	//Node boxes, [minX, minY, maxX, maxY] at 4*node
+	private float[] _boxes;
+	//Children of internal nodes, -1 for leaves
+	private int[] _left, _right;
+	//Range of items in leaves
+	private int[] _start, _count;
+	private int _nodeCount;
+
+	private Object[] _items;
+	private float[] _itemBounds;
+	private int _size;
+
+	//Traversal stack, one per thread querying; in a holder so it can grow
+	private static final ThreadLocal<int[][]> STACK = new ThreadLocal<int[][]>() {
+		@Override
+		protected int[][] initialValue() {
+			return new int[][] {new int[64]};
+		}
+	};
+
+	/*Takes items and their bounds, 4 floats per item in same order.
+	 * Items with empty bounds are left out, they overlap nothing.*/
+	public StaticAABBTree(List<? extends T> items, float[] bounds) {
+		_items = new Object[items.size()];
+		_itemBounds = new float[4*items.size()];
+		_size = 0;
+		float[] b = new float[4];
+		for (int i=0; i<items.size(); i++) {
+			System.arraycopy(bounds, 4*i, b, 0, 4);
+			if (ShapeBounds.isEmpty(b)) continue;
+			_items[_size] = items.get(i);
+			System.arraycopy(b, 0, _itemBounds, 4*_size, 4);
+			_size++;
+		}
+		int maxNodes = Math.max(1, 2*_size);
+		_boxes = new float[4*maxNodes];
+		_left = new int[maxNodes];
+		_right = new int[maxNodes];
+		_start = new int[maxNodes];
+		_count = new int[maxNodes];
+		_nodeCount = 0;
+		if (_size > 0)
+			build(0, _size);
+	}
+
+	/*Number of items in tree.*/
+	public int size() {
+		return _size;
+	}
+
+	@SuppressWarnings("unchecked")
+	public T getItem(int i) {
+		return (T) _items[i];
+	}
+
+	/*Copies bounds of item i into out.*/
+	public void getItemBounds(int i, float[] out) {
+		System.arraycopy(_itemBounds, 4*i, out, 0, 4);
+	}
+
+	/*Populates out with every item whose bounds overlap bounds.*/
+	@SuppressWarnings("unchecked")
+	public void queryRegion(float[] bounds, List<? super T> out) {
+		if (_size == 0 || ShapeBounds.isEmpty(bounds))
+			return;
+		float minX = bounds[ShapeBounds.MIN_X], minY = bounds[ShapeBounds.MIN_Y];
+		float maxX = bounds[ShapeBounds.MAX_X], maxY = bounds[ShapeBounds.MAX_Y];
+		int[][] stack = STACK.get();
+		int top = 0;
+		stack[0][top++] = 0;
+		while (top > 0) {
+			int node = stack[0][--top];
+			int n = 4*node;
+			if (minX > _boxes[n+2] || _boxes[n] > maxX || minY > _boxes[n+3] || _boxes[n+1] > maxY)
+				continue;
+			if (_left[node] < 0) {
+				for (int i=_start[node]; i<_start[node]+_count[node]; i++) {
+					int k = 4*i;
+					if (minX <= _itemBounds[k+2] && _itemBounds[k] <= maxX
+							&& minY <= _itemBounds[k+3] && _itemBounds[k+1] <= maxY)
+						out.add((T) _items[i]);
+				}
+			}
+			else {
+				top = push(stack, top, _left[node]);
+				top = push(stack, top, _right[node]);
+			}
+		}
+	}
+
+	/*Populates out with every item whose bounds might be hit
+	 * by ray from src in direction (dx, dy).*/
+	@SuppressWarnings("unchecked")
+	public void queryRay(float ox, float oy, float dx, float dy, List<? super T> out) {
+		if (_size == 0)
+			return;
+		int[][] stack = STACK.get();
+		int top = 0;
+		stack[0][top++] = 0;
+		while (top > 0) {
+			int node = stack[0][--top];
+			int n = 4*node;
+			if (ShapeBounds.rayEntry(_boxes[n], _boxes[n+1], _boxes[n+2], _boxes[n+3],
+					ox, oy, dx, dy) == Float.POSITIVE_INFINITY)
+				continue;
+			if (_left[node] < 0) {
+				for (int i=_start[node]; i<_start[node]+_count[node]; i++) {
+					int k = 4*i;
+					if (ShapeBounds.rayEntry(_itemBounds[k], _itemBounds[k+1], _itemBounds[k+2],
+							_itemBounds[k+3], ox, oy, dx, dy) != Float.POSITIVE_INFINITY)
+						out.add((T) _items[i]);
+				}
+			}
+			else {
+				top = push(stack, top, _left[node]);
+				top = push(stack, top, _right[node]);
+			}
+		}
+	}
+
+	private static int push(int[][] stack, int top, int node) {
+		if (top == stack[0].length)
+			stack[0] = Arrays.copyOf(stack[0], stack[0].length*2);
+		stack[0][top] = node;
+		return top+1;
+	}
+
+	/*Builds subtree over items [start, end), returns its node.*/
+	private int build(int start, int end) {
+		int node = _nodeCount++;
+		int n = 4*node;
+		_boxes[n] = _boxes[n+1] = Float.POSITIVE_INFINITY;
+		_boxes[n+2] = _boxes[n+3] = Float.NEGATIVE_INFINITY;
+		for (int i=start; i<end; i++) {
+			int k = 4*i;
+			_boxes[n] = Math.min(_boxes[n], _itemBounds[k]);
+			_boxes[n+1] = Math.min(_boxes[n+1], _itemBounds[k+1]);
+			_boxes[n+2] = Math.max(_boxes[n+2], _itemBounds[k+2]);
+			_boxes[n+3] = Math.max(_boxes[n+3], _itemBounds[k+3]);
+		}
+		if (end - start <= LEAF_SIZE) {
+			_left[node] = _right[node] = -1;
+			_start[node] = start;
+			_count[node] = end - start;
+			return node;
+		}
+		//Split at median center on longer axis
+		int axis = (_boxes[n+2] - _boxes[n]) >= (_boxes[n+3] - _boxes[n+1]) ? 0 : 1;
+		int mid = (start + end) >>> 1;
+		select(start, end-1, mid, axis);
+		_left[node] = build(start, mid);
+		_right[node] = build(mid, end);
+		return node;
+	}
+
+	/*Quickselect: reorders items in [lo, hi] so item k has
+	 * median center on axis, smaller centers before it.*/
+	private void select(int lo, int hi, int k, int axis) {
+		while (lo < hi) {
+			float pivot = center((lo + hi) >>> 1, axis);
+			int i = lo, j = hi;
+			while (i <= j) {
+				while (center(i, axis) < pivot) i++;
+				while (center(j, axis) > pivot) j--;
+				if (i <= j) {
+					swap(i, j);
+					i++;
+					j--;
+				}
+			}
+			if (k <= j)
+				hi = j;
+			else if (k >= i)
+				lo = i;
+			else
+				return;
+		}
+	}
+
+	/*Center of item i on axis, times two.*/
+	private float center(int i, int axis) {
+		return _itemBounds[4*i + axis] + _itemBounds[4*i + 2 + axis];
+	}
+
+	private void swap(int i, int j) {
+		Object item = _items[i];
+		_items[i] = _items[j];
+		_items[j] = item;
+		for (int c=0; c<4; c++) {
+			float f = _itemBounds[4*i + c];
+			_itemBounds[4*i + c] = _itemBounds[4*j + c];
+			_itemBounds[4*j + c] = f;
+		}
+	}
+}
@@ -0,0 +1,269 @@
+package miweinst.engine.collisiondetection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import miweinst.engine.world.PhysicsEntity;
+import cs195n.Vec2f;
+
+/* Sort and sweep broadphase along the x-axis. The min and max x of
+ * every Entity's bounds are kept in one persistent array sorted by value,
+ * and moved with insertion sort when the Entity moves. Since Entities only
+ * move a little each step, an endpoint usually only swaps with a few
+ * neighbors, and each swap of a min past a max is exactly where two
+ * intervals start or stop overlapping on x.
+ *
+ * Levels are long and horizontal, so one axis separates most Entities;
+ * Entities overlapping on x are then checked on y before being reported
+ * as a pair in the PairSet.*/
+
+public class SweepAndPruneBroadphase implements Broadphase {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	//Sorted endpoint values, and (proxy id << 1 | 1 if max) for each
+	private float[] _values;
+	private int[] _endpoints;
+	private int _count;
+
+	private ArrayList<Proxy> _byId;
+	private ArrayList<Integer> _freeIds;
+	private HashMap<PhysicsEntity, Proxy> _proxies;
+	private PairSet _pairs;
+	private ArrayList<PhysicsEntity> _overlapping;
+	private float[] _scratch;
+
+	public SweepAndPruneBroadphase() {
+		_values = new float[INITIAL_CAPACITY];
+		_endpoints = new int[INITIAL_CAPACITY];
+		_count = 0;
+		_byId = new ArrayList<Proxy>();
+		_freeIds = new ArrayList<Integer>();
+		_proxies = new HashMap<PhysicsEntity, Proxy>();
+		_pairs = new PairSet();
+		_overlapping = new ArrayList<PhysicsEntity>();
+		_scratch = new float[4];
+	}
+
+	@Override
+	public void add(PhysicsEntity e) {
+		if (_proxies.containsKey(e)) {
+			update(e);
+			return;
+		}
+		Proxy p;
+		if (_freeIds.isEmpty()) {
+			p = new Proxy(e, _byId.size());
+			_byId.add(p);
+		}
+		else {
+			p = new Proxy(e, _freeIds.remove(_freeIds.size()-1));
+			_byId.set(p.id, p);
+		}
+		_proxies.put(e, p);
+		e.getShape().getBounds(p.bounds);
+
+		if (_count+2 > _values.length) {
+			_values = Arrays.copyOf(_values, _values.length*2);
+			_endpoints = Arrays.copyOf(_endpoints, _endpoints.length*2);
+		}
+		//Append both endpoints, then sort them into place
+		p.minPos = _count;
+		_values[_count] = minKey(p.bounds);
+		_endpoints[_count++] = p.id << 1;
+		p.maxPos = _count;
+		_values[_count] = maxKey(p.bounds);
+		_endpoints[_count++] = p.id << 1 | 1;
+		sift(p.minPos);
+		sift(p.maxPos);
+		syncPairs(p);
+	}
+
+	@Override
+	public void remove(PhysicsEntity e) {
+		Proxy p = _proxies.remove(e);
+		if (p == null)
+			return;
+		//Max is after min, so remove it first
+		removeEndpoint(p.maxPos);
+		removeEndpoint(p.minPos);
+		for (Proxy other: p.xPartners)
+			other.xPartners.remove(p);
+		p.xPartners.clear();
+		_pairs.removeAll(e);
+		_byId.set(p.id, null);
+		_freeIds.add(p.id);
+	}
+
+	@Override
+	public void clear() {
+		_count = 0;
+		_byId.clear();
+		_freeIds.clear();
+		_proxies.clear();
+		_pairs.clear();
+	}
+
+	@Override
+	public boolean update(PhysicsEntity e) {
+		Proxy p = _proxies.get(e);
+		if (p == null) {
+			add(e);
+			return true;
+		}
+		e.getShape().getBounds(_scratch);
+		if (ShapeBounds.equal(_scratch, p.bounds))
+			return false;
+		System.arraycopy(_scratch, 0, p.bounds, 0, 4);
+		float min = minKey(p.bounds);
+		boolean movingLeft = min < _values[p.minPos];
+		_values[p.minPos] = min;
+		_values[p.maxPos] = maxKey(p.bounds);
+		//Sort leading endpoint first, so min never passes its own max
+		if (movingLeft) {
+			sift(p.minPos);
+			sift(p.maxPos);
+		}
+		else {
+			sift(p.maxPos);
+			sift(p.minPos);
+		}
+		syncPairs(p);
+		return true;
+	}
+
+	@Override
+	public void query(PhysicsEntity e, List<PhysicsEntity> out) {
+		if (_proxies.containsKey(e)) {
+			out.addAll(_pairs.getPartners(e));
+			return;
+		}
+		e.getShape().getBounds(_scratch);
+		queryRegion(_scratch, out);
+	}
+
+	/*Sweeps endpoints in x-order, stopping past region's max x.*/
+	@Override
+	public void queryRegion(float[] bounds, List<PhysicsEntity> out) {
+		for (int i=0; i<_count && _values[i] <= bounds[ShapeBounds.MAX_X]; i++) {
+			if ((_endpoints[i] & 1) == 1)
+				continue;
+			Proxy p = _byId.get(_endpoints[i] >> 1);
+			if (ShapeBounds.overlaps(bounds, p.bounds))
+				out.add(p.entity);
+		}
+	}
+
+	@Override
+	public void queryRay(Vec2f src, Vec2f dst, List<PhysicsEntity> out) {
+		float dx = dst.x - src.x, dy = dst.y - src.y;
+		for (Proxy p: _proxies.values())
+			if (ShapeBounds.rayEntry(p.bounds, src.x, src.y, dx, dy) != Float.POSITIVE_INFINITY)
+				out.add(p.entity);
+	}
+
+	@Override
+	public void setPairListener(PairListener listener) {
+		_pairs.setListener(listener);
+	}
+
+	/*Pairs of p are the Entities overlapping it on x that also overlap on y.*/
+	private void syncPairs(Proxy p) {
+		_overlapping.clear();
+		for (Proxy other: p.xPartners)
+			if (ShapeBounds.overlaps(p.bounds, other.bounds))
+				_overlapping.add(other.entity);
+		_pairs.sync(p.entity, _overlapping);
+	}
+
+	/*Insertion sort of one endpoint, left or right.*/
+	private void sift(int i) {
+		while (i > 0 && less(i, i-1)) {
+			swap(i-1);
+			i--;
+		}
+		while (i < _count-1 && less(i+1, i)) {
+			swap(i);
+			i++;
+		}
+	}
+
+	/*Endpoints with equal values sort mins before maxes,
+	 * so touching bounds count as overlapping.*/
+	private boolean less(int i, int j) {
+		return _values[i] < _values[j] || (_values[i] == _values[j]
+				&& (_endpoints[i] & 1) == 0 && (_endpoints[j] & 1) == 1);
+	}
+
+	/*Swaps endpoints at i and i+1, and updates x-overlaps
+	 * if a min and a max of two proxies pass each other.*/
+	private void swap(int i) {
+		int left = _endpoints[i], right = _endpoints[i+1];
+		Proxy l = _byId.get(left >> 1), r = _byId.get(right >> 1);
+		if (l != r) {
+			boolean leftMax = (left & 1) == 1, rightMax = (right & 1) == 1;
+			//Min moving left of a max, intervals now overlap
+			if (leftMax && !rightMax) {
+				if (!l.xPartners.contains(r)) {
+					l.xPartners.add(r);
+					r.xPartners.add(l);
+				}
+			}
+			//Max moving left of a min, intervals no longer overlap
+			else if (!leftMax && rightMax) {
+				l.xPartners.remove(r);
+				r.xPartners.remove(l);
+			}
+		}
+		float v = _values[i];
+		_values[i] = _values[i+1];
+		_values[i+1] = v;
+		_endpoints[i] = right;
+		_endpoints[i+1] = left;
+		setPos(right, i);
+		setPos(left, i+1);
+	}
+
+	private void removeEndpoint(int pos) {
+		_count--;
+		for (int i=pos; i<_count; i++) {
+			_values[i] = _values[i+1];
+			_endpoints[i] = _endpoints[i+1];
+			setPos(_endpoints[i], i);
+		}
+	}
+
+	private void setPos(int endpoint, int pos) {
+		Proxy p = _byId.get(endpoint >> 1);
+		if ((endpoint & 1) == 1)
+			p.maxPos = pos;
+		else
+			p.minPos = pos;
+	}
+
+	/*Empty bounds are put past every other endpoint.*/
+	private static float minKey(float[] bounds) {
+		return ShapeBounds.isEmpty(bounds) ? Float.POSITIVE_INFINITY : bounds[ShapeBounds.MIN_X];
+	}
+	private static float maxKey(float[] bounds) {
+		return ShapeBounds.isEmpty(bounds) ? Float.POSITIVE_INFINITY : bounds[ShapeBounds.MAX_X];
+	}
+
+	private static class Proxy {
+		private PhysicsEntity entity;
+		private int id;
+		private float[] bounds;
+		private int minPos, maxPos;
+		//Proxies whose x-intervals overlap this one
+		private ArrayList<Proxy> xPartners;
+
+		private Proxy(PhysicsEntity e, int id) {
+			entity = e;
+			this.id = id;
+			bounds = new float[4];
+			xPartners = new ArrayList<Proxy>();
+		}
+	}
+}
@@ -2,23 +2,26 @@ package miweinst.engine.contraints;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
-import java.util.Arrays;
 
 import cs195n.Vec2f;
+import miweinst.engine.gfx.Drawable;
 import miweinst.engine.shape.CircleShape;
 import miweinst.engine.shape.PolygonShape;
 import miweinst.engine.shape.Shape;
 import miweinst.engine.world.*;
 
+/* Entity pinned to a point in the world, free to swing about it.
+ * The pin is a PinJoint in the world's ConstraintSolver.*/
+
 public class PinEntity extends PhysicsEntity {
 
-	private Vec2f _pinOffsetFromCentroid;
+	private GameWorld _world;
 	private Vec2f _pinLoc;
-
-	
+	private PinJoint _joint;
 
 	public PinEntity(GameWorld world, Vec2f pinLoc, Shape shape) {
 		super(world);
+		_world = world;
 		setShape(shape);
 		_pinLoc = pinLoc;
 		init();
@@ -26,30 +29,10 @@ public class PinEntity extends PhysicsEntity {
 	
 	public PinEntity(GameWorld world) {
 		super(world);
+		_world = world;
 		_pinLoc = null;
 		super.setShape(null);
 	}
-
-	@Override
-	public void onTick(long _nanosSincePreviousTick) {
-		super.onTick(_nanosSincePreviousTick);
-		translateToPin();
-		setVelocity(new Vec2f(0, 0));
-	}
-
-	
-
-	@Override
-	public Vec2f getCentroid() {
-		return _pinLoc;
-	}
-	
-	@Override
-	public float getMomentOfInertia(float mass) {
-		float pinOffsetMag = _pinOffsetFromCentroid.mag();
-		float oldInertia = super.getMomentOfInertia(getMass());
-		return oldInertia + mass*pinOffsetMag*pinOffsetMag;
-	}
 	
 	@Override
 	public void setShape(Shape s) {
@@ -70,32 +53,16 @@ public class PinEntity extends PhysicsEntity {
 	 */
 	private void init() {
 		assert(_pinLoc != null);
-
-		Vec2f shapeCentroid = PolygonShape.getCentroidOf(Arrays.asList(((PolygonShape)getShape()).getVertices()));
-
-		//init _pinOffsetFromCentroid
-		_pinOffsetFromCentroid = _pinLoc.minus(shapeCentroid);
 		this.setGravitational(false);
 		this.setDensity(.01f);
-		
-		
-
-
-
-	}
-
-	private void translateToPin() {
-		Vec2f shapeCentroid = getShape().getCentroid();
-		//calculate the position of where the pin should be relative to the shape
-		float theta = getAngle();
-		float pinOnShapeX = (float)(Math.cos(theta)*_pinOffsetFromCentroid.x - 
-				Math.sin(theta)*_pinOffsetFromCentroid.y);
-		float pinOnShapeY = (float)(Math.sin(theta)*_pinOffsetFromCentroid.x + 
-				Math.cos(theta)*_pinOffsetFromCentroid.y);
-		Vec2f pinRelativeToShape = new Vec2f(pinOnShapeX, pinOnShapeY).plus(shapeCentroid);
-		
-		Vec2f translation = _pinLoc.minus(pinRelativeToShape);
-		this.setLocation(this.getLocation().plus(translation));
+		//Pinned where it is now; a new pin or Shape moves the joint's anchor
+		if (_joint == null) {
+			_joint = new PinJoint(this, _pinLoc);
+			_world.addJoint(_joint);
+		}
+		else {
+			_joint.setAnchor(_pinLoc);
+		}
 	}
 
 	@Override
@@ -118,6 +85,20 @@ public class PinEntity extends PhysicsEntity {
 		 */
 
 	}
+	
+	@Override
+	public Drawable snapshot() {
+		final Drawable body = super.snapshot();
+		CircleShape circle = new CircleShape(_pinLoc, 1);
+		circle.setColor(Color.red);
+		final Drawable pin = circle.snapshot();
+		return new Drawable() {
+			public void draw(Graphics2D g) {
+				body.draw(g);
+				pin.draw(g);
+			}
+		};
+	}
 
 
 
@@ -5,17 +5,24 @@ import miweinst.engine.shape.PolygonShape;
 import miweinst.engine.shape.Shape;
 import miweinst.engine.world.GameWorld;
 import miweinst.engine.world.PhysicsEntity;
+import miweinst.engine.world.SpringJoint;
 import miweinst.gravidog.Player;
 import cs195n.Vec2f;
 
+/* Entity held to where it started by a damped spring, a SpringJoint
+ * in the world's ConstraintSolver.*/
+
 public class SpringEntity extends PhysicsEntity {
 
+	private GameWorld _world;
 	private Vec2f _pivot;
 	private float _springConstant;
 	private float _frictionConstant;
+	private SpringJoint _joint;
 	
 	public SpringEntity(GameWorld world) {
 		super(world);		
+		_world = world;
 		//Default Shape for mandatory constructor
 		PolygonShape shape = new AARectShape(new Vec2f(50f,80f), new Vec2f(10f, 10f)).rectToPoly();
 		setShape(shape);
@@ -26,35 +33,18 @@ public class SpringEntity extends PhysicsEntity {
 	}
 	public SpringEntity(GameWorld world, Shape shape) {
 		super(world);
+		_world = world;
 		setShape(shape);
 		init();
 	}
-
-	@Override
-	public void onTick(long nanosSincePreviousTick) {
-		super.onTick(nanosSincePreviousTick);
-		applyRestorativeForce();
-		applyFriction();		
-	}
-	
-	private void applyRestorativeForce() {
-		Vec2f displacementFromPivot = _pivot.minus(getLocation());
-		float restorativeForce = displacementFromPivot.smult(_springConstant).mag();
-		Vec2f dir = displacementFromPivot.normalized();
-		applyForce(dir.smult(restorativeForce), this.getCentroid());
-	}
-	
-	private void applyFriction() {
-		float force = getVelocity().mag() * _frictionConstant;
-		Vec2f dir = getVelocity().invert().normalized();
-		applyForce(dir.smult(force), this.getCentroid());
-	}
 	
 	@Override
 	public void setShape(Shape s) {
 		super.setShape(s);
 		setLocation(s.getLocation());
 		_pivot = s.getCentroid();
+		if (_joint != null) 
+			_joint.setPivot(_pivot);
 	}
 	
 	
@@ -64,14 +54,23 @@ public class SpringEntity extends PhysicsEntity {
 	private void init() {
 		_pivot = getShape().getCentroid();
 		setRotatable(false);
+		//Spring pushes on every tick anyway, and friction needs a velocity
+		setSleepingAllowed(false);
+		//Restorative force k*displacement and friction c*velocity, solved implicitly
+		_joint = new SpringJoint(this, _pivot, _springConstant, _frictionConstant);
+		_world.addJoint(_joint);
 	}
 	
 	public void setSpringConstant(float springConstant) {
 		_springConstant = springConstant;
+		if (_joint != null) 
+			_joint.setStiffness(springConstant);
 	}
 	
 	public void setFrictionConstant(float frictionConstant) {
 		_frictionConstant = frictionConstant;
+		if (_joint != null) 
+			_joint.setDamping(frictionConstant);
 	}
 			
 
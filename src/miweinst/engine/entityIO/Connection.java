@@ -6,25 +6,56 @@ import java.util.Map;
 public class Connection {
 	private Input target;
 	private Map<String, String> args;
+	//Nanoseconds to wait before running, if fired during a step
+	private long delay;
 	
 	/*Two constructors, one to specify HashDecorator args
 	 * upon instantiation, and one without.*/
 	public Connection(Input out) {
 		target = out;
 		args = new HashMap<String, String>();
+		delay = 0;
 	}
 	public Connection(Input out, Map<String, String> data) {
 		assert data != null;
 		target = out;
 		args = data;
+		delay = 0;
 	}
 	
 	/*Add arguments for this Connection to pass to connected Input.*/
 	public void setDecoration(String key, String val) {
 		args.put(key, val);
 	}
+	/* Also reads "delay", in seconds, which stays in args too.*/
 	public void setProperties(Map<String, String> data) {
 		args = data;
+		if (data.containsKey("delay")) {
+			try {
+				this.setDelay(Float.parseFloat(data.get("delay").trim()));
+			} catch (NumberFormatException e) {
+				System.err.println("Connection delay must be a number (Connection.setProperties)");
+			}
+		}
+	}
+	
+	/* Seconds to wait before running, when fired during a GameWorld
+	 * step (see EventQueue). Fired outside one, runs right away.*/
+	public void setDelay(float seconds) {
+		if (seconds < 0) 
+			throw new IllegalArgumentException("Connection delay can't be negative");
+		delay = (long) (seconds*1000000000L);
+	}
+	public long getDelay() {
+		return delay;
+	}
+	
+	public Input getTarget() {
+		return target;
+	}
+	/*Whether running other would pass the same args to the same Input.*/
+	public boolean sameEvent(Connection other) {
+		return target == other.target && args.equals(other.args);
 	}
 	
 	/*Forward arguments to specified Input.*/
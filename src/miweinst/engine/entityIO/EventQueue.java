@@ -0,0 +1,120 @@
+package miweinst.engine.entityIO;
+
+import java.util.ArrayList;
+
+/* Holds Connections fired by Outputs while a GameWorld steps, and runs
+ * them once per fixed step, after the solver, when nothing is walking
+ * the Entity list anymore. So an Input can add or remove Entities 
+ * without breaking the collision loop that triggered it.
+ * 
+ * Open on the stepping thread between open() and close(); Output.run
+ * posts here then instead of running its Connections right away. 
+ * Connections with a delay wait that long (in steps' worth of time)
+ * before running. With coalescing on, an event identical to one already
+ * run this drain (same Input, equal args) is dropped.*/
+
+public class EventQueue {
+	
+	//Queue Outputs post to on this thread, if any
+	private static final ThreadLocal<EventQueue> CURRENT = new ThreadLocal<EventQueue>();
+	//Events run per drain at most; more (an Input chain firing itself) wait for next step
+	public static final int MAX_EVENTS_PER_DRAIN = 4096;
+	
+	private ArrayList<Connection> _due;
+	//Delayed Connections, with nanoseconds left before they're due
+	private ArrayList<Connection> _delayed;
+	private ArrayList<Long> _waits;
+	//Run so far this drain, for coalescing
+	private ArrayList<Connection> _ran;
+	private boolean _coalescing;
+	
+	public EventQueue() {
+		_due = new ArrayList<Connection>();
+		_delayed = new ArrayList<Connection>();
+		_waits = new ArrayList<Long>();
+		_ran = new ArrayList<Connection>();
+		_coalescing = false;
+	}
+	
+	/*Queue open on this thread, or null if Outputs should run right away.*/
+	public static EventQueue current() {
+		return CURRENT.get();
+	}
+	/* Makes this the current queue on this thread; returns the one it
+	 * replaces, to pass to close when done.*/
+	public EventQueue open() {
+		EventQueue outer = CURRENT.get();
+		CURRENT.set(this);
+		return outer;
+	}
+	public void close(EventQueue outer) {
+		if (outer == null) 
+			CURRENT.remove();
+		else 
+			CURRENT.set(outer);
+	}
+	
+	public boolean isCoalescing() {
+		return _coalescing;
+	}
+	public void setCoalescing(boolean coalescing) {
+		_coalescing = coalescing;
+	}
+	
+	/*Runs c at next drain, or once its delay is up.*/
+	public void post(Connection c) {
+		if (c.getDelay() > 0) {
+			_delayed.add(c);
+			_waits.add(c.getDelay());
+		}
+		else {
+			_due.add(c);
+		}
+	}
+	
+	/*Events waiting to run, delayed or not.*/
+	public int size() {
+		return _due.size() + _delayed.size();
+	}
+	public void clear() {
+		_due.clear();
+		_delayed.clear();
+		_waits.clear();
+	}
+	
+	/* Counts step nanoseconds off delayed events, then runs everything 
+	 * due, in the order posted. Events posted while draining run in the 
+	 * same drain, unless delayed.*/
+	public void drain(long step) {
+		for (int i=0; i<_delayed.size(); i++) {
+			long wait = _waits.get(i) - step;
+			if (wait <= 0) {
+				_due.add(_delayed.remove(i));
+				_waits.remove(i);
+				i--;
+			}
+			else {
+				_waits.set(i, wait);
+			}
+		}
+		int next = 0;
+		while (next < _due.size() && next < MAX_EVENTS_PER_DRAIN) {
+			Connection c = _due.get(next++);
+			if (_coalescing && this.ranAlready(c)) 
+				continue;
+			_ran.add(c);
+			c.run();
+		}
+		if (next < _due.size()) 
+			System.err.println("Too many events in one step, rest wait for next (EventQueue.drain)");
+		_due.subList(0, next).clear();
+		_ran.clear();
+	}
+	
+	private boolean ranAlready(Connection c) {
+		for (Connection ran: _ran) 
+			if (ran == c || ran.sameEvent(c)) 
+				return true;
+		return false;
+	}
+}
@@ -14,9 +14,15 @@ public class Output {
 		connections.add(c);
 	}
 	
+	/* Runs every Connection, or posts them to the thread's
+	 * EventQueue while a GameWorld is stepping.*/
 	public void run() {
+		EventQueue queue = EventQueue.current();
 		for (Connection c: connections) {
-			c.run();
+			if (queue != null) 
+				queue.post(c);
+			else 
+				c.run();
 		}
 	}
 }
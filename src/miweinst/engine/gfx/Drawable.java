@@ -0,0 +1,13 @@
+package miweinst.engine.gfx;
+
+import java.awt.Graphics2D;
+
+/* Anything that draws itself. Snapshots of Entities (see
+ * Entity.snapshot) are Drawables that keep copies of everything
+ * they draw, so one can be drawn on the Swing thread while the
+ * simulation keeps changing the Entity on another.*/
+
+public interface Drawable {
+
+	public void draw(Graphics2D g);
+}
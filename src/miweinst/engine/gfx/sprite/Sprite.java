@@ -4,6 +4,7 @@ import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 
+import miweinst.engine.gfx.Drawable;
 import cs195n.Vec2f;
 import cs195n.Vec2i;
 
@@ -226,6 +227,22 @@ public class Sprite {
 			//@params:		Image, dst x1, dst y1, dst x2, dst y2, src x1, src y1, src x2, src y2, null		
 			g.drawImage(_currFrame, dstLoc.x, dstLoc.y, dstLoc.x+dstW, dstLoc.y+dstH, srcLoc.x, srcLoc.y, srcSize.x, srcSize.y, null);
 	}
+	
+	/* What draw would draw now at loc and scale, to be drawn later; the
+	 * frame is kept, so later frame changes don't show in it.*/
+	public Drawable snapshot(Vec2f loc, float scale) {
+		final BufferedImage frame = _currFrame;
+		final boolean visible = _visible;
+		final int x = (int)loc.x, y = (int)loc.y;
+		final int w = (int)(_dstSize.x*scale), h = (int)(_dstSize.y*scale);
+		final int srcW = _srcSize.x, srcH = _srcSize.y;
+		return new Drawable() {
+			public void draw(Graphics2D g) {
+				if (visible)
+					g.drawImage(frame, x, y, x+w, y+h, 0, 0, srcW, srcH, null);
+			}
+		};
+	}
 }
 
 
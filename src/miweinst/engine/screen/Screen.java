@@ -37,4 +37,9 @@ public abstract class Screen {
 	public abstract void onMouseWheelMoved(MouseWheelEvent e);
 	
 	public abstract void onResize(Vec2i newSize);
+	
+	/*Called when App switches to another Screen, i.e. to stop threads.*/
+	public void onExit() {
+		
+	}
 }
@@ -6,8 +6,8 @@ import java.util.Arrays;
 
 import cs195n.Vec2f;
 import miweinst.engine.beziercurve.BezierCurve;
-import miweinst.engine.collisiondetection.ShapeCollisionInfo;
 import miweinst.engine.collisiondetection.SeparatingAxis;
+import miweinst.engine.gfx.Drawable;
 
 /**
  * Axis-Aligned Rectangle Shape. Ensures that
@@ -22,14 +22,11 @@ public class AARectShape extends Shape {
 	public static final String string = "AARectShape";
 
 	private Rectangle2D _rect;
-	private ShapeCollisionInfo _collisionInfo;
 
 	public AARectShape(Vec2f loc, Vec2f dim) {
 		super(loc, dim);
 		_rect = new Rectangle2D.Float(loc.x, loc.y, dim.x, dim.y);
 		super.setShape(_rect);
-		
-		_collisionInfo = null;
 	}
 	
 	/*Returns Vec2f storage of point at center*/
@@ -52,6 +49,14 @@ public class AARectShape extends Shape {
 		return this.getY();
 	}
 	
+	@Override
+	protected void computeBounds(float[] bounds) {
+		bounds[0] = this.getMinX();
+		bounds[1] = this.getMinY();
+		bounds[2] = this.getMaxX();
+		bounds[3] = this.getMaxY();
+	}
+	
 	/*Returns a copy of this shape. Useful for repetitive features*/
 	public Rectangle2D.Float clone() {
 		return (Rectangle2D.Float) _rect.clone();
@@ -123,20 +128,12 @@ public class AARectShape extends Shape {
 		_rect.setFrame(this.getX(), this.getY(), this.getWidth(), this.getHeight());
 		super.draw(g);
 	}
-	
-	/* Accessor/Mutator for ShapeCollisionInfo object which holds 
-	 * this shape, the shape collided with, and 
-	 * the minimum translation vector. Accessed by
-	 * containing PhysicsEntity for collision response.*/
 	@Override
-	public ShapeCollisionInfo getCollisionInfo() {
-		return _collisionInfo;
-	}
-	@Override
-	public void setCollisionInfo(ShapeCollisionInfo info) {
-		_collisionInfo = info;
+	public Drawable snapshot() {
+		_rect.setFrame(this.getX(), this.getY(), this.getWidth(), this.getHeight());
+		return super.snapshot();
 	}
-
+	
 	//Implementation of Collision Detection shapeCollisionDetection; double dispatch
 	
 	/*Double motherfuckin Dispatch*/
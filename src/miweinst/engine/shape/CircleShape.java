@@ -7,6 +7,7 @@ import cs195n.Vec2f;
 import miweinst.engine.beziercurve.BezierCurve;
 import miweinst.engine.collisiondetection.ShapeCollisionInfo;
 import miweinst.engine.collisiondetection.SeparatingAxis;
+import miweinst.engine.gfx.Drawable;
 
 	/**
 	 * Extends delete_EllipseShape as a guaranteed
@@ -23,14 +24,12 @@ public class CircleShape extends Shape {
 
 	private Ellipse2D.Float _circle;
 	private float _radius;
-	private ShapeCollisionInfo _collisionInfo;
 	//Takes radius (float) in constructor, not Dimensions
 	public CircleShape(Vec2f loc, float radius) {
 		super(loc, new Vec2f(2*radius, 2*radius));
 		_circle = new Ellipse2D.Float(loc.x, loc.y, 2*radius, 2*radius);
 		super.setShape(_circle);
 		_radius = radius;
-		_collisionInfo = null;
 	}
 	
 	public float getRadius() {
@@ -81,9 +80,18 @@ public class CircleShape extends Shape {
 		return clampedCenter;
 	}
 	
+	/*Location is center.*/
+	@Override
+	protected void computeBounds(float[] bounds) {
+		bounds[0] = this.getX() - _radius;
+		bounds[1] = this.getY() - _radius;
+		bounds[2] = this.getX() + _radius;
+		bounds[3] = this.getY() + _radius;
+	}
+	
 	@Override
 	public Vec2f getCentroid() {
-		return new Vec2f(this.getX(), this.getY());
+		return this.getLocation();
 	}
 	
 	@Override
@@ -91,6 +99,11 @@ public class CircleShape extends Shape {
 		_circle.setFrame(super.getX()-_radius, super.getY()-_radius, super.getWidth(), super.getHeight());
 		super.draw(g);
 	}
+	@Override
+	public Drawable snapshot() {
+		_circle.setFrame(super.getX()-_radius, super.getY()-_radius, super.getWidth(), super.getHeight());
+		return super.snapshot();
+	}
 		
 	/*Implements algorithm for point-circle collision. 
 	 * Returns true if point is contained in circle. */
@@ -103,15 +116,6 @@ public class CircleShape extends Shape {
 		else return false;
 	}
 	
-	@Override
-	public ShapeCollisionInfo getCollisionInfo() {
-		return _collisionInfo;
-	}
-	@Override
-	public void setCollisionInfo(ShapeCollisionInfo info) {
-		_collisionInfo = info;
-	}
-	
 	//Implementation of Collision Detection shapeCollisionDetection; double dispatch
 	
 	@Override
@@ -126,14 +130,19 @@ public class CircleShape extends Shape {
 		c.setCollisionInfo(null);
 		
 		//Distance between centers
-		float dist = this.getCentroid().dist(c.getCentroid());
+		Vec2f a = this.getCentroid();
+		Vec2f b = c.getCentroid();
+		float dx = b.x - a.x;
+		float dy = b.y - a.y;
+		float dist = (float) Math.sqrt(dx*dx + dy*dy);
 		float sumRad = this.getRadius() + c.getRadius();
-		Vec2f dir = c.getCentroid().minus(this.getCentroid());
-		Vec2f mtv = dir.normalized().smult(dist - sumRad);
 		//If distance b/w centers is less than sum rads
 		if (dist < sumRad) {
-			this.setCollisionInfo(new ShapeCollisionInfo(this, c, mtv));
-			c.setCollisionInfo(new ShapeCollisionInfo(c, this, mtv.smult(-1)));
+			//Along direction between centers
+			float mtvX = (dx/dist)*(dist - sumRad);
+			float mtvY = (dy/dist)*(dist - sumRad);
+			this.setCollisionInfo(new ShapeCollisionInfo(this, c, new Vec2f(mtvX, mtvY)));
+			c.setCollisionInfo(new ShapeCollisionInfo(c, this, new Vec2f(mtvX*-1, mtvY*-1)));
 			return true;
 		}
 		else {
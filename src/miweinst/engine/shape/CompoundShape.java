@@ -7,6 +7,7 @@ import java.util.ArrayList;
 import cs195n.Vec2f;
 import miweinst.engine.beziercurve.BezierCurve;
 import miweinst.engine.collisiondetection.SeparatingAxis;
+import miweinst.engine.gfx.Drawable;
 
 public class CompoundShape extends Shape {
 	public static final String string = "CompoundShape";
@@ -34,6 +35,28 @@ public class CompoundShape extends Shape {
 	@Override
 	public Vec2f getCentroid() { return null; }
 	
+	/*Union of bounds of every Shape in compound.*/
+	@Override
+	protected void computeBounds(float[] bounds) {
+		bounds[0] = bounds[1] = Float.POSITIVE_INFINITY;
+		bounds[2] = bounds[3] = Float.NEGATIVE_INFINITY;
+		for (Shape s: _shapes) {
+			bounds[0] = Math.min(bounds[0], s.getBoundsMinX());
+			bounds[1] = Math.min(bounds[1], s.getBoundsMinY());
+			bounds[2] = Math.max(bounds[2], s.getBoundsMaxX());
+			bounds[3] = Math.max(bounds[3], s.getBoundsMaxY());
+		}
+	}
+	
+	/*Changes whenever any of its shapes do.*/
+	@Override
+	public int getVersion() {
+		int version = super.getVersion();
+		for (Shape s: _shapes) 
+			version += s.getVersion();
+		return version;
+	}
+	
 	/*Get array of shapes stored in CompoundShape*/
 	public Shape[] getShapes() {
 		Shape[] shapes = new Shape[_shapes.size()];
@@ -122,6 +145,20 @@ public class CompoundShape extends Shape {
 			s.draw(g);
 		}
 	}
+	@Override
+	public Drawable snapshot() {
+		final Drawable outer = super.snapshot();
+		final Drawable[] parts = new Drawable[_shapes.size()];
+		for (int i=0; i<parts.length; i++) 
+			parts[i] = _shapes.get(i).snapshot();
+		return new Drawable() {
+			public void draw(Graphics2D g) {
+				outer.draw(g);
+				for (Drawable d: parts) 
+					d.draw(g);
+			}
+		};
+	}
 	
 	@Override 
 	public void setOutline(Color col, float width) {
@@ -11,6 +11,7 @@ import java.util.List;
 import miweinst.engine.beziercurve.BezierCurve;
 import miweinst.engine.collisiondetection.ShapeCollisionInfo;
 import miweinst.engine.collisiondetection.SeparatingAxis;
+import miweinst.engine.gfx.Drawable;
 import cs195n.Vec2f;
 
 /**
@@ -24,65 +25,83 @@ public class PolygonShape extends Shape {
 	public static final String string = "PolygonShape";
 	
 	//Location stored in Shape, reference
-	//Stores points of path
-	private Vec2f[] _vertices;
+	//Stores points of path, as floats so moving doesn't make new Vec2fs
+	private float[] _xs, _ys;
+	//Vec2f copy of points for getVertices, null until asked for after a move
+	private volatile Vec2f[] _vertices;
 	private Vec2f[] _relativeVertices;
 	private Vec2f _centroid;
 	
-//	private float _area;
+	private float _area;
 	
 /////  Stores other Shape in collision (K) and MTV (V)
 //	private HashDecorator<Shape, Vec2f> _collisionDecorator;
-	private ShapeCollisionInfo _collisionInfo;
 	
 	//Takes in a location for superclass' reference
 	//Vals array should already be in counter-clockwise order
 	public PolygonShape(Vec2f loc, Vec2f[] ccverts) {
 		super(loc, new Vec2f(0, 0));	//dimensions N.A for poly
 		super.setLocation(loc);
-		_vertices = ccverts;
-		_collisionInfo = null;
-		
-		_relativeVertices = new Vec2f[ccverts.length];
-		_centroid = getCentroidOf(Arrays.asList(ccverts));
-		for (int i=0; i<ccverts.length; i++) {
-			_relativeVertices[i] = ccverts[i].minus(_centroid);
-		}
-//		_area = getArea();
+		this.init(ccverts);
 	}
 	//Doesn't take in a location
 	public PolygonShape(Vec2f[] ccverts) {
 		super(ccverts[0], new Vec2f(0, 0));	//dimensions N.A for poly
-		_vertices = ccverts;
-		_collisionInfo = null;	
+		this.init(ccverts);
+	}
+	private void init(Vec2f[] ccverts) {
+		_xs = new float[ccverts.length];
+		_ys = new float[ccverts.length];
+		for (int i=0; i<ccverts.length; i++) {
+			_xs[i] = ccverts[i].x;
+			_ys[i] = ccverts[i].y;
+		}
+		_vertices = null;
 		_relativeVertices = new Vec2f[ccverts.length];
 		_centroid = getCentroidOf(Arrays.asList(ccverts));
 		for (int i=0; i<ccverts.length; i++) {
 			_relativeVertices[i] = ccverts[i].minus(_centroid);
 		}
-//		_area = getArea();
+		//Relative vertices never change, neither does area
+		_area = getArea(Arrays.asList(_relativeVertices));
 	}
 	
 	/*Returns a Path2D object representing this Polygon*/
 	public Path2D toPath() {
 		Path2D.Float path = new Path2D.Float();
-		path.moveTo(_vertices[0].x, _vertices[0].y);
-		for (int i=1; i<_vertices.length; i++) {
-			Vec2f v = _vertices[i];
-			path.lineTo(v.x, v.y);
-		}
+		path.moveTo(_xs[0], _ys[0]);
+		for (int i=1; i<_xs.length; i++) 
+			path.lineTo(_xs[i], _ys[i]);
 		path.closePath();
 		return path;
 	}
 	
 	/*Returns number of vertices stored in Polygon*/
 	public int getSize() {
-		return _vertices.length;
+		return _xs.length;
 	}
 	
 	/*Returns an array containing vertices.*/
 	public Vec2f[] getVertices() {
-		return _vertices.clone();
+		return this.vertices().clone();
+	}
+	/*Coordinates of vertex i, without making a Vec2f.*/
+	public float getVertexX(int i) {
+		return _xs[i];
+	}
+	public float getVertexY(int i) {
+		return _ys[i];
+	}
+	/*Cached Vec2f vertices; not to be changed or given out.*/
+	private Vec2f[] vertices() {
+		Vec2f[] verts = _vertices;
+		if (verts == null) {
+			verts = new Vec2f[_xs.length];
+			for (int i=0; i<verts.length; i++) 
+				verts[i] = new Vec2f(_xs[i], _ys[i]);
+			_vertices = verts;
+		}
+		return verts;
 	}
 	
 	@Override
@@ -91,15 +110,19 @@ public class PolygonShape extends Shape {
 		updateVertices();
 	}
 	private void updateVertices() {
-		List<Vec2f> verticesWithOffset = new ArrayList<Vec2f>();
-		for(Vec2f v : _relativeVertices) {
+		double cos = Math.cos((double)getAngle());
+		double sin = Math.sin((double)getAngle());
+		for (int i=0; i<_relativeVertices.length; i++) {
+			Vec2f v = _relativeVertices[i];
 			//rotate the relative vertices
-			double newX = v.x * Math.cos((double)getAngle()) - v.y * Math.sin((double)getAngle());
-			double newY = v.x * Math.sin((double)getAngle()) + v.y * Math.cos((double)getAngle());
+			double newX = v.x * cos - v.y * sin;
+			double newY = v.x * sin + v.y * cos;
 			//add them to the centroid
-			verticesWithOffset.add(new Vec2f((float)newX, (float)newY).plus(_centroid));
+			_xs[i] = (float)newX + _centroid.x;
+			_ys[i] = (float)newY + _centroid.y;
 		}
-		_vertices = verticesWithOffset.toArray(new Vec2f[_vertices.length]);
+		_vertices = null;
+		this.invalidateBounds();
 	}
 	
 	public static Vec2f getCentroidOf(List<Vec2f> vertices) {
@@ -145,15 +168,16 @@ public class PolygonShape extends Shape {
 	
 	/*Move polygon location/vertices by delta values.*/
 	public void translate(float dx, float dy) {
-		Vec2f[] copy = new Vec2f[_vertices.length];
-		for (int i=0; i<_vertices.length; i++) {
-			Vec2f v = _vertices[i];
-			copy[i] = new Vec2f(v.x+dx, v.y+dy);
+		//Resting polygons are set to where they already are every tick
+		if (dx != 0 || dy != 0) {
+			for (int i=0; i<_xs.length; i++) {
+				_xs[i] = _xs[i] + dx;
+				_ys[i] = _ys[i] + dy;
+			}
+			_vertices = null;
+			_centroid = new Vec2f(_centroid.x+dx, _centroid.y+dy);
 		}
-		_vertices = copy;	
-		Vec2f newLoc = new Vec2f(_centroid.x+dx, _centroid.y+dy);
-		_centroid = newLoc;
-		super.setLocation(newLoc);
+		super.setLocation(_centroid);
 ////
 		//updateVertices()
 	}
@@ -166,12 +190,25 @@ public class PolygonShape extends Shape {
 		_location = ref;
 	}*/
 	
+	@Override
+	protected void computeBounds(float[] bounds) {
+		bounds[0] = bounds[1] = Float.POSITIVE_INFINITY;
+		bounds[2] = bounds[3] = Float.NEGATIVE_INFINITY;
+		for (int i=0; i<_xs.length; i++) {
+			float x = _xs[i], y = _ys[i];
+			if (x < bounds[0]) bounds[0] = x;
+			if (y < bounds[1]) bounds[1] = y;
+			if (x > bounds[2]) bounds[2] = x;
+			if (y > bounds[3]) bounds[3] = y;
+		}
+	}
+	
 	/*Returns the vertex Vec2f that has
 	 * the minimum X or Y values.*/
 	public Vec2f getMinX() {
 		Vec2f min = new Vec2f(100, 100);	
 		boolean first = true;
-		for (Vec2f v: _vertices) {
+		for (Vec2f v: this.vertices()) {
 			if (first) {
 				min = v;
 				first = false;
@@ -186,7 +223,7 @@ public class PolygonShape extends Shape {
 	public Vec2f getMinY() {
 		Vec2f min = new Vec2f(0, 0);
 		boolean first = true;
-		for (Vec2f v: _vertices) {
+		for (Vec2f v: this.vertices()) {
 			if (first) {
 				min = v;
 				first = false;
@@ -202,7 +239,7 @@ public class PolygonShape extends Shape {
 	public Vec2f getMaxX() {
 		Vec2f max = new Vec2f(100, 100);		
 		boolean first = true;
-		for (Vec2f v: _vertices) {
+		for (Vec2f v: this.vertices()) {
 			if (first) {
 				max = v;
 				first = false;
@@ -217,7 +254,7 @@ public class PolygonShape extends Shape {
 	public Vec2f getMaxY() {
 		Vec2f max = new Vec2f(0, 0);
 		boolean first = true;
-		for (Vec2f v: _vertices) {
+		for (Vec2f v: this.vertices()) {
 			if (first) {
 				max = v;
 				first = false;
@@ -237,15 +274,23 @@ public class PolygonShape extends Shape {
 	
 	/*Finds polygon vertex closest to point pt.*/
 	public Vec2f closestVertex(Vec2f pt) {
-		Vec2f closestVert = this.getVertices()[0];			
+		return this.vertices()[this.closestVertex(pt.x, pt.y)];
+	}
+	/*Index of vertex closest to (x, y).*/
+	private int closestVertex(float x, float y) {
+		int closest = 0;
+		float closestDist2 = Float.POSITIVE_INFINITY;
 		//Find closest vertex to circle's center
-		for (int i=0; i < this.getVertices().length; i++) {
-			Vec2f vert = this.getVertices()[i];		
-			if (pt.dist2(vert) < pt.dist2(closestVert)) {
-				closestVert = vert;
+		for (int i=0; i < _xs.length; i++) {
+			float dx = x - _xs[i];
+			float dy = y - _ys[i];
+			float dist2 = dx*dx + dy*dy;
+			if (i == 0 || dist2 < closestDist2) {
+				closest = i;
+				closestDist2 = dist2;
 			}
 		}	
-		return closestVert;
+		return closest;
 	}
 
 	/*Returns whether specified point is contained in Polygon. 
@@ -310,6 +355,11 @@ public class PolygonShape extends Shape {
 		}*/
 ///^^^^
 	}
+	@Override
+	public Drawable snapshot() {
+		super.setShape(this.toPath());
+		return super.snapshot();
+	}
 	
 	/*ShapeCollisionDetection implementation of interface.*/
 
@@ -329,44 +379,54 @@ public class PolygonShape extends Shape {
 		this.setCollisionInfo(null);
 		c.setCollisionInfo(null);	
 		
-		Vec2f[] allAxes = new Vec2f[this.getVertices().length+1];
-		Float minMag = Float.POSITIVE_INFINITY;
-		Vec2f mtv = null;
-		//Populated allAxes with Polygon edge normals
-		Vec2f[] verts = this.getVertices();	
-		Vec2f start = null;
-		Vec2f end = null;		
-		for (int i=0; i<verts.length; i++) {	
-			if (i < verts.length-1) {
-				start = new Vec2f(verts[i].x, verts[i].y);
-				end = new Vec2f(verts[i+1].x, verts[i+1].y);
+		int n = _xs.length;
+		Vec2f center = c.getCentroid();
+		float radius = c.getRadius();
+		float minMag = Float.POSITIVE_INFINITY;
+		float mtvX = 0, mtvY = 0;
+		boolean found = false;
+		//Circle-poly separating axis, from center to closest vertex
+		int closest = this.closestVertex(center.x, center.y);
+		//Axes are Polygon edge normals, then circle-poly axis last
+		for (int i=0; i<=n; i++) {
+			float ax, ay, mag;
+			if (i < n) {
+				int j = i < n-1 ? i+1: 0;
+				float ex = _xs[j] - _xs[i];
+				float ey = _ys[j] - _ys[i];
+				mag = (float) Math.sqrt(ex*ex + ey*ey);
+				ex = ex/mag;
+				ey = ey/mag;
+				ax = -ey;
+				ay = ex;
 			}
 			else {
-				start = new Vec2f(verts[i].x, verts[i].y);
-				end = new Vec2f(verts[0].x, verts[0].y);
-			}			
-			Vec2f edge = end.minus(start).normalized();
-			Vec2f normal = new Vec2f(-edge.y, edge.x).normalized();	
-			allAxes[i] = normal;
-		}		
-		//Finish allAxes with circle-poly separating axis
-		Vec2f closestVert = this.closestVertex(c.getCentroid());				
-		allAxes[allAxes.length-1] = closestVert.minus(c.getCentroid()).normalized();	
-		//Get minimum MTV and populate ShapeCollisionInfo attributes
-		for (int i=0; i<allAxes.length; i++) {
-			Vec2f axis = allAxes[i];
-			SeparatingAxis sepAxis = new SeparatingAxis(axis);
-			Float mtv1d = sepAxis.intervalMTV(sepAxis.project(c), sepAxis.project(this));
-			if (mtv1d == null) {
+				ax = _xs[closest] - center.x;
+				ay = _ys[closest] - center.y;
+			}
+			mag = (float) Math.sqrt(ax*ax + ay*ay);
+			ax = ax/mag;
+			ay = ay/mag;
+			//Normalized again as a SeparatingAxis would
+			mag = (float) Math.sqrt(ax*ax + ay*ay);
+			float sx = ax/mag, sy = ay/mag;
+			float proj = center.x*sx + center.y*sy;
+			float mtv1d = SeparatingAxis.intervalMTV(proj - radius, proj + radius, 
+					SeparatingAxis.projectMin(this, sx, sy), SeparatingAxis.projectMax(this, sx, sy));
+			if (Float.isNaN(mtv1d)) {
 				return false;
 			}
 			if (Math.abs(mtv1d) < minMag) {
 				minMag = Math.abs(mtv1d);
-				mtv = axis.smult(mtv1d);
+				mtvX = ax*mtv1d;
+				mtvY = ay*mtv1d;
+				found = true;
 			}
 		}
-		this.setCollisionInfo(new ShapeCollisionInfo(this, c, mtv.sdiv(-1)));
-		c.setCollisionInfo(new ShapeCollisionInfo(c, this, mtv));	
+		if (!found) 
+			return false;
+		this.setCollisionInfo(new ShapeCollisionInfo(this, c, new Vec2f(mtvX/-1, mtvY/-1)));
+		c.setCollisionInfo(new ShapeCollisionInfo(c, this, new Vec2f(mtvX, mtvY)));	
 		return true;
 	}
 	
@@ -430,68 +490,60 @@ public class PolygonShape extends Shape {
 		this.setCollisionInfo(null);
 		p.setCollisionInfo(null);	
 		
-		//Concatenate both lists of vertices
-		Vec2f[][] both = new Vec2f[2][Math.max(p.getVertices().length, this.getVertices().length)];	
-		both[0] = p.getVertices();
-		both[1] = this.getVertices();	
-		Vec2f start = null;
-		Vec2f end = null;
-		Float minMag = Float.POSITIVE_INFINITY;
-		Vec2f mtv = null;
+		float minMag = Float.POSITIVE_INFINITY;
+		float mtvX = 0, mtvY = 0;
+		boolean found = false;
 		//Loop through the edges of both Polygons
-		for (Vec2f[] iter: both) {
-			for (int i=0; i<iter.length; i++) {	
-				if (i < iter.length-1) {
-					start = new Vec2f(iter[i].x, iter[i].y);
-					end = new Vec2f(iter[i+1].x, iter[i+1].y);
-				}
-				else {
-					start = new Vec2f(iter[i].x, iter[i].y);
-					end = new Vec2f(iter[0].x, iter[0].y);
-				}				
+		for (int k=0; k<2; k++) {
+			PolygonShape iter = k == 0 ? p: this;
+			int n = iter._xs.length;
+			for (int i=0; i<n; i++) {	
+				int j = i < n-1 ? i+1: 0;
 				//Construct vector along edge, normalize for length
-				Vec2f edge = end.minus(start).normalized();
+				float ex = iter._xs[j] - iter._xs[i];
+				float ey = iter._ys[j] - iter._ys[i];
+				float mag = (float) Math.sqrt(ex*ex + ey*ey);
+				ex = ex/mag;
+				ey = ey/mag;
 				
 				//Find axis by vector perpendicular to edge vector:
-				Vec2f normal = new Vec2f(-edge.y, edge.x);				
-				//Make separating axis for each edge
-				SeparatingAxis sepAxis = new SeparatingAxis(normal);
+				float nx = -ey, ny = ex;
+				//Separating axis for each edge, normalized
+				mag = (float) Math.sqrt(nx*nx + ny*ny);
+				float sx = nx/mag, sy = ny/mag;
 				//Get min and max of one Polygon
-				Vec2f arange = sepAxis.project(p);
+				float aMin = SeparatingAxis.projectMin(p, sx, sy);
+				float aMax = SeparatingAxis.projectMax(p, sx, sy);
 				//Get min and max of other Polygon
-				Vec2f brange = sepAxis.project(this);	
+				float bMin = SeparatingAxis.projectMin(this, sx, sy);
+				float bMax = SeparatingAxis.projectMax(this, sx, sy);
 
 				//If ranges don't overlap on every axis, collision NOT detected
-				if (sepAxis.isOverlapping(arange, brange)==false) {
+				if (SeparatingAxis.isOverlapping(aMin, aMax, bMin, bMax)==false) {
 					return false;
 				}
 				
 				//Calculate MTV of all axes and store one with min magnitude		
-				Float mtv1d = sepAxis.intervalMTV(arange, brange);
-				if (mtv1d != null) {				
+				float mtv1d = SeparatingAxis.intervalMTV(aMin, aMax, bMin, bMax);
+				if (!Float.isNaN(mtv1d)) {				
 					if (Math.abs(mtv1d) < minMag) {
 						minMag = Math.abs(mtv1d);
-						mtv = normal.smult(mtv1d);	
+						mtvX = nx*mtv1d;
+						mtvY = ny*mtv1d;
+						found = true;
 					}
 				}
 			}
 		}	
+		if (!found) 
+			return false;
 		
 		//Store this Shape, other Shape and mtv in ShapeCollisionInfo cache
-		this.setCollisionInfo(new ShapeCollisionInfo(this, p, mtv.sdiv(-1)));
-		p.setCollisionInfo(new ShapeCollisionInfo(p, this, mtv));	
+		this.setCollisionInfo(new ShapeCollisionInfo(this, p, new Vec2f(mtvX/-1, mtvY/-1)));
+		p.setCollisionInfo(new ShapeCollisionInfo(p, this, new Vec2f(mtvX, mtvY)));	
 		return true;
 	}
 
-	@Override
-	public ShapeCollisionInfo getCollisionInfo() {
-		return _collisionInfo;
-	}
-	@Override
-	public void setCollisionInfo(ShapeCollisionInfo info) {
-		_collisionInfo = info;
-	}
-
 	@Override
 	public Vec2f projectOnto(SeparatingAxis sep) {
 		return sep.project(this);
@@ -519,7 +571,7 @@ public class PolygonShape extends Shape {
 	}
 	@Override
 	public float getArea() {
-		return getArea(Arrays.asList(_relativeVertices));
+		return _area;
 	}
 
 	@Override
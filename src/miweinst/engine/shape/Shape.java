@@ -3,13 +3,16 @@ package miweinst.engine.shape;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.geom.Path2D;
 import java.awt.geom.Rectangle2D;
 import java.util.Map;
 
 import miweinst.engine.beziercurve.BezierCurve;
+import miweinst.engine.collisiondetection.CollisionLog;
 import miweinst.engine.collisiondetection.ShapeCollisionInfo;
 import miweinst.engine.collisiondetection.SeparatingAxis;
 import miweinst.engine.collisiondetection.ShapeCollisionDetection;
+import miweinst.engine.gfx.Drawable;
 import miweinst.engine.world.GameWorld;
 import cs195n.Vec2f;
 
@@ -24,6 +27,11 @@ public abstract class Shape implements ShapeCollisionDetection {
 	private float _borderWidth;
 	private ShapeCollisionInfo _collisionInfo;
 	private float _angle;
+	//Cached world space bounds [minX, minY, maxX, maxY], recomputed when dirty
+	private float[] _bounds;
+	private boolean _boundsDirty;
+	//Bumped whenever bounds go stale, i.e. on every change to geometry
+	private int _version;
 
 	public Shape(Vec2f loc, Vec2f dim) {
 
@@ -37,6 +45,10 @@ public abstract class Shape implements ShapeCollisionDetection {
 		_borderWidth = 0;
 
 		_collisionInfo = null;
+		
+		_bounds = new float[4];
+		_boundsDirty = true;
+		_version = 0;
 
 		//Initialize default shape to Rectangle
 		_shape = new Rectangle2D.Float();
@@ -74,6 +86,7 @@ public abstract class Shape implements ShapeCollisionDetection {
 	/*Mutator/Accessor for Vec2f Location storage*/
 	public void setLocation(Vec2f loc) {
 		_location = loc;
+		this.invalidateBounds();
 	}
 	public Vec2f getLocation() {
 		return _location;
@@ -86,6 +99,7 @@ public abstract class Shape implements ShapeCollisionDetection {
 	public void setWidth(float width){
 		float currHeight = _dimension.y;		//Store the current height of shape
 		_dimension = new Vec2f(width, currHeight);	//Make vector with new width and old height				
+		this.invalidateBounds();
 	}
 	public float getWidth() {
 		return _dimension.x;
@@ -95,6 +109,7 @@ public abstract class Shape implements ShapeCollisionDetection {
 	public void setHeight(float height){
 		float currWidth = _dimension.x;
 		_dimension = new Vec2f(currWidth, height);	//Make vector with old width and new height
+		this.invalidateBounds();
 	}
 	public float getHeight() {
 		return _dimension.y;
@@ -103,6 +118,7 @@ public abstract class Shape implements ShapeCollisionDetection {
 	/*Mutator/accessor for Vec2f dimensions storage*/
 	public void setDimensions(Vec2f dim) {
 		_dimension = dim;
+		this.invalidateBounds();
 	}
 	public Vec2f getDimensions() {
 		return _dimension;
@@ -111,10 +127,53 @@ public abstract class Shape implements ShapeCollisionDetection {
 	/*Mutator/accessor for angle*/
 	public void setAngle(float angle) {
 		_angle = angle%(2*((float)Math.PI));
+		this.invalidateBounds();
 	}
 	public float getAngle() {
 		return _angle;
 	}
+	
+	/*Accessors for axis-aligned bounds of shape in game units.
+	 * Cached, only recomputed after shape is moved, rotated or 
+	 * resized. Empty shapes have min > max, overlapping nothing.*/
+	public float getBoundsMinX() {
+		return validBounds()[0];
+	}
+	public float getBoundsMinY() {
+		return validBounds()[1];
+	}
+	public float getBoundsMaxX() {
+		return validBounds()[2];
+	}
+	public float getBoundsMaxY() {
+		return validBounds()[3];
+	}
+	/*Copies bounds into out as [minX, minY, maxX, maxY].*/
+	public void getBounds(float[] out) {
+		System.arraycopy(validBounds(), 0, out, 0, 4);
+	}
+	/*Marks cached bounds as stale. Called by mutators in this 
+	 * class; subclasses and anything changing points of a shape 
+	 * directly must call it too.*/
+	public void invalidateBounds() {
+		_boundsDirty = true;
+		_version++;
+	}
+	/*Changes every time shape changes, so anything computed from
+	 * shape can tell if it is out of date. Shapes made of other
+	 * Shapes include their parts' versions.*/
+	public int getVersion() {
+		return _version;
+	}
+	private float[] validBounds() {
+		if (_boundsDirty) {
+			computeBounds(_bounds);
+			_boundsDirty = false;
+		}
+		return _bounds;
+	}
+	/*Populates bounds with [minX, minY, maxX, maxY] of shape.*/
+	protected abstract void computeBounds(float[] bounds);
 
 	public abstract float getMomentOfInertia(float mass);
 	public abstract float getArea();
@@ -193,15 +252,45 @@ public abstract class Shape implements ShapeCollisionDetection {
 		brush.fill(_shape);	
 	}
 
+	/* Copy of what draw draws right now: outline and fill of a copy
+	 * of the java.awt.Shape, so drawing it never reads this Shape.
+	 * Subclasses that update the java.awt.Shape in draw do the same
+	 * before calling this.*/
+	public Drawable snapshot() {
+		final java.awt.Shape shape = new Path2D.Float(_shape);
+		final Color color = _color;
+		final Color borderColor = _borderColor;
+		final float borderWidth = _borderWidth;
+		return new Drawable() {
+			public void draw(Graphics2D brush) {
+				if (borderWidth > 0) {
+					brush.setStroke(new BasicStroke(borderWidth));
+					brush.setColor(borderColor);
+					brush.draw(shape);
+				}
+				brush.setColor(color);
+				brush.fill(shape);
+			}
+		};
+	}
+
 	/*Sort of double dispatch pattern for projection onto an axis*/
 	public abstract Vec2f projectOnto(SeparatingAxis sep);
 
 	/////
+	/*Goes through CollisionLog if a test is being recorded on this thread.*/
 	public ShapeCollisionInfo getCollisionInfo() {
+		CollisionLog log = CollisionLog.current();
+		if (log != null)
+			return log.getCollisionInfo(this, _collisionInfo);
 		return _collisionInfo;
 	}
 	public void setCollisionInfo(ShapeCollisionInfo info) {
-		_collisionInfo = info;
+		CollisionLog log = CollisionLog.current();
+		if (log != null)
+			log.setCollisionInfo(this, info);
+		else
+			_collisionInfo = info;
 	}
 	/////^^^
 }
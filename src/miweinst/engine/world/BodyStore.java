@@ -0,0 +1,201 @@
+package miweinst.engine.world;
+
+import java.util.Arrays;
+
+/* Simulation state of rigid bodies, kept structure-of-arrays: one
+ * primitive array per field, indexed by body id, so integrating runs
+ * down contiguous floats instead of chasing a Vec2f per field per
+ * PhysicsEntity. PhysicsEntity is a handle holding its id here; a
+ * GameWorld owns one store for the Entities in it, and an Entity out of
+ * any world has one of its own.
+ *
+ * Position and angle are the Shapes' (they decide geometry), copied in
+ * before integrating and out after. Everything else lives only here.
+ *
+ * Ids of removed bodies are reused; a removed body's slot is zeroed, so
+ * integrating over every slot leaves free ones at rest. So are bodies
+ * not moving this step (see moving), so a step integrates every slot
+ * in one pass.*/
+
+public class BodyStore {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	//Position and angle, staged around integrate
+	float[] px, py, angle;
+	float[] vx, vy, angularVel;
+	//Force and impulse accumulated since last integrate, torques with them
+	float[] fx, fy, torque;
+	float[] ix, iy, angularImpulse;
+	float[] invMass, invInertia;
+	//Position and angle at start of current step, for drawing between steps
+	float[] prevX, prevY, prevAngle;
+	//1 for bodies integrated this step, 0 for the rest, which keep their
+	//force and impulse and don't move; set by ConstraintSolver
+	float[] moving;
+
+	private int _size;
+	private int[] _free;
+	private int _freeCount;
+
+	public BodyStore() {
+		this(INITIAL_CAPACITY);
+	}
+	public BodyStore(int capacity) {
+		capacity = Math.max(1, capacity);
+		px = new float[capacity];
+		py = new float[capacity];
+		angle = new float[capacity];
+		vx = new float[capacity];
+		vy = new float[capacity];
+		angularVel = new float[capacity];
+		fx = new float[capacity];
+		fy = new float[capacity];
+		torque = new float[capacity];
+		ix = new float[capacity];
+		iy = new float[capacity];
+		angularImpulse = new float[capacity];
+		invMass = new float[capacity];
+		invInertia = new float[capacity];
+		prevX = new float[capacity];
+		prevY = new float[capacity];
+		prevAngle = new float[capacity];
+		moving = new float[capacity];
+		_size = 0;
+		_free = new int[capacity];
+		_freeCount = 0;
+	}
+
+	/*Number of slots in use or free; ids are in [0, size()).*/
+	public int size() {
+		return _size;
+	}
+	public int capacity() {
+		return vx.length;
+	}
+
+	/*Id of a new body at rest.*/
+	public int add() {
+		if (_freeCount > 0)
+			return _free[--_freeCount];
+		if (_size == capacity())
+			this.grow(2*capacity());
+		return _size++;
+	}
+	/*Frees id for reuse; its slot is zeroed.*/
+	public void remove(int id) {
+		this.clear(id);
+		if (_freeCount == _free.length)
+			_free = Arrays.copyOf(_free, 2*_free.length);
+		_free[_freeCount++] = id;
+	}
+
+	/*Copies every field of body from into body to of this store.*/
+	public void copy(BodyStore from, int fromId, int to) {
+		px[to] = from.px[fromId];
+		py[to] = from.py[fromId];
+		angle[to] = from.angle[fromId];
+		vx[to] = from.vx[fromId];
+		vy[to] = from.vy[fromId];
+		angularVel[to] = from.angularVel[fromId];
+		fx[to] = from.fx[fromId];
+		fy[to] = from.fy[fromId];
+		torque[to] = from.torque[fromId];
+		ix[to] = from.ix[fromId];
+		iy[to] = from.iy[fromId];
+		angularImpulse[to] = from.angularImpulse[fromId];
+		invMass[to] = from.invMass[fromId];
+		invInertia[to] = from.invInertia[fromId];
+		prevX[to] = from.prevX[fromId];
+		prevY[to] = from.prevY[fromId];
+		prevAngle[to] = from.prevAngle[fromId];
+		moving[to] = from.moving[fromId];
+	}
+
+	/*Zeroes velocity, force and impulse of id.*/
+	public void stop(int id) {
+		vx[id] = vy[id] = angularVel[id] = 0;
+		this.clearForces(id);
+	}
+	public void clearForces(int id) {
+		fx[id] = fy[id] = torque[id] = 0;
+		ix[id] = iy[id] = angularImpulse[id] = 0;
+	}
+	private void clear(int id) {
+		this.stop(id);
+		px[id] = py[id] = angle[id] = 0;
+		invMass[id] = invInertia[id] = 0;
+		prevX[id] = prevY[id] = prevAngle[id] = 0;
+		moving[id] = 0;
+	}
+
+	/* Symplectic Euler over bodies [start, end): velocity from force and
+	 * impulse, then position and angle from new velocity; clears force
+	 * and impulse. One straight loop over the arrays with no calls or
+	 * branches, so the JIT can unroll and vectorize it.*/
+	public void integrate(int start, int end, float time) {
+		for (int i=start; i<end; i++) {
+			//vel = vel + t*force/m + impulse/m 	(= vel + acc*time)
+			vx[i] += (fx[i]*time)*invMass[i] + ix[i]*invMass[i];
+			vy[i] += (fy[i]*time)*invMass[i] + iy[i]*invMass[i];
+			//pos = pos + t*vel
+			px[i] += vx[i]*time;
+			py[i] += vy[i]*time;
+			angularVel[i] += torque[i]*(time*invInertia[i]);
+			angularVel[i] += angularImpulse[i]*invInertia[i];
+			angle[i] += angularVel[i]*time;
+			fx[i] = fy[i] = torque[i] = 0;
+			ix[i] = iy[i] = angularImpulse[i] = 0;
+		}
+	}
+
+	/* Same two halves of a step, split so a solver can change velocity
+	 * in between, over bodies [start, end) but only moving ones (the rest
+	 * are multiplied by 0). Velocity from force and impulse first, 
+	 * clearing both.*/
+	public void integrateVelocities(int start, int end, float time) {
+		for (int i=start; i<end; i++) {
+			float m = moving[i], keep = 1 - m;
+			vx[i] += m*((fx[i]*time)*invMass[i] + ix[i]*invMass[i]);
+			vy[i] += m*((fy[i]*time)*invMass[i] + iy[i]*invMass[i]);
+			angularVel[i] += m*(torque[i]*(time*invInertia[i]));
+			angularVel[i] += m*(angularImpulse[i]*invInertia[i]);
+			fx[i] *= keep;
+			fy[i] *= keep;
+			torque[i] *= keep;
+			ix[i] *= keep;
+			iy[i] *= keep;
+			angularImpulse[i] *= keep;
+		}
+	}
+	/*Then position and angle from (solved) velocity.*/
+	public void integratePositions(int start, int end, float time) {
+		for (int i=start; i<end; i++) {
+			float t = moving[i]*time;
+			px[i] += vx[i]*t;
+			py[i] += vy[i]*t;
+			angle[i] += angularVel[i]*t;
+		}
+	}
+
+	private void grow(int capacity) {
+		px = Arrays.copyOf(px, capacity);
+		py = Arrays.copyOf(py, capacity);
+		angle = Arrays.copyOf(angle, capacity);
+		vx = Arrays.copyOf(vx, capacity);
+		vy = Arrays.copyOf(vy, capacity);
+		angularVel = Arrays.copyOf(angularVel, capacity);
+		fx = Arrays.copyOf(fx, capacity);
+		fy = Arrays.copyOf(fy, capacity);
+		torque = Arrays.copyOf(torque, capacity);
+		ix = Arrays.copyOf(ix, capacity);
+		iy = Arrays.copyOf(iy, capacity);
+		angularImpulse = Arrays.copyOf(angularImpulse, capacity);
+		invMass = Arrays.copyOf(invMass, capacity);
+		invInertia = Arrays.copyOf(invInertia, capacity);
+		prevX = Arrays.copyOf(prevX, capacity);
+		prevY = Arrays.copyOf(prevY, capacity);
+		prevAngle = Arrays.copyOf(prevAngle, capacity);
+		moving = Arrays.copyOf(moving, capacity);
+	}
+}
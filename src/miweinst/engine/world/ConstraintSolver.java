@@ -0,0 +1,327 @@
+package miweinst.engine.world;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import miweinst.engine.collisiondetection.ContactCache;
+import miweinst.engine.collisiondetection.ShapeBounds;
+import miweinst.engine.shape.CircleShape;
+import cs195n.Vec2f;
+
+/* Sequential impulse solver for a GameWorld's fixed step. Collision
+ * detection only records contacts here; once every pair has been
+ * tested and every Entity has had its tick (forces, impulses), step()
+ * integrates velocity, then solves all contacts and joints together,
+ * one at a time, for a fixed number of iterations, then integrates
+ * position from the solved velocity. Order of pairs no longer matters
+ * much, the iteration count decides how close to converged a step gets.
+ *
+ * Contacts push apart only (accumulated impulse clamped at 0), bounce
+ * only when new, and warm start from ContactCache. Overlap is corrected
+ * with Baumgarte stabilization: a velocity bias proportional to depth,
+ * minus ContactCache.SLOP so resting contacts are found again next step.
+ * One contact point per pair, the one Shape.poi gives; no friction.
+ * Bullets are swept against static geometry before they're moved (see
+ * GameWorld.timeOfImpact), so a long step can't carry them through it.
+ *
+ * Contacts are kept structure-of-arrays like BodyStore, indexed by
+ * contact number, and work straight on the world's BodyStore.*/
+
+public class ConstraintSolver {
+
+	public static final int DEFAULT_ITERATIONS = 8;
+	public static final float DEFAULT_BAUMGARTE = .2f;
+	//Closing speed (units/sec) below which new contacts don't bounce
+	private static final float RESTITUTION_THRESHOLD = 1f;
+
+	private GameWorld _world;
+	private int _iterations;
+	private float _baumgarte;
+
+	//Entities whose tick asked to be integrated this step
+	private ArrayList<PhysicsEntity> _moving;
+	private ArrayList<Joint> _joints;
+
+	//Contacts recorded this step
+	private int _count;
+	private PhysicsEntity[] _a, _b;
+	private ContactCache.Contact[] _cached;
+	//Normal points out of b into a (a's MTV), point of contact, depth
+	private float[] _nx, _ny, _pointX, _pointY, _depth;
+	private float[] _restitution;
+	//Filled in by prepare: body ids, centroid to point, effective mass
+	private int[] _ia, _ib;
+	private float[] _rax, _ray, _rbx, _rby;
+	private float[] _normalMass, _bias, _impulse;
+	private float[] _bounds;
+
+	public ConstraintSolver(GameWorld world) {
+		_world = world;
+		_iterations = DEFAULT_ITERATIONS;
+		_baumgarte = DEFAULT_BAUMGARTE;
+		_moving = new ArrayList<PhysicsEntity>();
+		_joints = new ArrayList<Joint>();
+		_count = 0;
+		_bounds = new float[4];
+		this.grow(16);
+	}
+
+	/*Gets/Sets velocity iterations per step. More converges tall
+	 * stacks and chains of joints further, at a cost per contact.*/
+	public int getIterations() {
+		return _iterations;
+	}
+	public void setIterations(int iterations) {
+		if (iterations < 1)
+			throw new IllegalArgumentException("Solver needs at least one iteration: " + iterations);
+		_iterations = iterations;
+	}
+	/*Gets/Sets fraction of overlap (past SLOP) corrected per step, 0 to 1.
+	 * Higher pushes apart faster but adds energy; .1 to .3 is usual.*/
+	public float getBaumgarte() {
+		return _baumgarte;
+	}
+	public void setBaumgarte(float baumgarte) {
+		if (baumgarte < 0 || baumgarte > 1)
+			throw new IllegalArgumentException("Baumgarte factor must be in [0, 1]: " + baumgarte);
+		_baumgarte = baumgarte;
+	}
+
+	public void addJoint(Joint j) {
+		if (!_joints.contains(j))
+			_joints.add(j);
+	}
+	public void removeJoint(Joint j) {
+		_joints.remove(j);
+	}
+	public List<Joint> getJoints() {
+		return Collections.unmodifiableList(_joints);
+	}
+
+	/*Called from PhysicsEntity.onTick: integrate e at end of this step.*/
+	void addBody(PhysicsEntity e) {
+		_moving.add(e);
+	}
+
+	/* Records contact between a and b found by the pair loop. Normal is a
+	 * unit vector out of b into a, depth how far they overlap along it.*/
+	void addContact(PhysicsEntity a, PhysicsEntity b, Vec2f point, Vec2f normal, float depth) {
+		if (_count == _a.length)
+			this.grow(2*_count);
+		int k = _count++;
+		ContactCache cache = _world.getContactCache();
+		//Touching since last step, so resting, not bouncing
+		ContactCache.Contact cached = cache.find(a, b);
+		boolean resting = cached != null;
+		float warm = resting && cache.isWarmStarting() ? cached.getImpulse() : 0;
+		cached = cache.touch(a, b);
+		cached.set(point, normal, a);
+		_a[k] = a;
+		_b[k] = b;
+		_cached[k] = cached;
+		_nx[k] = normal.x;
+		_ny[k] = normal.y;
+		_pointX[k] = point.x;
+		_pointY[k] = point.y;
+		_depth[k] = depth;
+		_restitution[k] = resting ? 0 : (float) Math.sqrt(a.getRestitution()*b.getRestitution());
+		_impulse[k] = warm;
+	}
+
+	/* Solves and integrates everything recorded this step, seconds long,
+	 * then forgets it. Entities out of the world by now are skipped.*/
+	void step(ArrayList<PhysicsEntity> entities, BodyStore bodies, float seconds) {
+		//Only bodies integrated this step move; everything else is immovable to contacts
+		for (PhysicsEntity e: entities) {
+			int id = e.getBodyId();
+			bodies.invMass[id] = 0;
+			bodies.invInertia[id] = 0;
+			bodies.moving[id] = 0;
+		}
+		for (PhysicsEntity e: _moving) {
+			if (!_world.inWorld(e) || e.getBodyStore() != bodies)
+				continue;
+			int id = e.getBodyId();
+			//Static ones still move at their velocity, but nothing pushes them
+			if (!e.isStatic()) {
+				float mass = e.getMass();
+				bodies.invMass[id] = 1/mass;
+				bodies.invInertia[id] = e.isRotatable() ? 1/e.getMomentOfInertia(mass) : 0;
+			}
+			Vec2f loc = e.getLocation();
+			bodies.px[id] = loc.x;
+			bodies.py[id] = loc.y;
+			bodies.angle[id] = e.getShape().getAngle();
+			bodies.moving[id] = 1;
+		}
+		//Every slot at once; ones not moving are left as they are
+		bodies.integrateVelocities(0, bodies.size(), seconds);
+
+		this.prepareContacts(bodies, seconds);
+		for (Joint j: _joints) {
+			if (_world.inWorld(j.getBody()))
+				j.prepare(seconds, _baumgarte, _world.getContactCache().isWarmStarting());
+		}
+		for (int iter=0; iter<_iterations; iter++) {
+			for (Joint j: _joints) {
+				if (_world.inWorld(j.getBody()))
+					j.solve();
+			}
+			this.solveContacts(bodies);
+		}
+		for (int k=0; k<_count; k++)
+			_cached[k].setImpulse(_impulse[k]);
+
+		bodies.integratePositions(0, bodies.size(), seconds);
+		for (PhysicsEntity e: _moving) {
+			if (!_world.inWorld(e) || e.getBodyStore() != bodies)
+				continue;
+			int id = e.getBodyId();
+			//Fast ones stop where they first hit static geometry, contact is found next step
+			if (e.isBullet() && !e.isStatic()) {
+				Vec2f from = e.getLocation();
+				float dx = bodies.px[id] - from.x, dy = bodies.py[id] - from.y;
+				float t = _world.timeOfImpact(e, dx, dy);
+				if (t < 1) {
+					bodies.px[id] = from.x + dx*t;
+					bodies.py[id] = from.y + dy*t;
+				}
+			}
+			e.setLocation(new Vec2f(bodies.px[id], bodies.py[id]));
+			///Do not change angle of shape if entity non-rotatable
+			if (e.isRotatable())
+				e.setAngle(bodies.angle[id]);
+		}
+		this.clear();
+	}
+
+	/*Forgets contacts and bodies recorded this step.*/
+	void clear() {
+		_moving.clear();
+		Arrays.fill(_a, 0, _count, null);
+		Arrays.fill(_b, 0, _count, null);
+		Arrays.fill(_cached, 0, _count, null);
+		_count = 0;
+	}
+
+	/* Body ids, lever arms and effective mass along the normal, then
+	 * the bias velocity each contact aims for: enough to close the
+	 * overlap past SLOP over a few steps, or to bounce if it's new and
+	 * closing fast. Applies warm start impulses last.*/
+	private void prepareContacts(BodyStore b, float seconds) {
+		for (int k=0; k<_count; k++) {
+			PhysicsEntity a = _a[k], other = _b[k];
+			if (!_world.inWorld(a) || !_world.inWorld(other)) {
+				_normalMass[k] = 0;
+				_impulse[k] = 0;
+				_ia[k] = _ib[k] = -1;
+				continue;
+			}
+			int ia = a.getBodyId(), ib = other.getBodyId();
+			_ia[k] = ia;
+			_ib[k] = ib;
+			float nx = _nx[k], ny = _ny[k];
+			float rax = 0, ray = 0, rbx = 0, rby = 0;
+			if (this.hasLeverArm(a, k)) {
+				Vec2f c = a.getCentroid();
+				rax = _pointX[k] - c.x;
+				ray = _pointY[k] - c.y;
+			}
+			if (this.hasLeverArm(other, k)) {
+				Vec2f c = other.getCentroid();
+				rbx = _pointX[k] - c.x;
+				rby = _pointY[k] - c.y;
+			}
+			_rax[k] = rax;
+			_ray[k] = ray;
+			_rbx[k] = rbx;
+			_rby[k] = rby;
+			float rna = rax*ny - ray*nx, rnb = rbx*ny - rby*nx;
+			float mass = b.invMass[ia] + b.invMass[ib] + b.invInertia[ia]*rna*rna + b.invInertia[ib]*rnb*rnb;
+			_normalMass[k] = mass > 0 ? 1/mass : 0;
+
+			float bias = _baumgarte/seconds*Math.max(0, _depth[k] - ContactCache.SLOP);
+			float vn = this.normalVelocity(b, k);
+			if (vn < -RESTITUTION_THRESHOLD)
+				bias = Math.max(bias, -_restitution[k]*vn);
+			_bias[k] = bias;
+			if (_normalMass[k] == 0)
+				_impulse[k] = 0;
+			this.apply(b, k, _impulse[k]);
+		}
+	}
+
+	/* Whether contact k pushes e off its centroid. Static Entities have no
+	 * lever arm (some, curves, not even a centroid), nor do non-rotatable
+	 * ones. Circles are always pushed through their center, and a point
+	 * off e's bounds (curve tests can give one) is no use as a lever arm.*/
+	private boolean hasLeverArm(PhysicsEntity e, int k) {
+		if (e.isStatic() || !e.isRotatable() || e.getShape() instanceof CircleShape)
+			return false;
+		e.getShape().getBounds(_bounds);
+		float pad = _depth[k];
+		return _pointX[k] >= _bounds[ShapeBounds.MIN_X] - pad && _pointX[k] <= _bounds[ShapeBounds.MAX_X] + pad
+				&& _pointY[k] >= _bounds[ShapeBounds.MIN_Y] - pad && _pointY[k] <= _bounds[ShapeBounds.MAX_Y] + pad;
+	}
+
+	/*One pass over every contact, clamping accumulated impulse at 0.*/
+	private void solveContacts(BodyStore b) {
+		for (int k=0; k<_count; k++) {
+			if (_normalMass[k] == 0)
+				continue;
+			float lambda = _normalMass[k]*(_bias[k] - this.normalVelocity(b, k));
+			float total = Math.max(0, _impulse[k] + lambda);
+			lambda = total - _impulse[k];
+			_impulse[k] = total;
+			this.apply(b, k, lambda);
+		}
+	}
+
+	/*Velocity of a's point relative to b's along normal; < 0 is closing.*/
+	private float normalVelocity(BodyStore b, int k) {
+		int ia = _ia[k], ib = _ib[k];
+		float dvx = (b.vx[ia] - b.angularVel[ia]*_ray[k]) - (b.vx[ib] - b.angularVel[ib]*_rby[k]);
+		float dvy = (b.vy[ia] + b.angularVel[ia]*_rax[k]) - (b.vy[ib] + b.angularVel[ib]*_rbx[k]);
+		return dvx*_nx[k] + dvy*_ny[k];
+	}
+
+	/*Impulse lambda along normal on a, opposite on b.*/
+	private void apply(BodyStore b, int k, float lambda) {
+		if (lambda == 0)
+			return;
+		int ia = _ia[k], ib = _ib[k];
+		float px = _nx[k]*lambda, py = _ny[k]*lambda;
+		b.vx[ia] += px*b.invMass[ia];
+		b.vy[ia] += py*b.invMass[ia];
+		b.angularVel[ia] += (_rax[k]*py - _ray[k]*px)*b.invInertia[ia];
+		b.vx[ib] -= px*b.invMass[ib];
+		b.vy[ib] -= py*b.invMass[ib];
+		b.angularVel[ib] -= (_rbx[k]*py - _rby[k]*px)*b.invInertia[ib];
+	}
+
+	private void grow(int capacity) {
+		_a = _a == null ? new PhysicsEntity[capacity] : Arrays.copyOf(_a, capacity);
+		_b = _b == null ? new PhysicsEntity[capacity] : Arrays.copyOf(_b, capacity);
+		_cached = _cached == null ? new ContactCache.Contact[capacity] : Arrays.copyOf(_cached, capacity);
+		_nx = grow(_nx, capacity);
+		_ny = grow(_ny, capacity);
+		_pointX = grow(_pointX, capacity);
+		_pointY = grow(_pointY, capacity);
+		_depth = grow(_depth, capacity);
+		_restitution = grow(_restitution, capacity);
+		_rax = grow(_rax, capacity);
+		_ray = grow(_ray, capacity);
+		_rbx = grow(_rbx, capacity);
+		_rby = grow(_rby, capacity);
+		_normalMass = grow(_normalMass, capacity);
+		_bias = grow(_bias, capacity);
+		_impulse = grow(_impulse, capacity);
+		_ia = _ia == null ? new int[capacity] : Arrays.copyOf(_ia, capacity);
+		_ib = _ib == null ? new int[capacity] : Arrays.copyOf(_ib, capacity);
+	}
+	private static float[] grow(float[] a, int capacity) {
+		return a == null ? new float[capacity] : Arrays.copyOf(a, capacity);
+	}
+}
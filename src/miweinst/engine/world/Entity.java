@@ -3,6 +3,7 @@ package miweinst.engine.world;
 import java.awt.Graphics2D;
 import java.util.Map;
 
+import miweinst.engine.gfx.Drawable;
 import cs195n.Vec2f;
 
 /**
@@ -16,7 +17,7 @@ import cs195n.Vec2f;
  * @author miweinst
  */
 
-public abstract class Entity {
+public abstract class Entity implements Drawable {
 	public final String string = "Entity";
 	private Vec2f _location;
 	private Vec2f _dimensions;	
@@ -91,4 +92,13 @@ public abstract class Entity {
 	
 	/*Draws associated Shape or Sprite in subclasses.*/
 	public abstract void draw(Graphics2D g);
+	
+	/* Copy of what draw would draw now, to be drawn later, i.e. on
+	 * the Swing thread while the simulation thread moves on (see
+	 * GameWorld.setThreaded). By default the Entity itself, which is
+	 * only right for Entities the simulation never changes; subclasses
+	 * that move override it.*/
+	public Drawable snapshot() {
+		return this;
+	}
 }
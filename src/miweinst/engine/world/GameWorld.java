@@ -2,16 +2,40 @@ package miweinst.engine.world;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 import miweinst.engine.App;
 import miweinst.engine.Tuple;
+import miweinst.engine.beziercurve.BezierPath;
+import miweinst.engine.collisiondetection.Broadphase;
+import miweinst.engine.collisiondetection.ContactCache;
+import miweinst.engine.collisiondetection.DynamicAABBTree;
+import miweinst.engine.collisiondetection.GJKNarrowphase;
+import miweinst.engine.collisiondetection.Narrowphase;
+import miweinst.engine.collisiondetection.PairListener;
+import miweinst.engine.collisiondetection.ParallelNarrowphase;
 import miweinst.engine.collisiondetection.Ray;
+import miweinst.engine.collisiondetection.SATNarrowphase;
+import miweinst.engine.collisiondetection.ShapeBounds;
+import miweinst.engine.collisiondetection.SpatialHashBroadphase;
+import miweinst.engine.collisiondetection.StaticAABBTree;
+import miweinst.engine.collisiondetection.SweepAndPruneBroadphase;
+import miweinst.engine.entityIO.EventQueue;
+import miweinst.engine.gfx.Drawable;
 import miweinst.engine.graph.HashDecorator;
 import miweinst.engine.screen.Viewport;
+import miweinst.engine.shape.CircleShape;
+import miweinst.engine.shape.Shape;
 import cs195n.Vec2f;
 
 /**
@@ -30,11 +54,107 @@ public class GameWorld {
 	private Vec2f _worldDim;	
 	//Dimensions of Viewport
 	private Vec2f _windowDim;
-	private int _timestep;
-	private float _accumulatedTime;
-	private int _iters;		
+	//Fixed steps to run per tick, and whether drawing blends between them
+	private StepScheduler _scheduler;
+	private boolean _interpolating;
+	//Steps on a thread of its own when threaded, drawn from snapshots
+	private boolean _threaded;
+	private SimulationThread _simulation;
+	private RenderSnapshot[] _snapshots;
+	private volatile RenderSnapshot _published;
+	private final AtomicReference<RenderSnapshot> _drawing = new AtomicReference<RenderSnapshot>();
 	private ArrayList<PhysicsEntity> _entities;		
+	//Velocities, forces and impulses of Entities in world
+	private BodyStore _bodies;
 	private Viewport _viewport;
+	//Spatial index of dynamic Entities, so only overlapping bounds are collided
+	private Broadphase _broadphase;
+	//Static Entities are kept out of broadphase, in an immutable index
+	//that is only rebuilt when a static Entity is added, removed or moved
+	private ArrayList<PhysicsEntity> _staticEntities;
+	private HashMap<PhysicsEntity, float[]> _staticBounds;
+	private StaticAABBTree<PhysicsEntity> _staticIndex;
+	private boolean _staticDirty;
+	//Event-driven sensors are kept out of both, as proxies in a broadphase
+	//of their own with the Entities they watch; they only hear when bounds
+	//begin and end overlapping, and are never in the pair loop
+	private DynamicAABBTree _sensorPhase;
+	private HashSet<PhysicsEntity> _sensors;
+	private HashSet<PhysicsEntity> _watched;
+	private ArrayList<PhysicsEntity> _sensorCandidates;
+	//Outputs fired during a step, run at its end
+	private EventQueue _events;
+	private float[] _bounds;
+	private ArrayList<PhysicsEntity> _candidates;
+	private ArrayList<PhysicsEntity> _rayCandidates;
+	private float[] _rayBounds;
+	//Scratch for spatial queries
+	private ArrayList<PhysicsEntity> _queryCandidates;
+	private float[] _queryRegion;
+	private float[] _queryBounds;
+	private float[] _nearestDist;
+	//Static Entities along a bullet's path, and bounds of the path
+	private ArrayList<PhysicsEntity> _sweepCandidates;
+	private float[] _sweepBounds;
+	//Contacts that persist between steps, for warm starting collision response
+	private ContactCache _contacts;
+	//Solves contacts found in a step, and joints, after detection
+	private ConstraintSolver _solver;
+	//Islands of touching Entities fall asleep together when all are at rest
+	private boolean _sleepingAllowed;
+	private Vec2f _gravity;
+	private int[] _islands;
+	private float[] _islandSleep;
+	private ArrayList<ContactCache.Contact> _touching;
+	private ArrayList<PhysicsEntity> _sleepers;
+	//Exact shape test run on each pair
+	private Narrowphase _narrowphase;
+	//Tests pairs ahead of time on other threads; null to test in pair loop only
+	private ParallelNarrowphase _parallelNarrowphase;
+	//Entity whose pairs are being collided, and whether it moved since
+	private PhysicsEntity _current;
+	private boolean _currentMoved;
+	
+	//Forwards broadphase overlap events to the hooks below
+	private PairListener _pairListener = new PairListener() {
+		public void overlapBegin(PhysicsEntity a, PhysicsEntity b) {
+			onOverlapBegin(a, b);
+		}
+		public void overlapEnd(PhysicsEntity a, PhysicsEntity b) {
+			onOverlapEnd(a, b);
+		}
+	};
+	
+	//Forwards overlap events of sensor proxies to the sensors
+	private PairListener _sensorListener = new PairListener() {
+		public void overlapBegin(PhysicsEntity a, PhysicsEntity b) {
+			if (_sensors.contains(a)) 
+				((SensorEntity) a).overlapBegin(b);
+			if (_sensors.contains(b)) 
+				((SensorEntity) b).overlapBegin(a);
+		}
+		public void overlapEnd(PhysicsEntity a, PhysicsEntity b) {
+			if (_sensors.contains(a)) 
+				((SensorEntity) a).overlapEnd(b);
+			if (_sensors.contains(b)) 
+				((SensorEntity) b).overlapEnd(a);
+		}
+	};
+	
+	//Relative change in gravity that wakes sleeping Entities
+	private static final float GRAVITY_TOLERANCE = .001f;
+	//Bisections of a bullet's time of impact, each halves the error
+	private static final int TOI_ITERATIONS = 10;
+	//Half size of first square searched by queryNearest, in game units
+	private static final float NEAREST_START_RADIUS = 16;
+	
+	/*Sorts broadphase candidates by position in list of Entities.*/
+	private static final Comparator<PhysicsEntity> INDEX_ORDER = new Comparator<PhysicsEntity>() {
+		@Override
+		public int compare(PhysicsEntity a, PhysicsEntity b) {
+			return Integer.compare(a.getWorldIndex(), b.getWorldIndex());
+		}
+	};
 	
 	public GameWorld(App app, Viewport v) {
 		//Default initialized dimensions; mutate in setDimensions()
@@ -43,50 +163,622 @@ public class GameWorld {
 		_windowDim = _viewport.getScreenSize();
 		
 		_entities = new ArrayList<PhysicsEntity>();
+		_bodies = new BodyStore();
+		_broadphase = new DynamicAABBTree();
+		_broadphase.setPairListener(_pairListener);
+		_staticEntities = new ArrayList<PhysicsEntity>();
+		_staticBounds = new HashMap<PhysicsEntity, float[]>();
+		_staticIndex = null;
+		_staticDirty = true;
+		_sensorPhase = new DynamicAABBTree();
+		_sensorPhase.setPairListener(_sensorListener);
+		_sensors = new HashSet<PhysicsEntity>();
+		_watched = new HashSet<PhysicsEntity>();
+		_sensorCandidates = new ArrayList<PhysicsEntity>();
+		_events = new EventQueue();
+		_bounds = new float[4];
+		_candidates = new ArrayList<PhysicsEntity>();
+		_rayCandidates = new ArrayList<PhysicsEntity>();
+		_rayBounds = new float[4];
+		_queryCandidates = new ArrayList<PhysicsEntity>();
+		_queryRegion = new float[4];
+		_queryBounds = new float[4];
+		_nearestDist = new float[0];
+		_sweepCandidates = new ArrayList<PhysicsEntity>();
+		_sweepBounds = new float[4];
+		_contacts = new ContactCache();
+		_solver = new ConstraintSolver(this);
+		_sleepingAllowed = true;
+		_gravity = null;
+		_islands = new int[0];
+		_islandSleep = new float[0];
+		_touching = new ArrayList<ContactCache.Contact>();
+		_sleepers = new ArrayList<PhysicsEntity>();
+		_narrowphase = new SATNarrowphase();
+		_parallelNarrowphase = null;
+		_current = null;
+		_currentMoved = false;
 		
-		//Initialize timestep to 50 ms
-		_timestep = 20000000;
-		_accumulatedTime = 0;
-		_iters = 1;
+		//Initialize timestep to 20 ms
+		_scheduler = new StepScheduler(20000000);
+		_interpolating = true;
+		_threaded = false;
+		_simulation = null;
+		_snapshots = new RenderSnapshot[] {new RenderSnapshot(), new RenderSnapshot()};
+		_published = null;
 	}
 	
 	/* For all Entities in world, do collision detection and 
-	 * onTick methods; iterations calculated by fixed timestep.*/
+	 * onTick methods; iterations calculated by fixed timestep.
+	 * Each step detects every contact first, without moving anything,
+	 * then ticks every Entity, then solves contacts and joints and 
+	 * integrates everything at once, then runs Outputs fired along 
+	 * the way (see EventQueue).*/
 	public void onTick(long nanosSincePreviousTick) {
-		_accumulatedTime += nanosSincePreviousTick; 
-		_iters = (int) (_accumulatedTime/_timestep);		
-		//Iterations of fixed timestep
-		for (int iter=1; iter <= _iters; iter++) {		
-			//Clear CollisionInfo objects for PhysicsEntity
-			for (PhysicsEntity entity: _entities) {
-				entity.getCollisionInfo().clear();
-			}
-			
-			//Collision detection
-			for (int i=0; i<_entities.size(); i++) {
-				for (int j=i; j < _entities.size(); j++) {	
-					if (_entities.get(i) != _entities.get(j)) {
-						//Check collisions on remaining pairs
-						_entities.get(i).collides(_entities.get(j));
+		int steps = _scheduler.advance(nanosSincePreviousTick);
+		long step = _scheduler.getTimestep();
+		float seconds = step/1000000000f;
+		//Outputs fired in here wait for the end of the step
+		EventQueue outer = _events.open();
+		try {
+			//Iterations of fixed timestep
+			for (int iter=1; iter <= steps; iter++) {		
+				//Everything resting was resting against the old gravity
+				if (_gravity == null || gravityChanged()) 
+					this.wakeAll();
+				//Clear CollisionInfo objects for PhysicsEntity
+				for (int i=0; i<_entities.size(); i++) {
+					PhysicsEntity entity = _entities.get(i);
+					entity.getCollisionInfo().clear();
+					//Subclasses can mutate list directly, so keep index in sync
+					entity.setWorldIndex(i);
+					entity.setBodyStore(_bodies);
+					entity.savePreviousTransform();
+					//Curved paths catch up with moved curves here, not in every test
+					if (entity.getShape() instanceof BezierPath) 
+						((BezierPath) entity.getShape()).validate();
+					//Move Entities that became static/dynamic to the other index
+					if (this.indexedWrong(entity)) {
+						this.unindex(entity);
+						this.index(entity);
+					}
+					else if (_sensors.contains(entity)) {
+						_sensorPhase.update(entity);
+					}
+					else if (!entity.isStatic()) {
+						_broadphase.update(entity);
 					}
+					if (_watched.contains(entity)) 
+						_sensorPhase.update(entity);
+				}
+				//Shape tests on other threads first, replayed by pair loop below
+				if (_parallelNarrowphase != null) 
+					this.testPairsAhead();
+			
+				//Collision detection
+				for (int i=0; i<_entities.size(); i++) {
+					PhysicsEntity a = _entities.get(i);
+					//Sleeping Entities' pairs with awake ones are checked on the awake one's turn
+					a.setSkippedTurn(isSleeping(a));
+					_current = a;
+					if (!a.hasSkippedTurn() && !_sensors.contains(a)) 
+						this.collidePairs(a, i);
+					_current = null;
+				}
+				if (_parallelNarrowphase != null) 
+					_parallelNarrowphase.clear();
+				//Send tick to every entity in list; forces, impulses, game logic
+				for (int i=0; i<_entities.size(); i++) {
+					PhysicsEntity a = _entities.get(i);
+					a.onTick(step);
+				}
+				//Response to everything detected above, and integration
+				_solver.step(_entities, _bodies, seconds);
+				//Forget contacts that stopped touching this step
+				_contacts.step();
+				if (_sleepingAllowed) 
+					this.updateSleep(seconds);
+				//Inputs can change the Entity list now that nothing is walking it
+				_events.drain(step);
+			}
+		} finally {
+			_events.close(outer);
+		}
+	}
+	
+	/*Static Entities never sleep; they aren't simulated anyway.*/
+	private static boolean isSleeping(PhysicsEntity e) {
+		return !e.isStatic() && !e.isAwake();
+	}
+	
+	/*Whether gravity moved away from what sleeping Entities last saw.*/
+	private boolean gravityChanged() {
+		Vec2f g = PhysicsEntity.GRAVITY;
+		return g.minus(_gravity).mag2() > GRAVITY_TOLERANCE*GRAVITY_TOLERANCE*_gravity.mag2();
+	}
+	private void wakeAll() {
+		for (PhysicsEntity e: _entities) 
+			if (isSleeping(e)) 
+				e.setAwake(true);
+		_gravity = PhysicsEntity.GRAVITY;
+	}
+	
+	/* Groups awake Entities into islands, joined by contacts still touching
+	 * this step (union-find over world indices). An island falls asleep once
+	 * every Entity in it has been at rest for PhysicsEntity.TIME_TO_SLEEP.
+	 * Static Entities don't join islands, so a pile on the ground is one
+	 * island per pile, not one for the whole level.*/
+	private void updateSleep(float seconds) {
+		int n = _entities.size();
+		if (_islands.length < n) {
+			_islands = new int[n*2];
+			_islandSleep = new float[n*2];
+		}
+		for (int i=0; i<n; i++) {
+			_islands[i] = i;
+			PhysicsEntity e = _entities.get(i);
+			e.setWorldIndex(i);
+			if (!e.isStatic() && e.isAwake()) 
+				e.updateSleepTime(seconds);
+		}
+		_touching.clear();
+		_contacts.getContacts(_touching);
+		for (ContactCache.Contact c: _touching) {
+			PhysicsEntity a = c.getA(), b = c.getB();
+			if (a.isStatic() || b.isStatic() || !inWorld(a) || !inWorld(b)) 
+				continue;
+			int ra = findIsland(a.getWorldIndex()), rb = findIsland(b.getWorldIndex());
+			if (ra != rb) 
+				_islands[Math.max(ra, rb)] = Math.min(ra, rb);
+		}
+		Arrays.fill(_islandSleep, 0, n, Float.POSITIVE_INFINITY);
+		for (int i=0; i<n; i++) {
+			PhysicsEntity e = _entities.get(i);
+			if (!e.isStatic() && e.isAwake()) {
+				int root = findIsland(i);
+				_islandSleep[root] = Math.min(_islandSleep[root], e.getSleepTime());
+			}
+		}
+		for (int i=0; i<n; i++) {
+			PhysicsEntity e = _entities.get(i);
+			if (!e.isStatic() && e.isAwake() && _islandSleep[findIsland(i)] >= PhysicsEntity.TIME_TO_SLEEP) 
+				e.setAwake(false);
+		}
+	}
+	/*Root of island containing index i, halving paths on the way.*/
+	private int findIsland(int i) {
+		while (_islands[i] != i) {
+			_islands[i] = _islands[_islands[i]];
+			i = _islands[i];
+		}
+		return i;
+	}
+	boolean inWorld(PhysicsEntity e) {
+		int index = e.getWorldIndex();
+		return index >= 0 && index < _entities.size() && _entities.get(index) == e;
+	}
+	
+	/*Gets/Sets whether resting Entities may fall asleep. Turning it
+	 * off wakes everything.*/
+	public boolean isSleepingAllowed() {
+		return _sleepingAllowed;
+	}
+	public void setSleepingAllowed(boolean allowed) {
+		_sleepingAllowed = allowed;
+		if (!allowed) 
+			this.wakeAll();
+	}
+	
+	/* Called by PhysicsEntity when it moves or rotates, 
+	 * so broadphase is always up to date. Static Entities
+	 * that actually moved mark static index for rebuild.*/
+	void onEntityMoved(PhysicsEntity e) {
+		int index = e.getWorldIndex();
+		if (index < 0 || index >= _entities.size() || _entities.get(index) != e) 
+			return;
+		boolean changed;
+		float[] old = _staticBounds.get(e);
+		if (old != null) {
+			e.getShape().getBounds(_bounds);
+			changed = !ShapeBounds.equal(_bounds, old);
+			if (changed) {
+				System.arraycopy(_bounds, 0, old, 0, 4);
+				_staticDirty = true;
+				//Static Entities don't collide with sleeping ones, so wake any it moved into
+				_sleepers.clear();
+				_broadphase.queryRegion(_bounds, _sleepers);
+				for (PhysicsEntity sleeper: _sleepers) 
+					if (isSleeping(sleeper)) 
+						sleeper.setAwake(true);
+			}
+		}
+		else if (_sensors.contains(e)) {
+			changed = _sensorPhase.update(e);
+		}
+		else {
+			changed = _broadphase.update(e);
+		}
+		if (_watched.contains(e)) 
+			_sensorPhase.update(e);
+		if (changed && e == _current) 
+			_currentMoved = true;
+	}
+	
+	/* Puts Entity in static index or broadphase, 
+	 * depending on whether it is static, or in sensor 
+	 * broadphase if an event-driven SensorEntity.*/
+	private void index(PhysicsEntity e) {
+		if (isEventSensor(e)) {
+			_sensors.add(e);
+			_sensorPhase.add(e);
+			((SensorEntity) e).setProxied(true);
+		}
+		else if (e.isStatic()) {
+			float[] bounds = new float[4];
+			e.getShape().getBounds(bounds);
+			_staticEntities.add(e);
+			_staticBounds.put(e, bounds);
+			_staticDirty = true;
+		}
+		else {
+			_broadphase.add(e);
+		}
+		if (_watched.contains(e)) 
+			_sensorPhase.add(e);
+	}
+	private void unindex(PhysicsEntity e) {
+		if (_sensors.remove(e)) {
+			((SensorEntity) e).setProxied(false);
+			_sensorPhase.remove(e);
+		}
+		else if (_staticBounds.remove(e) != null) {
+			_staticEntities.remove(e);
+			_staticDirty = true;
+		}
+		else {
+			_broadphase.remove(e);
+		}
+		if (_watched.contains(e)) 
+			_sensorPhase.remove(e);
+	}
+	private static boolean isEventSensor(PhysicsEntity e) {
+		return e instanceof SensorEntity && ((SensorEntity) e).isEventDriven();
+	}
+	/*Whether e is in the wrong index, i.e. became static or event-driven.*/
+	private boolean indexedWrong(PhysicsEntity e) {
+		if (isEventSensor(e)) 
+			return !_sensors.contains(e);
+		return _sensors.contains(e) || e.isStatic() != _staticBounds.containsKey(e);
+	}
+	
+	/* Puts e in sensor broadphase, for good, so event-driven sensors
+	 * hear when it begins or ends overlapping them. Called by sensors
+	 * for the Entities they watch.*/
+	void watch(PhysicsEntity e) {
+		if (e == null || !_watched.add(e)) 
+			return;
+		if (this.inWorld(e)) 
+			_sensorPhase.add(e);
+	}
+	
+	/*Builds static index again if static Entities changed.*/
+	private StaticAABBTree<PhysicsEntity> getStaticIndex() {
+		if (_staticDirty) {
+			float[] bounds = new float[4*_staticEntities.size()];
+			for (int i=0; i<_staticEntities.size(); i++) 
+				System.arraycopy(_staticBounds.get(_staticEntities.get(i)), 0, bounds, 4*i, 4);
+			_staticIndex = new StaticAABBTree<PhysicsEntity>(_staticEntities, bounds);
+			_staticDirty = false;
+		}
+		return _staticIndex;
+	}
+	
+	/* Called by broadphase when bounds of two dynamic Entities
+	 * start/stop overlapping. Empty in GameWorld, override in subclasses.*/
+	protected void onOverlapBegin(PhysicsEntity a, PhysicsEntity b) {
+	}
+	protected void onOverlapEnd(PhysicsEntity a, PhysicsEntity b) {
+	}
+	
+	/* Collides Entity a at index i with every Entity after it in list
+	 * whose bounds overlap, in list order. Same pairs and order as testing
+	 * every j > i, minus pairs that cannot collide. Static-static pairs
+	 * never collide, so a static Entity only looks for dynamic ones, and a
+	 * dynamic Entity gets its dynamic pairs from broadphase and its static
+	 * ones from static index. Responses are only recorded, but if a
+	 * collides override moves a and its bounds change, the indices
+	 * are queried again for the rest.*/
+	private void collidePairs(PhysicsEntity a, int i) {
+		int last = i;
+		int lastSkipped = -1;
+		boolean requery = true;
+		while (requery) {
+			requery = false;
+			_currentMoved = false;
+			_candidates.clear();
+			float[] staticBounds = _staticBounds.get(a);
+			if (staticBounds != null) {
+				_broadphase.queryRegion(staticBounds, _candidates);
+			}
+			else {
+				_broadphase.query(a, _candidates);
+				a.getShape().getBounds(_bounds);
+				this.getStaticIndex().queryRegion(_bounds, _candidates);
+			}
+			Collections.sort(_candidates, INDEX_ORDER);
+			for (PhysicsEntity b: _candidates) {
+				int j = b.getWorldIndex();
+				//Skip Entities no longer in list
+				if (j >= _entities.size() || _entities.get(j) != b) 
+					continue;
+				//Skip pairs already checked; earlier Entities only if they slept through their turn
+				if (j < i ? (!b.hasSkippedTurn() || j <= lastSkipped) : j <= last) 
+					continue;
+				if (j < i) 
+					lastSkipped = j;
+				else 
+					last = j;
+				//Skip pairs filtered out by collision category/mask
+				if (!PhysicsEntity.shouldCollide(a, b)) 
+					continue;
+				//Only touching an awake, moving Entity wakes a sleeping one
+				if (isSleeping(b)) {
+					if (a.isStatic() || !a.collidesWithoutCollisionResponse(b)) 
+						continue;
+					b.setAwake(true);
+				}
+				//Earlier Entity's collides is always the one called
+				if (j < i) 
+					b.collides(a);
+				else 
+					a.collides(b);
+				this.onEntityMoved(b);
+				this.onEntityMoved(a);
+				if (_currentMoved) {
+					requery = true;
+					break;
 				}
-//				if (_entities.get(i).isStatic() == false) 
-				//Send tick to every entity in list
-				_entities.get(i).onTick(nanosSincePreviousTick/_iters);
 			}
 		}
-		_accumulatedTime -= _iters * _timestep; 
 	}
 	
+	/* Queues every pair the pair loop will look at, as things are at the
+	 * start of the step, and runs their shape tests on narrowphase's threads.
+	 * Same pairs and orientation as collidePairs: a's pairs with Entities
+	 * after it, and with earlier ones only if they are asleep (those are
+	 * tested a against b first, to see if b wakes).*/
+	private void testPairsAhead() {
+		_parallelNarrowphase.clear();
+		for (int i=0; i<_entities.size(); i++) {
+			PhysicsEntity a = _entities.get(i);
+			if (isSleeping(a) || _sensors.contains(a)) 
+				continue;
+			_candidates.clear();
+			float[] staticBounds = _staticBounds.get(a);
+			if (staticBounds != null) {
+				_broadphase.queryRegion(staticBounds, _candidates);
+			}
+			else {
+				_broadphase.query(a, _candidates);
+				a.getShape().getBounds(_bounds);
+				this.getStaticIndex().queryRegion(_bounds, _candidates);
+			}
+			for (PhysicsEntity b: _candidates) {
+				int j = b.getWorldIndex();
+				if (j == i || j >= _entities.size() || _entities.get(j) != b) 
+					continue;
+				if (j < i && !isSleeping(b)) 
+					continue;
+				if ((a.isStatic() && b.isStatic()) || !PhysicsEntity.shouldCollide(a, b)) 
+					continue;
+				if (isSleeping(b) && a.isStatic()) 
+					continue;
+				_parallelNarrowphase.add(a, b);
+			}
+		}
+		_parallelNarrowphase.run(_narrowphase);
+	}
+	
+	/* Shape test of a against b for PhysicsEntity.collides, or its
+	 * result if it was already tested on another thread this step.*/
+	boolean testShapes(PhysicsEntity a, PhysicsEntity b) {
+		if (_parallelNarrowphase != null) {
+			Boolean replayed = _parallelNarrowphase.replay(a, b);
+			if (replayed != null) 
+				return replayed;
+		}
+		if (a.getShape() == null || b.getShape() == null) 
+			return false;
+		return _narrowphase.collides(a.getShape(), b.getShape());
+	}
+	
+	/* Time of impact of e moving by (dx, dy) into static geometry, as
+	 * a fraction of the move, or 1 if it gets there without touching any
+	 * static Entity it wasn't already touching. Found by conservative 
+	 * sampling: the path is tested with narrowphase at steps of half e's
+	 * size, so no surface can fall between samples, then the step with
+	 * the first overlap is bisected. The time returned is just past first
+	 * touching, so the next step's pair loop finds the contact.*/
+	float timeOfImpact(PhysicsEntity e, float dx, float dy) {
+		Shape shape = e.getShape();
+		shape.getBounds(_bounds);
+		float size = Math.min(_bounds[ShapeBounds.MAX_X] - _bounds[ShapeBounds.MIN_X], 
+				_bounds[ShapeBounds.MAX_Y] - _bounds[ShapeBounds.MIN_Y]);
+		float dist = (float) Math.sqrt(dx*dx + dy*dy);
+		//Slower than that, pair loop can't miss anything
+		if (size <= 0 || dist <= size/2) 
+			return 1;
+		_sweepBounds[ShapeBounds.MIN_X] = _bounds[ShapeBounds.MIN_X] + Math.min(0, dx);
+		_sweepBounds[ShapeBounds.MIN_Y] = _bounds[ShapeBounds.MIN_Y] + Math.min(0, dy);
+		_sweepBounds[ShapeBounds.MAX_X] = _bounds[ShapeBounds.MAX_X] + Math.max(0, dx);
+		_sweepBounds[ShapeBounds.MAX_Y] = _bounds[ShapeBounds.MAX_Y] + Math.max(0, dy);
+		_sweepCandidates.clear();
+		this.getStaticIndex().queryRegion(_sweepBounds, _sweepCandidates);
+		//Only solid things it would collide with, and not what it's resting on already
+		for (int i=_sweepCandidates.size()-1; i >= 0; i--) {
+			PhysicsEntity other = _sweepCandidates.get(i);
+			if (other == e || !other.isInteractive() || !e.isInteractive() || !PhysicsEntity.shouldCollide(e, other)
+					|| other.getShape() == null || _narrowphase.collides(shape, other.getShape())) 
+				_sweepCandidates.remove(i);
+		}
+		if (_sweepCandidates.isEmpty()) 
+			return 1;
+		Vec2f start = shape.getLocation();
+		int samples = (int) Math.ceil(dist/(size/2));
+		float clear = 0, hit = 1;
+		boolean found = false;
+		for (int i=1; i <= samples && !found; i++) {
+			float t = i/(float) samples;
+			if (this.sweptOverlaps(shape, start, dx*t, dy*t)) {
+				hit = t;
+				found = true;
+			}
+			else {
+				clear = t;
+			}
+		}
+		for (int i=0; found && i < TOI_ITERATIONS; i++) {
+			float t = (clear + hit)/2;
+			if (this.sweptOverlaps(shape, start, dx*t, dy*t)) 
+				hit = t;
+			else 
+				clear = t;
+		}
+		shape.setLocation(start);
+		return found ? hit : 1;
+	}
+	/*Whether shape, moved to start + (dx, dy), overlaps any sweep candidate.*/
+	private boolean sweptOverlaps(Shape shape, Vec2f start, float dx, float dy) {
+		shape.setLocation(new Vec2f(start.x + dx, start.y + dy));
+		for (PhysicsEntity other: _sweepCandidates) {
+			if (_narrowphase.collides(shape, other.getShape())) 
+				return true;
+		}
+		return false;
+	}
+	
+	/*Gets/Sets shape test used on every pair, SAT by default.*/
+	public Narrowphase getNarrowphase() {
+		return _narrowphase;
+	}
+	public void setNarrowphase(Narrowphase narrowphase) {
+		_narrowphase = narrowphase;
+	}
+	
+	/*Gets/Sets number of threads shape tests are split across.
+	 * 1 tests every pair in pair loop, on this thread only.
+	 * Either way, results are exactly the same.*/
+	public int getNarrowphaseThreads() {
+		return _parallelNarrowphase == null ? 1 : _parallelNarrowphase.getThreads();
+	}
+	public void setNarrowphaseThreads(int threads) {
+		if (_parallelNarrowphase != null) 
+			_parallelNarrowphase.shutdown();
+		_parallelNarrowphase = threads > 1 ? new ParallelNarrowphase(threads) : null;
+	}
+	
+	/*Fixed steps run by the last onTick.*/
 	public int getIterations() {
-		return _iters;
+		return _scheduler.getSteps();
 	}
 	
+	/*Gets/Sets length of fixed step, in nanoseconds.*/
 	public int getTimestep() {
-		return _timestep;
+		return (int) _scheduler.getTimestep();
 	}
 	public void setTimestep(int step) {
-		_timestep = step;
+		_scheduler.setTimestep(step);
+	}
+	/*Gets/Sets most fixed steps run in one onTick; time past
+	 * that is dropped, so a hitch can't snowball.*/
+	public int getMaxSteps() {
+		return _scheduler.getMaxSteps();
+	}
+	public void setMaxSteps(int max) {
+		_scheduler.setMaxSteps(max);
+	}
+	
+	/* Fraction of a fixed step accumulated since the last one ran.
+	 * draw blends each Entity from where it was at the start of the
+	 * last step to where it is now by it, if interpolating.*/
+	public float getInterpolationAlpha() {
+		return _scheduler.getAlpha();
+	}
+	public boolean isInterpolating() {
+		return _interpolating;
+	}
+	public void setInterpolating(boolean interpolating) {
+		_interpolating = interpolating;
+	}
+	
+	/* Whether to step on a simulation thread instead of in onTick. Once
+	 * threaded, the front end calls startSimulation instead of onTick,
+	 * hands anything that touches the world to invoke, and draw draws
+	 * the last snapshot published, so neither thread waits on the other.
+	 * Turning it off stops the thread.*/
+	public boolean isThreaded() {
+		return _threaded;
+	}
+	public void setThreaded(boolean threaded) {
+		_threaded = threaded;
+		if (!threaded) 
+			this.stopSimulation();
+	}
+	/*Starts simulation thread, if threaded and not started yet.*/
+	public void startSimulation() {
+		if (!_threaded || (_simulation != null && _simulation.isRunning())) 
+			return;
+		_scheduler.reset();
+		_simulation = new SimulationThread(this);
+		_simulation.start();
+	}
+	/*Stops simulation thread, if running; the world can be ticked again after.*/
+	public void stopSimulation() {
+		if (_simulation != null) 
+			_simulation.stop();
+		_simulation = null;
+		_published = null;
+	}
+	/* Runs r on the thread that steps the world: before its next tick if
+	 * the simulation thread is running, otherwise now.*/
+	public void invoke(Runnable r) {
+		SimulationThread simulation = _simulation;
+		if (simulation != null && simulation.isRunning() && !simulation.isCurrent()) 
+			simulation.post(r);
+		else 
+			r.run();
+	}
+	
+	/*Last snapshot published by the simulation thread, or null.*/
+	public RenderSnapshot getSnapshot() {
+		return _published;
+	}
+	/* Fills whichever snapshot isn't published with every Entity as it
+	 * is now, and publishes it. Skipped if it's still being drawn (it
+	 * was published and replaced mid-draw); the next step tries again.*/
+	void publish() {
+		RenderSnapshot back = _published == _snapshots[0] ? _snapshots[1] : _snapshots[0];
+		if (_drawing.get() == back) 
+			return;
+		back.clear(_scheduler.getAlpha(), _scheduler.getTimestep());
+		for (PhysicsEntity e: _entities) {
+			Drawable d = e.snapshot();
+			Shape shape = e.getShape();
+			if (shape == null) {
+				back.add(e, d, 0, 0, 0, 0, 0, 0);
+				continue;
+			}
+			Vec2f loc = shape.getLocation();
+			float angle = shape.getAngle();
+			if (!_interpolating || e.isStatic() || e.getBodyStore() != _bodies) {
+				back.add(e, d, loc.x, loc.y, angle, loc.x, loc.y, angle);
+				continue;
+			}
+			int id = e.getBodyId();
+			back.add(e, d, loc.x, loc.y, angle, _bodies.prevX[id], _bodies.prevY[id], _bodies.prevAngle[id]);
+		}
+		back.publish(System.nanoTime());
+		_published = back;
 	}
 	
 	/* Returns size of Game World in game units */
@@ -134,12 +826,67 @@ public class GameWorld {
 	 * Can only be mutated indirectly through add/remove methods.*/
 	protected void setEntitiesList(ArrayList<PhysicsEntity> newList) {
 		_entities = newList;
+		this.rebuildBroadphase();
 	}
 	protected void setEntitiesArr(PhysicsEntity[] arr) {
 		ArrayList<PhysicsEntity> newlist = new ArrayList<PhysicsEntity>();
 		for (PhysicsEntity p: arr) 
 			newlist.add(p);	
 		_entities = newlist;
+		this.rebuildBroadphase();
+	}
+	
+	/*Gets/Sets spatial index of dynamic Entities used for broadphase
+	 * collision detection and ray casts. Setting repopulates it.*/
+	public Broadphase getBroadphase() {
+		return _broadphase;
+	}
+	public void setBroadphase(Broadphase broadphase) {
+		_broadphase.setPairListener(null);
+		_broadphase.clear();
+		_broadphase = broadphase;
+		_broadphase.setPairListener(_pairListener);
+		this.rebuildBroadphase();
+	}
+	private void rebuildBroadphase() {
+		_broadphase.clear();
+		_staticEntities.clear();
+		_staticBounds.clear();
+		_staticDirty = true;
+		for (int i=0; i<_entities.size(); i++) {
+			_entities.get(i).setWorldIndex(i);
+			_entities.get(i).setBodyStore(_bodies);
+			this.index(_entities.get(i));
+		}
+	}
+	/*Keeps Entities' indices in sync after list changes at index.*/
+	private void reindexFrom(int index) {
+		for (int i=index; i<_entities.size(); i++) 
+			_entities.get(i).setWorldIndex(i);
+	}
+	
+	/*Contacts kept between steps. Collision response warm starts
+	 * from them unless warm starting is turned off.*/
+	public ContactCache getContactCache() {
+		return _contacts;
+	}
+	/*Where Outputs fired during a step wait for its end.*/
+	public EventQueue getEventQueue() {
+		return _events;
+	}
+	
+	/*Solver for contacts and joints; set its iterations
+	 * and position correction here.*/
+	public ConstraintSolver getConstraintSolver() {
+		return _solver;
+	}
+	/*Add and remove Joints, solved along with contacts. A Joint
+	 * does nothing while its Entity isn't in world.*/
+	public void addJoint(Joint j) {
+		_solver.addJoint(j);
+	}
+	public void removeJoint(Joint j) {
+		_solver.removeJoint(j);
 	}
 	
 	/*Return a java Array of PhysicsEntities currently in world. Public
@@ -152,27 +899,46 @@ public class GameWorld {
 	/*Add and remove PhysicsEntity from GameWorld.*/
 	public void addEntity(PhysicsEntity e) {
 		_entities.add(e);
+		e.setWorldIndex(_entities.size()-1);
+		e.setBodyStore(_bodies);
+		e.savePreviousTransform();
+		if (!_staticBounds.containsKey(e)) 
+			this.index(e);
 	}
 	public void removeEntity(PhysicsEntity e) {
-		if (_entities.contains(e))
-			_entities.remove(_entities.indexOf(e));
+		if (_entities.contains(e)) {
+			int index = _entities.indexOf(e);
+			_entities.remove(index);
+			this.reindexFrom(index);
+			if (!_entities.contains(e)) {
+				this.unindex(e);
+				_contacts.remove(e);
+				e.setWorldIndex(-1);
+				e.setBodyStore(new BodyStore(1));
+			}
+		}
 	}
 	/*Adds Entity to front of ArrayList. Ensures that this
 	 * Entity's collides method is the one being called in 
 	 * each collision with it.*/
 	public void addEntityToFront(PhysicsEntity e) {
 		_entities.add(0, e);
+		this.reindexFrom(0);
+		e.setBodyStore(_bodies);
+		e.savePreviousTransform();
+		if (!_staticBounds.containsKey(e)) 
+			this.index(e);
 	}
 	
 	/*Add multiple PhysicsEntities at once.*/
 	public void addEntities(PhysicsEntity... toAdd) {
 		for (PhysicsEntity e: toAdd) 
-			_entities.add(e);
+			this.addEntity(e);
 	}
 	/*Add multiple PhysicsEntities to front.*/
 	public void addEntitiesToFront(PhysicsEntity... toAddFront) {
 		for (PhysicsEntity e: toAddFront) 
-			_entities.add(0, e);
+			this.addEntityToFront(e);
 	}
 	/*Remove multiple PhysicsEntities from list at once. Only
 	 * removes the entities that are currently contained in world.*/
@@ -194,7 +960,7 @@ public class GameWorld {
 	/*Add and remove all Entities in Array*/
 	public void addEntitiesInArr(PhysicsEntity[] toAdd) {
 		for (PhysicsEntity e: toAdd) 
-			_entities.add(e);
+			this.addEntity(e);
 	}
 	public void removeEntitiesInArr(PhysicsEntity[] toRemove) {
 		for (PhysicsEntity e: toRemove) 
@@ -209,13 +975,17 @@ public class GameWorld {
 	 * the Entities in _shapes and returns the first PhysicsEntity to 
 	 * get hit and the point of intersection with that Entity. Takes in an 
 	 * Entity to skip, usually the entity from which ray is being cast, so
-	 * collision will not be detected if it is colliding with skip. */
+	 * collision will not be detected if it is colliding with skip. 
+	 * Only Entities whose bounds the ray crosses in the broadphase are 
+	 * tested, in list order so ties go to the same Entity as before.*/
 	public Tuple<PhysicsEntity, Vec2f> castRay(Vec2f src, Vec2f dst, PhysicsEntity skip) {		
 		Tuple<PhysicsEntity, Vec2f> firstHit = null;		
-		PhysicsEntity[] ents = this.getEntitiesToArr();
-		for (PhysicsEntity ent: ents) {
+		_rayCandidates.clear();
+		_broadphase.queryRay(src, dst, _rayCandidates);
+		Collections.sort(_rayCandidates, INDEX_ORDER);
+		Ray ray = new Ray(src, dst);
+		for (PhysicsEntity ent: _rayCandidates) {
 			if (ent != skip && ent.isStatic()==false) {
-				Ray ray = new Ray(src, dst);
 				Vec2f cast = ray.cast(ent.getShape());
 				if (cast != null) {
 					if (firstHit == null || src.dist2(cast) < src.dist2(firstHit.y)) 
@@ -226,6 +996,172 @@ public class GameWorld {
 		return firstHit;
 	}
 	
+	/* castRay for a batch of rays from one point, i.e. an explosion:
+	 * ray i goes from (srcX, srcY) through (dstX[i], dstY[i]). Hits
+	 * further than maxDist from src are ignored, so the broadphase is
+	 * queried once, for the box around src that every hit is in, and the
+	 * candidates are cast against with primitive math: no Ray, Tuple or
+	 * Vec2f per ray. 
+	 * 
+	 * For each ray writes world index of first non-static Entity hit
+	 * (see getEntity), or -1, and the hit point and its distance from src,
+	 * into the given arrays, which need count slots. Ties go to the
+	 * Entity earlier in the list, same as castRay. Returns rays that hit.*/
+	public int castRays(float srcX, float srcY, float[] dstX, float[] dstY, int count, float maxDist, 
+			PhysicsEntity skip, int[] hitIndex, float[] hitX, float[] hitY, float[] hitDist) {
+		if (dstX.length < count || dstY.length < count || hitIndex.length < count || 
+				hitX.length < count || hitY.length < count || hitDist.length < count) 
+			throw new IllegalArgumentException("Arrays too short for " + count + " rays");
+		for (int i=0; i<count; i++) {
+			hitIndex[i] = -1;
+			hitDist[i] = Float.POSITIVE_INFINITY;
+		}
+		_rayBounds[0] = srcX - maxDist;
+		_rayBounds[1] = srcY - maxDist;
+		_rayBounds[2] = srcX + maxDist;
+		_rayBounds[3] = srcY + maxDist;
+		_rayCandidates.clear();
+		_broadphase.queryRegion(_rayBounds, _rayCandidates);
+		Collections.sort(_rayCandidates, INDEX_ORDER);
+		//Candidates outer, so each Shape is fetched once for every ray
+		for (PhysicsEntity ent: _rayCandidates) {
+			if (ent == skip || ent.isStatic()) 
+				continue;
+			Shape shape = ent.getShape();
+			int index = ent.getWorldIndex();
+			for (int i=0; i<count; i++) {
+				float dx = dstX[i] - srcX, dy = dstY[i] - srcY;
+				float len = (float) Math.sqrt(dx*dx + dy*dy);
+				if (len == 0) 
+					continue;
+				float t = Ray.cast(srcX, srcY, dx/len, dy/len, shape);
+				if (t >= 0 && t <= maxDist && t < hitDist[i]) {
+					hitIndex[i] = index;
+					hitDist[i] = t;
+					hitX[i] = srcX + dx/len*t;
+					hitY[i] = srcY + dy/len*t;
+				}
+			}
+		}
+		int hits = 0;
+		for (int i=0; i<count; i++) 
+			if (hitIndex[i] >= 0) 
+				hits++;
+		return hits;
+	}
+	
+	/*Entity at index in world's list, i.e. as given by castRays.*/
+	public PhysicsEntity getEntity(int index) {
+		return _entities.get(index);
+	}
+	
+	/* Spatial queries, for game code asking what is near a point,
+	 * answered from the broadphase and the static index instead of a
+	 * scan over every Entity. Each clears out, fills it with the matching
+	 * Entities in world, static or not, in list order, and returns how
+	 * many. Buffers are the caller's, so once they're big enough nothing
+	 * is allocated.*/
+	
+	/*Entities whose bounds overlap [minX, maxX] x [minY, maxY].*/
+	public int queryRegion(float minX, float minY, float maxX, float maxY, List<PhysicsEntity> out) {
+		out.clear();
+		this.queryCandidates(minX, minY, maxX, maxY);
+		for (PhysicsEntity e: _queryCandidates) {
+			e.getShape().getBounds(_queryBounds);
+			if (ShapeBounds.overlaps(_queryRegion, _queryBounds)) 
+				out.add(e);
+		}
+		Collections.sort(out, INDEX_ORDER);
+		return out.size();
+	}
+	/*Entities whose Shapes contain (x, y).*/
+	public int queryPoint(float x, float y, List<PhysicsEntity> out) {
+		out.clear();
+		this.queryCandidates(x, y, x, y);
+		Vec2f pnt = new Vec2f(x, y);
+		for (PhysicsEntity e: _queryCandidates) 
+			if (e.getShape().contains(pnt)) 
+				out.add(e);
+		Collections.sort(out, INDEX_ORDER);
+		return out.size();
+	}
+	/*Entities whose bounds come within radius of (x, y).*/
+	public int queryRadius(float x, float y, float radius, List<PhysicsEntity> out) {
+		out.clear();
+		this.queryCandidates(x - radius, y - radius, x + radius, y + radius);
+		for (PhysicsEntity e: _queryCandidates) {
+			e.getShape().getBounds(_queryBounds);
+			if (ShapeBounds.dist2(_queryBounds, x, y) <= radius*radius) 
+				out.add(e);
+		}
+		Collections.sort(out, INDEX_ORDER);
+		return out.size();
+	}
+	/* Up to k Entities nearest (x, y), nearest first, by distance to
+	 * their bounds (0 inside); ties go to the Entity earlier in the list.
+	 * Searches a square around the point, doubling it until k Entities
+	 * are within its radius or it holds every Entity, so cost depends on
+	 * how crowded it is near the point, not on size of world. out needs
+	 * k slots; returns how many were found.*/
+	public int queryNearest(float x, float y, int k, PhysicsEntity[] out) {
+		if (out.length < k) 
+			throw new IllegalArgumentException("Array too short for " + k + " Entities");
+		if (k <= 0 || _entities.isEmpty()) 
+			return 0;
+		if (_nearestDist.length < k) 
+			_nearestDist = new float[k];
+		float radius = NEAREST_START_RADIUS;
+		while (true) {
+			this.queryCandidates(x - radius, y - radius, x + radius, y + radius);
+			boolean all = _queryCandidates.size() >= _entities.size() || radius > Float.MAX_VALUE/4;
+			int found = 0;
+			for (PhysicsEntity e: _queryCandidates) {
+				e.getShape().getBounds(_queryBounds);
+				float d = ShapeBounds.dist2(_queryBounds, x, y);
+				//Only what's within radius is sure to be nearer than anything outside square
+				if (!all && d > radius*radius) 
+					continue;
+				if (found == k && !nearer(d, e, _nearestDist[k-1], out[k-1])) 
+					continue;
+				//Insert, keeping k nearest in order
+				int i = Math.min(found, k-1);
+				while (i > 0 && nearer(d, e, _nearestDist[i-1], out[i-1])) {
+					out[i] = out[i-1];
+					_nearestDist[i] = _nearestDist[i-1];
+					i--;
+				}
+				out[i] = e;
+				_nearestDist[i] = d;
+				found = Math.min(found + 1, k);
+			}
+			if (found == k || all) {
+				for (int i=found; i<k; i++) 
+					out[i] = null;
+				return found;
+			}
+			radius *= 2;
+		}
+	}
+	private static boolean nearer(float d, PhysicsEntity e, float otherD, PhysicsEntity other) {
+		return d < otherD || (d == otherD && e.getWorldIndex() < other.getWorldIndex());
+	}
+	/*Fills _queryCandidates from both indexes; bounds there may be loose.*/
+	private void queryCandidates(float minX, float minY, float maxX, float maxY) {
+		_queryRegion[0] = minX;
+		_queryRegion[1] = minY;
+		_queryRegion[2] = maxX;
+		_queryRegion[3] = maxY;
+		_queryCandidates.clear();
+		_broadphase.queryRegion(_queryRegion, _queryCandidates);
+		this.getStaticIndex().queryRegion(_queryRegion, _queryCandidates);
+		//Sensor broadphase holds watched Entities too; those are in the others
+		_sensorCandidates.clear();
+		_sensorPhase.queryRegion(_queryRegion, _sensorCandidates);
+		for (PhysicsEntity e: _sensorCandidates) 
+			if (_sensors.contains(e)) 
+				_queryCandidates.add(e);
+	}
+	
 	
 	
 	
@@ -247,6 +1183,94 @@ public class GameWorld {
 		if (props.containsKey("x") && props.containsKey("y")) {
 			_viewport.setPortCenterInGameUnits(new Vec2f(Float.parseFloat(props.get("x")), Float.parseFloat(props.get("y"))));
 		}
+		//"tree" for dynamic AABB tree, "grid" for spatial hash, "sap" for sweep and prune
+		if (props.containsKey("broadphase")) {
+			String type = props.get("broadphase");
+			if (type.equals("tree")) 
+				this.setBroadphase(new DynamicAABBTree());
+			else if (type.equals("sap")) 
+				this.setBroadphase(new SweepAndPruneBroadphase());
+			else if (type.equals("grid")) 
+				this.setBroadphase(new SpatialHashBroadphase());
+			else 
+				System.err.println("Unknown broadphase: " + type);
+		}
+		if (props.containsKey("sleep")) {
+			this.setSleepingAllowed(Boolean.parseBoolean(props.get("sleep")));
+		}
+		//"sat" for separating axes, "gjk" for GJK/EPA on convex shapes
+		if (props.containsKey("narrowphase")) {
+			String type = props.get("narrowphase");
+			if (type.equals("sat")) 
+				this.setNarrowphase(new SATNarrowphase());
+			else if (type.equals("gjk")) 
+				this.setNarrowphase(new GJKNarrowphase());
+			else 
+				System.err.println("Unknown narrowphase: " + type);
+		}
+		//Number of threads for shape tests, "cores" for one per core
+		if (props.containsKey("narrowphase_threads")) {
+			String threads = props.get("narrowphase_threads");
+			if (threads.equals("cores")) 
+				this.setNarrowphaseThreads(Runtime.getRuntime().availableProcessors());
+			else 
+				this.setNarrowphaseThreads(Integer.parseInt(threads));
+		}
+		if (props.containsKey("warm_start")) {
+			_contacts.setWarmStarting(Boolean.parseBoolean(props.get("warm_start")));
+		}
+		//Length of fixed step in milliseconds; bullets keep longer ones from tunneling
+		if (props.containsKey("timestep")) {
+			try {
+				this.setTimestep((int) (Float.parseFloat(props.get("timestep").trim())*1000000));
+			} catch (IllegalArgumentException e) {
+				System.err.println("Bad timestep (GameWorld.setProperties): " + e.getMessage());
+			}
+		}
+		if (props.containsKey("max_steps")) {
+			try {
+				this.setMaxSteps(Integer.parseInt(props.get("max_steps").trim()));
+			} catch (IllegalArgumentException e) {
+				System.err.println("Bad max_steps (GameWorld.setProperties): " + e.getMessage());
+			}
+		}
+		if (props.containsKey("interpolate")) {
+			this.setInterpolating(Boolean.parseBoolean(props.get("interpolate")));
+		}
+		//Bake distance fields of all static curved terrain (cell size, game units)
+		if (props.containsKey("distance_field")) {
+			try {
+				float cell = Float.parseFloat(props.get("distance_field").trim());
+				boolean exact = Boolean.parseBoolean(props.get("distance_field_exact"));
+				//Wide enough for the biggest circle to be decided by the field
+				float band = BezierPath.FIELD_BAND;
+				for (PhysicsEntity e: _entities) 
+					if (!e.isStatic() && e.getShape() instanceof CircleShape) 
+						band = Math.max(band, BezierPath.FIELD_BAND + ((CircleShape) e.getShape()).getRadius());
+				for (PhysicsEntity e: _entities) 
+					if (e.isStatic() && e.getShape() instanceof BezierPath) 
+						((BezierPath) e.getShape()).setDistanceField(cell, band, exact);
+			} catch (NumberFormatException e) {
+				System.err.println("Distance field cell must be a number (GameWorld.setProperties)");
+			}
+		}
+		//Drop repeats of the same event within a step
+		if (props.containsKey("coalesce_events")) {
+			_events.setCoalescing(Boolean.parseBoolean(props.get("coalesce_events")));
+		}
+		//Step on a thread of its own, started by the front end
+		if (props.containsKey("threaded")) {
+			this.setThreaded(Boolean.parseBoolean(props.get("threaded")));
+		}
+		//Solver convergence: velocity iterations per step, and Baumgarte factor (0-1)
+		try {
+			if (props.containsKey("solver_iterations")) 
+				_solver.setIterations(Integer.parseInt(props.get("solver_iterations").trim()));
+			if (props.containsKey("baumgarte")) 
+				_solver.setBaumgarte(Float.parseFloat(props.get("baumgarte").trim()));
+		} catch (IllegalArgumentException e) {
+			System.err.println("Bad solver setting (GameWorld.setProperties): " + e.getMessage());
+		}
 		
 	}
 	
@@ -284,14 +1308,71 @@ public class GameWorld {
 	/* Just draws all Entities currently in GameWorld's
 	 * list of Entities. The AffineTransform and clipping
 	 * both occur in Viewport's draw method, which is where
-	 * this draw method is called from.*/
+	 * this draw method is called from. When interpolating,
+	 * each moving Entity is drawn at its blend of last step 
+	 * and this one by adding to that transform, so Shapes
+	 * themselves are never touched.*/
 	public void draw(Graphics2D g) {		
+		if (_threaded) {
+			this.drawSnapshot(g);
+			return;
+		}
+		float alpha = _scheduler.getAlpha();
 		//Handle draw() for all Entities in GameWorld
 		for (PhysicsEntity e: _entities) {
+			if (!_interpolating || e.isStatic() || e.getBodyStore() != _bodies) {
+				e.draw(g);
+				continue;
+			}
+			BodyStore b = _bodies;
+			int id = e.getBodyId();
+			Vec2f loc = e.getLocation();
+			float angle = e.getShape().getAngle();
+			//Lerp from previous transform to current
+			float dx = (b.prevX[id] - loc.x)*(1 - alpha);
+			float dy = (b.prevY[id] - loc.y)*(1 - alpha);
+			float dAngle = angleDelta(b.prevAngle[id], angle)*(1 - alpha);
+			if (dx == 0 && dy == 0 && dAngle == 0) {
+				e.draw(g);
+				continue;
+			}
+			AffineTransform saved = g.getTransform();
+			g.translate(dx, dy);
+			if (dAngle != 0) 
+				g.rotate(dAngle, loc.x, loc.y);
 			e.draw(g);
+			g.setTransform(saved);
 		}
 	}
 	
+	/* from - to, the short way round, in [-pi, pi]. Shape keeps angles
+	 * mod 2pi, so a plain difference across the wrap is nearly a full
+	 * turn the wrong way.*/
+	static float angleDelta(float from, float to) {
+		float twoPi = 2*(float) Math.PI;
+		float d = (from - to)%twoPi;
+		if (d > Math.PI)
+			d -= twoPi;
+		else if (d < -Math.PI)
+			d += twoPi;
+		return d;
+	}
+	
+	/* Draws the last published snapshot. Marks it as being drawn, then
+	 * checks it's still the one published: if so, the simulation thread
+	 * can't start refilling it until it's unmarked, and if not, tries the
+	 * newer one. No locks; neither thread ever waits.*/
+	private void drawSnapshot(Graphics2D g) {
+		RenderSnapshot snapshot;
+		do {
+			snapshot = _published;
+			_drawing.set(snapshot);
+		} while (snapshot != _published);
+		if (snapshot != null) 
+			snapshot.draw(g, System.nanoTime());
+		_drawing.set(null);
+	}
+	
 	public Viewport getViewport() {
 		return _viewport;
 	}
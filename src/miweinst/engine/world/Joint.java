@@ -0,0 +1,29 @@
+package miweinst.engine.world;
+
+/* Constraint on a PhysicsEntity, solved by GameWorld's ConstraintSolver
+ * in the same iterations as contacts. Joints hold the Entity to a point
+ * in the world; they do nothing while it's out of the world, asleep or
+ * static. Add with GameWorld.addJoint.
+ *
+ * Subclasses work on the Entity's BodyStore directly, so they live in
+ * this package.*/
+
+public abstract class Joint {
+
+	private PhysicsEntity _body;
+
+	public Joint(PhysicsEntity body) {
+		_body = body;
+	}
+
+	public PhysicsEntity getBody() {
+		return _body;
+	}
+
+	/* Called once per step after velocities are integrated: work out
+	 * effective mass and bias for this step, seconds long, and apply last
+	 * step's impulse if warm starting (forgetting it otherwise).*/
+	abstract void prepare(float seconds, float baumgarte, boolean warmStarting);
+	/*Called once per solver iteration: applies impulse toward satisfying joint.*/
+	abstract void solve();
+}
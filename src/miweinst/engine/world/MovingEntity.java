@@ -3,6 +3,7 @@ package miweinst.engine.world;
 import java.awt.Color;
 import java.awt.Graphics2D;
 
+import miweinst.engine.gfx.Drawable;
 import miweinst.engine.shape.CircleShape;
 import miweinst.engine.shape.Shape;
 import cs195n.Vec2f;
@@ -27,6 +28,11 @@ public abstract class MovingEntity extends Entity {
 	 * of Entity.*/
 	private Shape _shape;
 	
+	//Snapshot of an Entity that isn't drawn
+	protected static final Drawable NOTHING = new Drawable() {
+		public void draw(Graphics2D g) {}
+	};
+	
 	//Movement vars
 	private float _dx;
 	private float _dy;
@@ -257,4 +263,12 @@ public abstract class MovingEntity extends Entity {
 			if (_shape != null) 
 				_shape.draw(g);
 	}
+	
+	/*Copy of Shape as it is now, or nothing if not drawn.*/
+	@Override
+	public Drawable snapshot() {
+		if (!this.isVisible() || _shape == null)
+			return NOTHING;
+		return _shape.snapshot();
+	}
 }
@@ -1,12 +1,15 @@
 package miweinst.engine.world;
 
+import java.awt.Color;
 import java.util.ArrayList;
 import java.util.Map;
 
+import miweinst.engine.collisiondetection.CollisionGroup;
 import miweinst.engine.collisiondetection.PhysicsCollisionInfo;
 import miweinst.engine.collisiondetection.ShapeCollisionInfo;
 import miweinst.engine.entityIO.Input;
 import miweinst.engine.entityIO.Output;
+import miweinst.engine.gfx.Drawable;
 import miweinst.engine.shape.Shape;
 import miweinst.gravidog.Constants;
 import miweinst.gravidog.Player;
@@ -17,14 +20,19 @@ public class PhysicsEntity extends MovingEntity {
 
 	//Gravity acts on all objects of GameWorld equally
 	public static Vec2f GRAVITY = new Vec2f(0, -200f);
+	//Entity moving slower than these (units/sec, radians/sec) for
+	//TIME_TO_SLEEP seconds, along with everything touching it, goes to sleep
+	public static final float LINEAR_SLEEP_TOLERANCE = .5f;
+	public static final float ANGULAR_SLEEP_TOLERANCE = .05f;
+	public static final float TIME_TO_SLEEP = .5f;
 
 	//Self-explanatory attributes of physical object
 	private float _density; //mass per square game unit. a density of 1 will mean a mass equal to the area of the shape
-	private Vec2f _vel;
-	private Vec2f _force, _impulse;
+	//Velocity, force, impulse and their angular parts live in a BodyStore,
+	//the world's once added to one; this is body _body in it
+	private BodyStore _bodies;
+	private int _body;
 	private float _restitution;
-	private float _angularImpulse, _angularForce;	//radians
-	private float _angularVel;
 
 	//Most recent Collision, MTV and other PhysicsEntity
 	private ArrayList<PhysicsCollisionInfo> _collisionInfo;
@@ -34,6 +42,29 @@ public class PhysicsEntity extends MovingEntity {
 	private boolean _isInteractive;
 	private boolean _isRotatable;
 	private boolean _isGravitational;
+	//Swept against static geometry each step, so it can't pass through it
+	private boolean _isBullet;
+	//Collision filtering; collides only if each category is in the other's mask
+	private int _category;
+	private int _mask;
+	//Position in GameWorld's list of Entities, set by GameWorld
+	private int _worldIndex;
+	private GameWorld _world;
+	//Sleeping Entities skip integration and collisions until woken
+	private boolean _isAwake;
+	private boolean _isSleepingAllowed;
+	private float _sleepTime;
+	private Vec2f _sleepLoc;
+	private float _sleepAngle;
+	//Whether Entity was asleep on its turn in GameWorld's current step
+	private boolean _skippedTurn;
+	//Static Entity's last snapshot, and the Shape, version, visibility
+	//and colors it was taken of
+	private Drawable _staticSnapshot;
+	private Shape _snapshotShape;
+	private int _snapshotVersion;
+	private boolean _snapshotVisible;
+	private Color _snapshotColor, _snapshotBorderColor;
 
 	//Input to change whether interactive/visible; for traps, dynamic mechanics, etc...
 	public Input doDisappear = new Input() 
@@ -50,19 +81,28 @@ public class PhysicsEntity extends MovingEntity {
 
 	public PhysicsEntity(GameWorld world) {
 		super(world);		
-		_vel = new Vec2f(0, 0);
-		super.setDx(_vel.x);
-		super.setDy(_vel.y);		
+		_world = world;
+		_bodies = new BodyStore(1);
+		_body = _bodies.add();
+		super.setDx(0);
+		super.setDy(0);		
 		GRAVITY = new Vec2f(0, -75f);
 		_density = 1f;
 		_restitution = 0f;		
-		_force = new Vec2f(0, 0);
-		_impulse = new Vec2f(0, 0);		
 		_isStatic = false;		
 		_isVisited = false;		
 		_isInteractive = true;
 		_isRotatable = true;
 		_isGravitational = true;
+		_isBullet = false;
+		_category = 1;
+		_mask = 0xFFFFFFFF;
+		_worldIndex = -1;
+		_isAwake = true;
+		_isSleepingAllowed = true;
+		_sleepTime = 0;
+		_sleepLoc = null;
+		_skippedTurn = false;
 		//Moves on set dx/dy without having to call move() manually
 		this.setFreeMoving(true);
 		
@@ -87,6 +127,11 @@ public class PhysicsEntity extends MovingEntity {
 	}
 	public void setShape(Shape s) {
 		super.setShape(s);
+		//Null while superclass constructor sets Shape
+		if (_world != null) {
+			this.setAwake(true);
+			_world.onEntityMoved(this);
+		}
 	}
 
 	public float getMass() {
@@ -108,7 +153,12 @@ public class PhysicsEntity extends MovingEntity {
 		return super.getShape().getAngle();
 	}
 	public void setAngle(float angle) {
+		boolean moved = angle != super.getShape().getAngle();
 		super.getShape().setAngle(angle);
+		if (moved && !_isAwake) 
+			this.setAwake(true);
+		if (_world != null) 
+			_world.onEntityMoved(this);
 	}
 
 	/*Sets/Gets coefficient of restitution.
@@ -131,13 +181,22 @@ public class PhysicsEntity extends MovingEntity {
 	@Override
 	public void onTick(long nanosSincePreviousTick) {
 		//System.out.println(this + ":" + _angularVel);
+		//Sleeping Entities don't move; subclasses still get their tick
+		if (!_isAwake && !_isStatic) 
+			return;
 		//In MovingEntity, moves by delta(x, y)
 		super.onTick(nanosSincePreviousTick);
 		//Update reference to current location
 		//Applies gravitational force down as Y-component
-		this.applyForce(GRAVITY.smult(getMass()), getShape().getCentroid());						
-		//Update vel, pos; reset force, impulse
-		this.symplecticUpdate(nanosSincePreviousTick);
+		float mass = getMass();
+		Vec2f c = getShape().getCentroid();
+		this.applyForce(GRAVITY.x*mass, GRAVITY.y*mass, c.x, c.y);						
+		//Update vel, pos; reset force, impulse. In a world, its solver
+		//does that once every Entity has had its tick
+		if (_world != null && _world.inWorld(this)) 
+			_world.getConstraintSolver().addBody(this);
+		else 
+			this.symplecticUpdate(nanosSincePreviousTick);
 	}
 
 	/* Update Position and Velocity in symplectic order. Use
@@ -146,36 +205,42 @@ public class PhysicsEntity extends MovingEntity {
 	public void symplecticUpdate(long nanos) {
 		//Turn into seconds
 		float time = nanos/1000000000.0f;		
-		//vel = vel + t*force/m + impulse/m 	(= vel + acc*time)
-		_vel = _vel.plus(_force.smult(time).sdiv(getMass()).plus(_impulse.sdiv(getMass())));	
-		//pos = pos + t*vel		 (= pos + vel*time)
-		setLocation(getLocation().plus(_vel.smult(time)));
-
-		//Update rotational stuff
-		_angularVel += _angularForce*(time/getMomentOfInertia(getMass()));
-		_angularVel += _angularImpulse/getMomentOfInertia(getMass());
-		//_angle += _angularVel*secondsElapsed;
-			
+		BodyStore b = _bodies;
+		int id = _body;
+		float mass = getMass();
+		b.invMass[id] = 1/mass;
+		b.invInertia[id] = 1/getMomentOfInertia(mass);
+		Vec2f loc = getLocation();
+		b.px[id] = loc.x;
+		b.py[id] = loc.y;
+		b.angle[id] = getShape().getAngle();
+		b.integrate(id, id+1, time);
+		setLocation(new Vec2f(b.px[id], b.py[id]));
 		///Do not change angle of shape if entity non-rotatable
 		if (_isRotatable) 
-			getShape().setAngle(getShape().getAngle() + _angularVel*time);
-		
-		//Reset force and impulse
-		_force = new Vec2f(0f, 0f);
-		_impulse = new Vec2f(0f, 0f);
-		_angularForce = 0f;
-		_angularImpulse = 0f;
+			this.setAngle(b.angle[id]);
 	}
 
 	/*Accumulates force. Called to achieve
 	 * acceleration over time.
 	 * (ex: start moving)*/
 	public void applyForce(Vec2f f, Vec2f point) {
+		this.applyForce(f.x, f.y, point.x, point.y);
+	}
+	/*Same, taking force (fx, fy) at point (px, py).*/
+	public void applyForce(float fx, float fy, float px, float py) {
 		if (_isStatic == false) {
-			_force = _force.plus(f);
+			if (!_isAwake && (fx != 0 || fy != 0)) 
+				this.setAwake(true);
+			BodyStore b = _bodies;
+			int id = _body;
+			b.fx[id] += fx;
+			b.fy[id] += fy;
 			if(_isRotatable) {
-				Vec2f r = point.minus(getCentroid());
-				_angularForce += r.cross(_force);
+				//r x force, r from centroid to point
+				Vec2f c = getCentroid();
+				float rx = px - c.x, ry = py - c.y;
+				b.torque[id] += rx*b.fy[id] - ry*b.fx[id];
 			}
 		}
 	}
@@ -183,11 +248,21 @@ public class PhysicsEntity extends MovingEntity {
 	 * instantaneous acceleration. 
 	 * (ex: jumping, collision response)*/
 	public void applyImpulse(Vec2f i, Vec2f point) {
+		this.applyImpulse(i.x, i.y, point.x, point.y);
+	}
+	/*Same, taking impulse (ix, iy) at point (px, py).*/
+	public void applyImpulse(float ix, float iy, float px, float py) {
 		if (_isStatic == false) {
-			_impulse = _impulse.plus(i);
+			if (!_isAwake && (ix != 0 || iy != 0)) 
+				this.setAwake(true);
+			BodyStore b = _bodies;
+			int id = _body;
+			b.ix[id] += ix;
+			b.iy[id] += iy;
 			if(_isRotatable) {
-				Vec2f r = point.minus(getShape().getCentroid());
-				_angularImpulse += r.cross(_impulse);
+				Vec2f c = getShape().getCentroid();
+				float rx = px - c.x, ry = py - c.y;
+				b.angularImpulse[id] += rx*b.iy[id] - ry*b.ix[id];
 			}
 		}
 	}
@@ -195,18 +270,28 @@ public class PhysicsEntity extends MovingEntity {
 
 	/*Bypass force and impulse to mutate velocity directly.*/
 	public void setVelocity(Vec2f vel) {
-		_vel = vel;
+		if (!_isAwake && !vel.isZero()) 
+			this.setAwake(true);
+		_bodies.vx[_body] = vel.x;
+		_bodies.vy[_body] = vel.y;
 	}
-	/*Accessor for current velocity.*/
+	/*Accessor for current velocity. A copy; changing
+	 * it does nothing, use setVelocity.*/
 	public Vec2f getVelocity() {
-		return _vel;
+		return new Vec2f(_bodies.vx[_body], _bodies.vy[_body]);
 	}
 
 	/*Partial override to update PhysicsEntity
 	 * _pos field. So _pos stays up to date.*/
 	@Override
 	public void setLocation(Vec2f pos) {
+		boolean moved = !pos.equals(getLocation());
 		super.setLocation(pos);
+		if (moved && !_isAwake) 
+			this.setAwake(true);
+		//Null while superclass constructor sets Shape
+		if (_world != null && moved) 
+			_world.onEntityMoved(this);
 		//		_pos = pos;
 	}
 	/*	Accessor for PhysicsEntity position.
@@ -234,7 +319,7 @@ public class PhysicsEntity extends MovingEntity {
 		//Don't need to collide two static objects
 		if (this.isStatic() && other.isStatic()) 			
 			return false;
-		boolean collision = super.collides(other);  
+		boolean collision = this.detect(other);  
 		if (_isInteractive && other.isInteractive()) 
 				this.collisionResponse(other);
 		return collision;
@@ -243,12 +328,21 @@ public class PhysicsEntity extends MovingEntity {
 	public boolean collidesWithoutCollisionResponse(PhysicsEntity other) {
 		if (this.isStatic() && other.isStatic()) 			
 			return false;
-		return super.collides(other); 
+		return this.detect(other); 
+	}
+	
+	/*Shape collision test, with world's narrowphase if in one.*/
+	private boolean detect(PhysicsEntity other) {
+		if (_world != null) 
+			return _world.testShapes(this, other);
+		return super.collides(other);
 	}
 
 	/* Handles response if collision between entities is 
-	 * detected. Moves each Entity away from each other
-	 * by mtv/2, according to their ShapeCollisionInfo object.*/
+	 * detected. Records the contact, along mtv out of other, for the
+	 * world's ConstraintSolver to push apart once every pair has been
+	 * detected; Entities don't move until then. Not in a world, there is
+	 * nothing to solve it, so only collision info is kept.*/
 	public void collisionResponse(PhysicsEntity other) {
 		
 		//Get ShapeCollisionInfo information cache, s
@@ -258,42 +352,16 @@ public class PhysicsEntity extends MovingEntity {
 		//Avoid null pointer by checking POI exists (there is that weird penetration case)
 		if (otherData != null && thisData != null && other.getShape().poi(getShape()) != null) {
 			if (!otherData.getMTV().isZero() && !thisData.getMTV().isZero()) {
-				//Get MTVs and locations for each Entity
 				Vec2f otherMTV = otherData.getMTV();	
 				Vec2f thisMTV = thisData.getMTV();			
-				Vec2f otherNewLoc = other.getLocation();
-				Vec2f thisNewLoc = this.getLocation();				
-				Vec2f poi = this.getShape().poi(other.getShape());
-
-				if (!other.isStatic()) {
-					//s new location
-					float mult = getMass()/(getMass()+other.getMass());
-					if(this.isStatic())
-						mult = 1;
-					otherNewLoc = other.getLocation().plus(otherMTV.smult(mult));
-				}
-				if (!this.isStatic()) {
-					float mult = other.getMass()/(getMass()+other.getMass());
-					if(other.isStatic())
-						mult = 1;
-					thisNewLoc = this.getLocation().plus(thisMTV.smult(mult));
-				}		
-				//1 Calculate impulse before translating
-				Vec2f[] imps = calculateImpulse(other);		
-				//2 Translate it out
-				other.setLocation(otherNewLoc);
-				this.setLocation(thisNewLoc);
-
-				//3 Then set the impulse
-				if (_isRotatable) {
-					other.applyImpulse(imps[0], poi);
-					this.applyImpulse(imps[1], poi);
-				}
-				else {
-					other.applyImpulse(imps[0], other.getCentroid());
-					this.applyImpulse(imps[1], this.getCentroid());
+				if (_world != null) {
+					//Static Shapes' MTVs aren't always kept (curves give polygons'
+					//to both), so go by the one that moves
+					Vec2f mtv = this.isStatic() ? otherMTV.invert() : thisMTV;
+					Vec2f poi = this.getShape().poi(other.getShape());
+					float depth = mtv.mag();
+					_world.getConstraintSolver().addContact(this, other, poi, mtv.sdiv(depth), depth);
 				}
-
 				//Updates reference to most recent MTV
 				other.addCollisionInfo(new PhysicsCollisionInfo(otherMTV, this));
 				this.addCollisionInfo(new PhysicsCollisionInfo(thisMTV, other));
@@ -310,64 +378,6 @@ public class PhysicsEntity extends MovingEntity {
 		}
 	}
 
-	/* Calculate impulse based on Coefficient of Restitution. Finds
-	 * correct impulse for collision response between two shapes in 
-	 * collisionResponse method.*/
-	public Vec2f[] calculateImpulse(PhysicsEntity other) {
-		assert(!this.isStatic() || !other.isStatic());
-		
-		//Impulse array, equal but opposite: [impulseA, impulseB]
-		Vec2f[] imps = new Vec2f[2];
-		float cor = (float) Math.sqrt(this.getRestitution()*other.getRestitution());
-
-		float m_a = this.getMass();
-		float m_b = other.getMass();
-		//velocity of entities AT THE POI projected onto the mtv	
-		Vec2f poi = this.getShape().poi(other.getShape());
-		Vec2f u_a = this.getVelocity().projectOnto(this.getShape().getCollisionInfo().getMTV());
-		Vec2f u_b = other.getVelocity().projectOnto(other.getShape().getCollisionInfo().getMTV());	
-
-		
-		Vec2f n = this.getShape().getCollisionInfo().getMTV().normalized();
-
-		Vec2f numerator = (u_a.minus(u_b)).smult((-1f) * (1 + cor));
-		float denominator = 0f;
-		//Only non-static entities have non-null getCentroid() and getMomentOfInertia() [i.e. BezierCurveEntity does not]
-		
-		if (!this.isStatic()) {
-			Vec2f r1Perp = getCentroid().minus(poi).getNormal().normalized();
-			denominator += (r1Perp.dot(n) * r1Perp.dot(n)) / this.getMomentOfInertia(getMass()) + 1f/m_a;
-		}
-		if (!other.isStatic()) {
-			Vec2f r2Perp = other.getCentroid().minus(poi).getNormal().normalized();
-			denominator += (r2Perp.dot(n) * r2Perp.dot(n)) / other.getMomentOfInertia(other.getMass()) + 1f/m_b;
-		}
-		
-		imps[1] = (numerator.sdiv(denominator));
-		imps[0] = imps[1].invert();
-		
-		/*
-		 * DON'T DELETE YET. WE MIGHT NEED COLLISION RESPONSE FOR NON-ROTATING CURVES 
-		 * RIGHT NOW WE HAVE CORRECT TRANSLATION OUT AND MTV, BUT NOT THE RIGHT IMPULSE
-		 * I DON'T THINK.
-		 */
-/*		//Old, non-rotating collision response (flat impulse calculation)
-		if (!this.isRotatable() && !other.isRotatable()) {
-			//	Vec2f i_a = (u_b.minus(u_a)).smult((m_a*m_b*(1+cor)) / (m_a + m_b));
-			imps[0] = (u_a.minus(u_b)).smult((m_a*m_b*(1+cor)) / (m_a + m_b));		
-			if (this.isStatic()) {
-				imps[1] = u_b.minus(u_a).smult(m_b*(1+cor));
-				imps[0] = u_a.minus(u_b).smult(m_b*(1+cor));
-			}
-			if (other.isStatic()) {
-				imps[1] = u_b.minus(u_a).smult(m_a*(1+cor));
-				imps[0] = u_a.minus(u_b).smult(m_a*(1+cor));
-			}
-		}*/
-
-		return imps;
-	}
-
 	//Boolean accessors/mutators
 
 	/*Overrides any force or impulse.*/
@@ -376,7 +386,81 @@ public class PhysicsEntity extends MovingEntity {
 	}
 	public void setStatic(boolean s) {
 		_isStatic = s;
+		if (!s) 
+			this.setAwake(true);
 	}	
+	/* Static Entities rarely change, but still can (shown, hidden, 
+	 * recolored, moved by hand), so their last snapshot is kept and only
+	 * taken again once Shape, its version, visibility or colors change.*/
+	@Override
+	public Drawable snapshot() {
+		if (!_isStatic)
+			return super.snapshot();
+		Shape shape = getShape();
+		int version = shape == null ? 0 : shape.getVersion();
+		Color color = shape == null ? null : shape.getColor();
+		Color borderColor = shape == null ? null : shape.getBorderColor();
+		if (_staticSnapshot == null || shape != _snapshotShape || version != _snapshotVersion
+				|| this.isVisible() != _snapshotVisible || color != _snapshotColor 
+				|| borderColor != _snapshotBorderColor) {
+			_staticSnapshot = super.snapshot();
+			_snapshotShape = shape;
+			_snapshotVersion = version;
+			_snapshotVisible = this.isVisible();
+			_snapshotColor = color;
+			_snapshotBorderColor = borderColor;
+		}
+		return _staticSnapshot;
+	}
+	/* Whether Entity is simulated. Sleeping Entities keep their place
+	 * without integrating or colliding, until a force, impulse, move or
+	 * contact with an awake Entity wakes them. Sleeping also stops them.*/
+	public boolean isAwake() {
+		return _isAwake;
+	}
+	public void setAwake(boolean awake) {
+		_sleepTime = 0;
+		if (awake) {
+			_isAwake = true;
+			return;
+		}
+		_isAwake = false;
+		_bodies.stop(_body);
+	}
+	/*Whether Entity may fall asleep; not allowing it wakes it.*/
+	public boolean isSleepingAllowed() {
+		return _isSleepingAllowed;
+	}
+	public void setSleepingAllowed(boolean allowed) {
+		_isSleepingAllowed = allowed;
+		if (!allowed) 
+			this.setAwake(true);
+	}
+	/*Seconds Entity has been below sleep tolerances.*/
+	public float getSleepTime() {
+		return _sleepTime;
+	}
+	/*Called by GameWorld at end of each step, with its length. Velocity
+	 * is measured by how far Entity moved over the step, since resting
+	 * Entities still carry a step of gravity in velocity after integrating.*/
+	void updateSleepTime(float seconds) {
+		Vec2f loc = getLocation();
+		float angle = getAngle();
+		float linear = LINEAR_SLEEP_TOLERANCE*seconds;
+		if (!_isSleepingAllowed || _sleepLoc == null || loc.dist2(_sleepLoc) > linear*linear 
+				|| Math.abs(angle - _sleepAngle) > ANGULAR_SLEEP_TOLERANCE*seconds) 
+			_sleepTime = 0;
+		else 
+			_sleepTime += seconds;
+		_sleepLoc = loc;
+		_sleepAngle = angle;
+	}
+	boolean hasSkippedTurn() {
+		return _skippedTurn;
+	}
+	void setSkippedTurn(boolean skipped) {
+		_skippedTurn = skipped;
+	}
 	/* Basic decorator for many applications,
 	 * notably for more efficient collision
 	 * detection by avoiding double-checking.*/
@@ -386,6 +470,64 @@ public class PhysicsEntity extends MovingEntity {
 	public void setVisited(boolean visited) {
 		_isVisited = visited;
 	}	
+	/* Gets/Sets collision category bits (which layers this Entity
+	 * is in) and mask bits (which layers it collides with). Defaults
+	 * to first layer, colliding with every layer. See CollisionGroup.*/
+	public int getCollisionCategory() {
+		return _category;
+	}
+	public void setCollisionCategory(int category) {
+		_category = category;
+	}
+	public int getCollisionMask() {
+		return _mask;
+	}
+	public void setCollisionMask(int mask) {
+		_mask = mask;
+	}
+	/*Whether filters of a and b allow them to collide. Checked 
+	 * in GameWorld's broadphase before any Shapes are tested.*/
+	public static boolean shouldCollide(PhysicsEntity a, PhysicsEntity b) {
+		return (a._category & b._mask) != 0 && (b._category & a._mask) != 0;
+	}
+	
+	/* BodyStore holding this Entity's velocity, force and impulse, and
+	 * its id there. GameWorld moves Entities into its own store when they
+	 * are added and out to one of their own when removed.*/
+	BodyStore getBodyStore() {
+		return _bodies;
+	}
+	int getBodyId() {
+		return _body;
+	}
+	/*Remembers where Entity is now, as last step's transform for drawing.*/
+	void savePreviousTransform() {
+		if (getShape() == null) 
+			return;
+		Vec2f loc = getLocation();
+		_bodies.prevX[_body] = loc.x;
+		_bodies.prevY[_body] = loc.y;
+		_bodies.prevAngle[_body] = getShape().getAngle();
+	}
+	void setBodyStore(BodyStore store) {
+		if (store == _bodies) 
+			return;
+		int id = store.add();
+		store.copy(_bodies, _body, id);
+		_bodies.remove(_body);
+		_bodies = store;
+		_body = id;
+	}
+	
+	/* Index of this Entity in GameWorld's list, used to keep
+	 * broadphase candidate pairs in the same order as the list.
+	 * Package-private, only GameWorld should set it.*/
+	int getWorldIndex() {
+		return _worldIndex;
+	}
+	void setWorldIndex(int index) {
+		_worldIndex = index;
+	}
 	/* Sets/Gets _isInteractive boolean. If false,
 	 * this PhysicsEntity has no collision response.*/
 	public boolean isInteractive() {
@@ -406,6 +548,16 @@ public class PhysicsEntity extends MovingEntity {
 	public void setGravitational(boolean g) {
 		_isGravitational = g;
 	}
+	/* Gets/Sets whether Entity is a bullet: fast enough to go through
+	 * thin static geometry in one step. A bullet's motion over each step
+	 * is swept against static Entities and stopped at time of impact.
+	 * Costs more than a regular Entity, only while it's moving fast.*/
+	public boolean isBullet() {
+		return _isBullet;
+	}
+	public void setBullet(boolean bullet) {
+		_isBullet = bullet;
+	}
 
 	/* Properties of PhysicsEntity, mapped from Strings to
 	 * values as Strings.*/
@@ -440,6 +592,21 @@ public class PhysicsEntity extends MovingEntity {
 		//is rotatable
 		if (props.containsKey("rotatable"))
 			this.setRotatable(Boolean.parseBoolean(props.get("rotatable")));
+		//swept against static geometry, for fast Entities
+		if (props.containsKey("bullet"))
+			this.setBullet(Boolean.parseBoolean(props.get("bullet")));
+		//can fall asleep when at rest
+		if (props.containsKey("can_sleep"))
+			this.setSleepingAllowed(Boolean.parseBoolean(props.get("can_sleep")));
+		//collision group (0-31) and comma separated groups it ignores
+		try {
+			if (props.containsKey("collision_group")) 
+				this.setCollisionCategory(CollisionGroup.bit(Integer.parseInt(props.get("collision_group").trim())));
+			if (props.containsKey("collision_filter")) 
+				this.setCollisionMask(~CollisionGroup.parseGroups(props.get("collision_filter")));
+		} catch (IllegalArgumentException e) {
+			System.err.println("Bad collision group (PhysicsEntity.setProperties): " + e.getMessage());
+		}
 	}
 
 	/*Returns the IO class mapped to a particular String,
@@ -489,7 +656,7 @@ public class PhysicsEntity extends MovingEntity {
 		//velocity of point due to rotational velocity
 		Vec2f angVelDir = p.minus(getCentroid()).getNormal().normalized();
 		float r = p.minus(getCentroid()).mag();
-		float angVelMag = r *_angularVel;
+		float angVelMag = r *_bodies.angularVel[_body];
 		Vec2f angVel = angVelDir.smult(angVelMag);
 		//System.out.println("angvel " + _angularVel);
 		//System.out.println("linVel " + linVel);
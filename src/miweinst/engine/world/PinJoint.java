@@ -0,0 +1,88 @@
+package miweinst.engine.world;
+
+import cs195n.Vec2f;
+
+/* Revolute joint to the world: a point on the Entity stays on a fixed
+ * anchor, and the Entity swings freely about it. Drift off the anchor
+ * is corrected with the solver's Baumgarte factor.*/
+
+public class PinJoint extends Joint {
+
+	private Vec2f _anchor;
+	//Anchor relative to centroid, in the Entity's frame at angle 0
+	private float _localX, _localY;
+	//Per step: centroid to anchor, inverse of 2x2 effective mass, bias
+	private float _rx, _ry;
+	private float _m11, _m12, _m22;
+	private float _biasX, _biasY;
+	private float _impulseX, _impulseY;
+
+	/*Pins body where it is now, at anchor (world coordinates).*/
+	public PinJoint(PhysicsEntity body, Vec2f anchor) {
+		super(body);
+		this.setAnchor(anchor);
+	}
+
+	public Vec2f getAnchor() {
+		return _anchor;
+	}
+	/*Moves pin to anchor, keeping Entity where it is.*/
+	public void setAnchor(Vec2f anchor) {
+		_anchor = anchor;
+		PhysicsEntity body = getBody();
+		Vec2f c = body.getCentroid();
+		float angle = body.getAngle();
+		float cos = (float) Math.cos(-angle), sin = (float) Math.sin(-angle);
+		float dx = anchor.x - c.x, dy = anchor.y - c.y;
+		_localX = cos*dx - sin*dy;
+		_localY = sin*dx + cos*dy;
+		_impulseX = _impulseY = 0;
+	}
+
+	@Override
+	void prepare(float seconds, float baumgarte, boolean warmStarting) {
+		PhysicsEntity body = getBody();
+		BodyStore b = body.getBodyStore();
+		int id = body.getBodyId();
+		float angle = body.getAngle();
+		float cos = (float) Math.cos(angle), sin = (float) Math.sin(angle);
+		_rx = cos*_localX - sin*_localY;
+		_ry = sin*_localX + cos*_localY;
+		float im = b.invMass[id], ii = b.invInertia[id];
+		//K = [im + ii*ry^2, -ii*rx*ry; -ii*rx*ry, im + ii*rx^2], inverted
+		float k11 = im + ii*_ry*_ry, k12 = -ii*_rx*_ry, k22 = im + ii*_rx*_rx;
+		float det = k11*k22 - k12*k12;
+		if (det != 0)
+			det = 1/det;
+		_m11 = det*k22;
+		_m12 = -det*k12;
+		_m22 = det*k11;
+		Vec2f c = body.getCentroid();
+		_biasX = -baumgarte/seconds*(c.x + _rx - _anchor.x);
+		_biasY = -baumgarte/seconds*(c.y + _ry - _anchor.y);
+		if (!warmStarting || det == 0)
+			_impulseX = _impulseY = 0;
+		this.apply(b, id, _impulseX, _impulseY);
+	}
+
+	@Override
+	void solve() {
+		PhysicsEntity body = getBody();
+		BodyStore b = body.getBodyStore();
+		int id = body.getBodyId();
+		//Velocity of pinned point
+		float cx = b.vx[id] - b.angularVel[id]*_ry;
+		float cy = b.vy[id] + b.angularVel[id]*_rx;
+		float ix = _m11*(_biasX - cx) + _m12*(_biasY - cy);
+		float iy = _m12*(_biasX - cx) + _m22*(_biasY - cy);
+		_impulseX += ix;
+		_impulseY += iy;
+		this.apply(b, id, ix, iy);
+	}
+
+	private void apply(BodyStore b, int id, float ix, float iy) {
+		b.vx[id] += ix*b.invMass[id];
+		b.vy[id] += iy*b.invMass[id];
+		b.angularVel[id] += (_rx*iy - _ry*ix)*b.invInertia[id];
+	}
+}
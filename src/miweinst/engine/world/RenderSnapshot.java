@@ -0,0 +1,134 @@
+package miweinst.engine.world;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.util.Arrays;
+
+import miweinst.engine.gfx.Drawable;
+import cs195n.Vec2f;
+
+/* What a GameWorld looked like after one step, for drawing on the
+ * Swing thread while the simulation thread steps on: each Entity's
+ * snapshot (see Entity.snapshot), in draw order, and where it was at
+ * the start and end of the step, to draw between the two.
+ *
+ * A GameWorld keeps two and fills them in turn. Once published, one is
+ * not touched again until it is no longer published and nothing is
+ * drawing it, so everything public here only reads.*/
+
+public class RenderSnapshot {
+
+	private Entity[] _entities;
+	private Drawable[] _drawables;
+	//Transform after the step, and before it; the same if not blended
+	private float[] _x, _y, _angle;
+	private float[] _prevX, _prevY, _prevAngle;
+	private int _size;
+	//Fraction of a step past the end of the step when published
+	private float _alpha;
+	private long _published;
+	private long _timestep;
+	private Vec2f _gravity;
+
+	RenderSnapshot() {
+		_size = 0;
+		this.grow(16);
+	}
+
+	/*Empties for refilling; only while not published.*/
+	void clear(float alpha, long timestep) {
+		Arrays.fill(_entities, 0, _size, null);
+		Arrays.fill(_drawables, 0, _size, null);
+		_size = 0;
+		_alpha = alpha;
+		_timestep = timestep;
+		_gravity = PhysicsEntity.GRAVITY;
+	}
+
+	/*Adds e as it is now, drawn from prev to current transform.*/
+	void add(Entity e, Drawable d, float x, float y, float angle, float prevX, float prevY, float prevAngle) {
+		if (_size == _entities.length)
+			this.grow(2*_size);
+		_entities[_size] = e;
+		_drawables[_size] = d;
+		_x[_size] = x;
+		_y[_size] = y;
+		_angle[_size] = angle;
+		_prevX[_size] = prevX;
+		_prevY[_size] = prevY;
+		_prevAngle[_size] = prevAngle;
+		_size++;
+	}
+
+	/*Stamps publish time, in System.nanoTime.*/
+	void publish(long now) {
+		_published = now;
+	}
+
+	public int size() {
+		return _size;
+	}
+
+	/*Where e was at the end of the step, or null if not in it.*/
+	public Vec2f getLocation(Entity e) {
+		for (int i=0; i<_size; i++)
+			if (_entities[i] == e)
+				return new Vec2f(_x[i], _y[i]);
+		return null;
+	}
+
+	/*PhysicsEntity.GRAVITY when taken.*/
+	public Vec2f getGravity() {
+		return _gravity;
+	}
+
+	/*How far drawing at time now is between the start and end of the
+	 * step: the fraction left over when published plus real time since,
+	 * capped at the end.*/
+	public float getAlpha(long now) {
+		float alpha = _alpha + (now - _published)/(float) _timestep;
+		return Math.min(1, alpha);
+	}
+
+	/* Draws every Entity in order, each blended from where it was at the
+	 * start of the step toward the end by getAlpha(now), the same way
+	 * GameWorld.draw does: by adding to g's transform.*/
+	public void draw(Graphics2D g, long now) {
+		float t = 1 - this.getAlpha(now);
+		for (int i=0; i<_size; i++) {
+			float dx = (_prevX[i] - _x[i])*t;
+			float dy = (_prevY[i] - _y[i])*t;
+			float dAngle = GameWorld.angleDelta(_prevAngle[i], _angle[i])*t;
+			if (dx == 0 && dy == 0 && dAngle == 0) {
+				_drawables[i].draw(g);
+				continue;
+			}
+			AffineTransform saved = g.getTransform();
+			g.translate(dx, dy);
+			if (dAngle != 0)
+				g.rotate(dAngle, _x[i], _y[i]);
+			_drawables[i].draw(g);
+			g.setTransform(saved);
+		}
+	}
+
+	private void grow(int capacity) {
+		Entity[] entities = new Entity[capacity];
+		Drawable[] drawables = new Drawable[capacity];
+		if (_entities != null) {
+			System.arraycopy(_entities, 0, entities, 0, _size);
+			System.arraycopy(_drawables, 0, drawables, 0, _size);
+		}
+		_entities = entities;
+		_drawables = drawables;
+		_x = grow(_x, capacity);
+		_y = grow(_y, capacity);
+		_angle = grow(_angle, capacity);
+		_prevX = grow(_prevX, capacity);
+		_prevY = grow(_prevY, capacity);
+		_prevAngle = grow(_prevAngle, capacity);
+	}
+	private static float[] grow(float[] a, int capacity) {
+		return a == null ? new float[capacity] : Arrays.copyOf(a, capacity);
+	}
+}
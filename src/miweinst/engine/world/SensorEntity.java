@@ -8,12 +8,17 @@ import miweinst.engine.shape.Shape;
 import miweinst.gravidog.Boulder;
  
 /* This generic SensorEntity superclass detects specified PhysicsEntities
- * that touch the area specified by a Shape, and checks for detection on
- * every tick. Since it checks on every tick, only has Output that is triggered
- * when the target is detected. 
+ * that touch the area specified by a Shape. 
  * 
- * This runs Output WHILE the Entity is being detected (condition is met)
- * on every tick, until it is no longer detected.*/
+ * Runs onDetect when an Entity starts being detected (condition is met) 
+ * and onNoDetect when it stops, once each, not on every tick. The first
+ * check after being added runs one or the other, whichever holds.
+ * 
+ * Event-driven by default: GameWorld keeps it out of collisions, as a
+ * proxy in a broadphase with the Entities it watches, and tells it when
+ * their bounds begin and end overlapping its own. condition() is only
+ * checked while one of them is that close. Sensors whose condition 
+ * isn't about overlapping the area (or that should collide) turn this off.*/
 
 public class SensorEntity extends PhysicsEntity {	
 	public final String string = "Entity";
@@ -22,12 +27,28 @@ public class SensorEntity extends PhysicsEntity {
 	public Output onNoDetect;
 	//Entities to watch whether collides with area
 	private ArrayList<PhysicsEntity> _entities;
+	private GameWorld _world;
+	//Only told about overlaps instead of checking every Entity each tick
+	private boolean _eventDriven;
+	//Whether world is telling it about overlaps right now
+	private boolean _proxied;
+	//Entities whose bounds overlap its bounds, while proxied
+	private ArrayList<PhysicsEntity> _touching;
+	//Result of last check, and whether there's been one
+	private boolean _detecting;
+	private boolean _known;
 	
 	public SensorEntity(GameWorld world) {
 		super(world);
+		_world = world;
 		onDetect = new Output();
 		onNoDetect = new Output();
 		_entities = new ArrayList<PhysicsEntity>();
+		_eventDriven = true;
+		_proxied = false;
+		_touching = new ArrayList<PhysicsEntity>();
+		_detecting = false;
+		_known = false;
 		this.setInteractive(false);
 		this.setVisible(false);
 	}
@@ -39,19 +60,59 @@ public class SensorEntity extends PhysicsEntity {
 		super(world);
 		//Set Entity's shape as detection area
 		this.setShape(area);
+		_world = world;
 		onDetect = new Output();
 		onNoDetect = new Output();
-		for (PhysicsEntity e: other) 
-			_entities.add(e);
+		_entities = new ArrayList<PhysicsEntity>();
+		_eventDriven = true;
+		_proxied = false;
+		_touching = new ArrayList<PhysicsEntity>();
+		_detecting = false;
+		_known = false;
+		this.setEntities(other);
 		//Invisible and non-interactive
 		this.setInteractive(false);
 		this.setVisible(false);
 	}
 	
-	/**/
+	/* Adds Entities to watch; skips nulls and ones already watched.*/
 	public void setEntities(PhysicsEntity... other) {
-		for (PhysicsEntity e: other) 
+		for (PhysicsEntity e: other) {
+			if (e == null || _entities.contains(e)) 
+				continue;
 			_entities.add(e);
+			if (_world != null) 
+				_world.watch(e);
+		}
+	}
+	
+	public boolean isEventDriven() {
+		return _eventDriven;
+	}
+	/* Takes effect at the world's next step, when
+	 * it moves the sensor in or out of collisions.*/
+	public void setEventDriven(boolean eventDriven) {
+		_eventDriven = eventDriven;
+	}
+	
+	/*Set by GameWorld when it starts or stops telling this about overlaps.*/
+	void setProxied(boolean proxied) {
+		_proxied = proxied;
+		if (!proxied) 
+			_touching.clear();
+	}
+	/*From GameWorld, when bounds of other start overlapping this one's.*/
+	void overlapBegin(PhysicsEntity other) {
+		if (!_touching.contains(other)) 
+			_touching.add(other);
+	}
+	void overlapEnd(PhysicsEntity other) {
+		_touching.remove(other);
+	}
+	
+	/*Whether condition held at last check.*/
+	public boolean isDetecting() {
+		return _detecting;
 	}
 	
 	/* Pass a connection to define response when
@@ -65,22 +126,38 @@ public class SensorEntity extends PhysicsEntity {
 	/* Generic collision sensor condition; can be overriden
 	 * in subclasses. Checks if a player touches Sensor,
 	 * which is a non-interactive entity, no collision response. 
-	 * Condition checked on every tick in this.onTick(long)*/
+	 * When proxied, only tests watched Entities whose bounds overlap.
+	 * Condition checked in this.onTick(long)*/
 	public boolean condition() {
+		if (_proxied) {
+			for (PhysicsEntity ent: _touching) {
+				if (_entities.contains(ent))
+					if (this.collidesWithoutCollisionResponse(ent))
+						return true;
+			}
+			return false;
+		}
 		for (PhysicsEntity ent: _entities) {
-			if (ent != null)
-				if (this.collidesWithoutCollisionResponse(ent))
-					return true;
+			if (this.collidesWithoutCollisionResponse(ent))
+				return true;
 		}
 		return false;
 	}
 	
-	/* Trigger output when condition is met, checks for itself. 
-	 * Also triggers an OIutput*/
+	/* Checks condition and triggers onDetect or onNoDetect
+	 * if it changed since the last check.*/
 	@Override
 	public void onTick(long nanosSincePreviousTick) {
 		super.onTick(nanosSincePreviousTick);
-		if (this.condition()) {
+		//Nothing near and nothing detected, so nothing can change
+		if (_known && !_detecting && _proxied && _touching.isEmpty()) 
+			return;
+		boolean detecting = this.condition();
+		if (_known && detecting == _detecting) 
+			return;
+		_known = true;
+		_detecting = detecting;
+		if (detecting) {
 			onDetect.run();
 		} else {
 			onNoDetect.run();
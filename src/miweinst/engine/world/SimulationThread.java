@@ -0,0 +1,86 @@
+package miweinst.engine.world;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/* Steps a GameWorld on a thread of its own, so a long step doesn't hold
+ * up input and painting on the Swing thread, and a long paint doesn't
+ * hold up stepping. Each pass runs whatever was handed over with post
+ * (input, mostly), ticks the world by the real time since the last
+ * pass, publishes a RenderSnapshot if any steps ran, then sleeps until
+ * the next step is due.
+ *
+ * Nothing else may touch the world while this runs; other threads go
+ * through post, and draw from GameWorld.getSnapshot.*/
+
+class SimulationThread implements Runnable {
+
+	private GameWorld _world;
+	private ConcurrentLinkedQueue<Runnable> _posted;
+	private Thread _thread;
+	private volatile boolean _running;
+
+	SimulationThread(GameWorld world) {
+		_world = world;
+		_posted = new ConcurrentLinkedQueue<Runnable>();
+		_running = false;
+	}
+
+	void start() {
+		_running = true;
+		_thread = new Thread(this, "Simulation");
+		_thread.setDaemon(true);
+		_thread.start();
+	}
+
+	/*Stops after the current pass; waits for it unless called from it.*/
+	void stop() {
+		_running = false;
+		if (_thread == null || Thread.currentThread() == _thread)
+			return;
+		LockSupport.unpark(_thread);
+		try {
+			_thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	boolean isRunning() {
+		return _running;
+	}
+	boolean isCurrent() {
+		return Thread.currentThread() == _thread;
+	}
+
+	/*Runs r on the simulation thread, before its next tick.*/
+	void post(Runnable r) {
+		_posted.add(r);
+	}
+
+	public void run() {
+		long last = System.nanoTime();
+		_world.publish();
+		while (_running) {
+			Runnable r;
+			while ((r = _posted.poll()) != null)
+				r.run();
+			long now = System.nanoTime();
+			try {
+				_world.onTick(now - last);
+			} catch (RuntimeException e) {
+				System.err.println("Simulation stopped (SimulationThread.run): " + e);
+				e.printStackTrace();
+				_running = false;
+				return;
+			}
+			last = now;
+			if (_world.getIterations() > 0)
+				_world.publish();
+			//Sleep out what's left of the step, if anything
+			long wait = _world.getTimestep() - (System.nanoTime() - now);
+			if (wait > 0)
+				LockSupport.parkNanos(wait);
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package miweinst.engine.world;
+
+import cs195n.Vec2f;
+
+/* Damped spring of rest length 0 between the Entity's centroid and a
+ * pivot in the world, pulling with stiffness*distance and resisting
+ * with damping*speed. Solved as a soft constraint (the spring's force
+ * made implicit), so it stays stable however stiff it is for the mass
+ * and step it is given. Acts at the centroid, so it never turns.*/
+
+public class SpringJoint extends Joint {
+
+	private Vec2f _pivot;
+	private float _stiffness;
+	private float _damping;
+	//Per step: softness, effective mass and bias
+	private float _gamma;
+	private float _mass;
+	private float _biasX, _biasY;
+	private float _impulseX, _impulseY;
+
+	public SpringJoint(PhysicsEntity body, Vec2f pivot, float stiffness, float damping) {
+		super(body);
+		_pivot = pivot;
+		_stiffness = stiffness;
+		_damping = damping;
+	}
+
+	public Vec2f getPivot() {
+		return _pivot;
+	}
+	public void setPivot(Vec2f pivot) {
+		_pivot = pivot;
+	}
+	/*Force per unit of distance from pivot.*/
+	public float getStiffness() {
+		return _stiffness;
+	}
+	public void setStiffness(float stiffness) {
+		_stiffness = stiffness;
+	}
+	/*Force per unit of speed, against velocity.*/
+	public float getDamping() {
+		return _damping;
+	}
+	public void setDamping(float damping) {
+		_damping = damping;
+	}
+
+	@Override
+	void prepare(float seconds, float baumgarte, boolean warmStarting) {
+		PhysicsEntity body = getBody();
+		BodyStore b = body.getBodyStore();
+		int id = body.getBodyId();
+		//Implicit spring: gamma softens the constraint, beta feeds back position
+		float gamma = seconds*(_damping + seconds*_stiffness);
+		_gamma = gamma != 0 ? 1/gamma : 0;
+		float beta = seconds*_stiffness*_gamma;
+		float mass = b.invMass[id] + _gamma;
+		_mass = _gamma != 0 && b.invMass[id] != 0 ? 1/mass : 0;
+		Vec2f c = body.getCentroid();
+		_biasX = -beta*(c.x - _pivot.x);
+		_biasY = -beta*(c.y - _pivot.y);
+		if (!warmStarting || _mass == 0)
+			_impulseX = _impulseY = 0;
+		b.vx[id] += _impulseX*b.invMass[id];
+		b.vy[id] += _impulseY*b.invMass[id];
+	}
+
+	@Override
+	void solve() {
+		if (_mass == 0)
+			return;
+		PhysicsEntity body = getBody();
+		BodyStore b = body.getBodyStore();
+		int id = body.getBodyId();
+		float ix = _mass*(_biasX - b.vx[id] - _gamma*_impulseX);
+		float iy = _mass*(_biasY - b.vy[id] - _gamma*_impulseY);
+		_impulseX += ix;
+		_impulseY += iy;
+		b.vx[id] += ix*b.invMass[id];
+		b.vy[id] += iy*b.invMass[id];
+	}
+}
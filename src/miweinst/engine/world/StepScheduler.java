@@ -0,0 +1,82 @@
+package miweinst.engine.world;
+
+/* Turns real time between ticks into a whole number of fixed steps.
+ * Time is accumulated in nanoseconds as a long, so the same ticks always
+ * give the same steps, and every step is exactly getTimestep() long no
+ * matter how many run in one tick.
+ *
+ * At most getMaxSteps() run per tick. Time past that (a hitch: GC,
+ * loading a level) is dropped instead of carried over, so a slow tick
+ * can't make the next one slower, and so on. Simulation slows down for
+ * the hitch instead.
+ *
+ * Time left over after the steps, less than one step, is getAlpha() of
+ * a step; drawing can blend last step's state with this one's by it.*/
+
+public class StepScheduler {
+
+	public static final int DEFAULT_MAX_STEPS = 5;
+
+	private long _timestep;
+	private long _accumulated;
+	private int _maxSteps;
+	private int _steps;
+
+	public StepScheduler(long timestep) {
+		this.setTimestep(timestep);
+		_maxSteps = DEFAULT_MAX_STEPS;
+		_accumulated = 0;
+		_steps = 0;
+	}
+
+	/* Adds nanos of real time and returns how many steps to run now,
+	 * taking their time out of what's accumulated.*/
+	public int advance(long nanos) {
+		_accumulated += Math.max(0, nanos);
+		long steps = _accumulated/_timestep;
+		if (steps > _maxSteps) {
+			//Drop the whole steps we can't afford, keep the fraction
+			_accumulated = _accumulated%_timestep + _maxSteps*_timestep;
+			steps = _maxSteps;
+		}
+		_accumulated -= steps*_timestep;
+		_steps = (int) steps;
+		return _steps;
+	}
+
+	/*Steps returned by the last advance.*/
+	public int getSteps() {
+		return _steps;
+	}
+
+	/*Fraction of a step accumulated but not yet run, in [0, 1).*/
+	public float getAlpha() {
+		return _accumulated/(float) _timestep;
+	}
+
+	/*Length of each step in nanoseconds.*/
+	public long getTimestep() {
+		return _timestep;
+	}
+	public void setTimestep(long timestep) {
+		if (timestep <= 0)
+			throw new IllegalArgumentException("Timestep must be positive: " + timestep);
+		_timestep = timestep;
+	}
+
+	/*Most steps run in one tick.*/
+	public int getMaxSteps() {
+		return _maxSteps;
+	}
+	public void setMaxSteps(int max) {
+		if (max < 1)
+			throw new IllegalArgumentException("Need at least one step per tick: " + max);
+		_maxSteps = max;
+	}
+
+	/*Forgets accumulated time, i.e. after loading.*/
+	public void reset() {
+		_accumulated = 0;
+		_steps = 0;
+	}
+}
@@ -24,6 +24,8 @@ public class Boulder extends SensorEntity {
 		this.setVisible(true);
 		this.setInteractive(true);
 		this.setStatic(false);
+		//Detects by colliding, not by overlapping an area
+		this.setEventDriven(false);
 	}
 	
 	@Override
@@ -54,6 +54,9 @@ public class GravidogWorld extends GameWorld {
 			_doorRelay.doEnable();
 			LevelMenuScreen.addStar();
 			_door.setShapeColor(_door.getOpenColor());
+			//Door only reports reaching it once, so check if already there
+			if (_door.isDetecting()) 
+				_doorRelay.doActivate();
 		}
 	};
 	//Level win
@@ -2,9 +2,11 @@ package miweinst.gravidog;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.util.ArrayList;
+import java.util.Arrays;
 
-import miweinst.engine.Tuple;
 import miweinst.engine.collisiondetection.SeparatingAxis;
+import miweinst.engine.gfx.Drawable;
 import miweinst.engine.shape.CircleShape;
 import miweinst.engine.world.GameWorld;
 import miweinst.engine.world.PhysicsEntity;
@@ -22,6 +24,13 @@ public class Grenade extends PhysicsEntity {
 	private int _raycastResolution;
 	private float _blastRadius;
 	private float _strength;
+	//Entities in blast, then ray ends and what each hit, for castRays
+	private ArrayList<PhysicsEntity> _inBlast;
+	private float[] _dstX, _dstY;
+	private int[] _hitIndex;
+	private float[] _hitX, _hitY, _hitDist;
+	//Bounds of an Entity in blast, for how far rays need to reach
+	private float[] _bounds;
 	
 	//Shouldn't need world constructor because only instantiated by Player
 /*	public Grenade(GameWorld world) {
@@ -45,12 +54,23 @@ public class Grenade extends PhysicsEntity {
 		_exploded = false;
 		this.setShape(_grenade);
 		this.setDensity(.3f);
+		//Small and thrown hard, would go through walls otherwise
+		this.setBullet(true);
 		//Radius inside which Entities are given impulse
 		_blastRadius = 25;
-		//i.e. 20 times ray vector; multiplyer keeps impulse constant over any # of rays cast
-		_strength = 20;
+		//i.e. 48 times ray vector; multiplyer keeps impulse constant over any # of rays cast.
+		//Was 20 when far Entities were aimed at too, and their rays pushed near ones
+		_strength = 48;
 		//# rays grenade casts on each entity; in case entities overlap
 		_raycastResolution = 10;
+		_inBlast = new ArrayList<PhysicsEntity>();
+		_dstX = new float[0];
+		_dstY = new float[0];
+		_hitIndex = new int[0];
+		_hitX = new float[0];
+		_hitY = new float[0];
+		_hitDist = new float[0];
+		_bounds = new float[4];
 	}
 	
 	/*In case must pass in null Player, set valid reference
@@ -110,20 +130,41 @@ public class Grenade extends PhysicsEntity {
 	/*Casts ray at shapes in all directions to apply impulse to
 	 * Entities within a certain blast radius. Uses Projections on 
 	 * axis normal to ray to calculate direction of impulse to apply.
+	 * Only Entities the blast can reach are aimed at (GameWorld.queryRadius),
+	 * and their rays are cast in one batch (GameWorld.castRays), into
+	 * arrays kept between explosions.
 	 * Player must not be null; but that's OK because Grenade is only ever
 	 * instantiated by a Player, which passes instance of itself.*/
 	public void explode() {
 		_fire = new CircleShape(new Vec2f(this.getLocation().x - _fireRad, this.getLocation().y - _fireRad), _fireRad);
 		_fire.setColor(Color.ORANGE);		
-		//For each entity, raycast multiple times on them in small increments of length
-		for (PhysicsEntity e: _world.getEntitiesToArr()) {
-			Vec2f src = _grenade.getCentroid();
-			Vec2f rayDir = e.getLocation().minus(src).normalized();
+		Vec2f src = _grenade.getCentroid();
+		int count = 0;
+		//Farthest from src any Entity that can be pushed reaches, so no hit that counts is cut off
+		float reach = 0;
+		//For each entity in blast, raycast multiple times on them in small increments of length.
+		//Pushed if within _blastRadius of location, which is a little off src
+		_world.queryRadius(src.x, src.y, _blastRadius + src.dist(this.getLocation()), _inBlast);
+		for (PhysicsEntity e: _inBlast) {
+			if (e == this) 
+				continue;
+			if (!e.isStatic() && this.getLocation().dist(e.getLocation()) < _blastRadius) {
+				e.getShape().getBounds(_bounds);
+				float farX = Math.max(Math.abs(_bounds[0] - src.x), Math.abs(_bounds[2] - src.x));
+				float farY = Math.max(Math.abs(_bounds[1] - src.y), Math.abs(_bounds[3] - src.y));
+				reach = Math.max(reach, (float) Math.sqrt(farX*farX + farY*farY));
+			}
+			Vec2f rayDir = e.getLocation().minus(src);
+			if (rayDir.isZero()) 
+				continue;
+			rayDir = rayDir.normalized();
 			//Axis perpendicular to ray
 			Vec2f axis = new Vec2f(-rayDir.y, rayDir.x).normalized();
 			SeparatingAxis sep = new SeparatingAxis(axis);
 			//Double dispatch projection design
 			Vec2f proj = e.getShape().projectOnto(sep);		
+			if (proj == null) 
+				continue;
 			//Project ray src onto axis
 			Vec2f dstMid = e.getShape().getLocation();
 			float mid = src.dot(axis);
@@ -133,29 +174,48 @@ public class Grenade extends PhysicsEntity {
 			float offB = proj.y - mid;
 			float L = Math.abs(proj.y - proj.x);
 			float inc = L / _raycastResolution;
-			Vec2f[] dsts = new Vec2f[_raycastResolution];
-			for (int i=0; i < dsts.length; i++) {
+			this.ensureRays(count + _raycastResolution);
+			for (int i=0; i < _raycastResolution; i++) {
+				float off;
 				if (i == 0) 
-					dsts[i] = dstMid.plus(axis.smult(offA));
-				else if (i == dsts.length-1) 
-					dsts[i] = dstMid.plus(axis.smult(offB));
-				else {
-					dsts[i] = dsts[i-1].plus(axis.smult(inc));
-				}
+					off = offA;
+				else if (i == _raycastResolution-1) 
+					off = offB;
+				else 
+					off = offA + i*inc;
+				_dstX[count] = dstMid.x + axis.x*off;
+				_dstY[count] = dstMid.y + axis.y*off;
+				count++;
 			}
-			float multiplyer = _strength / _raycastResolution;
-			for (int i=0; i<dsts.length; i++) {
-				Vec2f dst = dsts[i];
-				Tuple<PhysicsEntity, Vec2f> cast = _world.castRay(src, dst, this);
-				if (cast != null) {
-					if (this.getLocation().dist(cast.x.getLocation()) < _blastRadius) {
-						 cast.x.applyImpulse(cast.y.minus(src).smult(multiplyer), cast.y);
-					}
-				}
+		}
+		//Only hits on Entities in blast push anything, and those are all within reach
+		//(plus a unit for rounding), so nearer hits are all that matter
+		_world.castRays(src.x, src.y, _dstX, _dstY, count, reach + 1, this, _hitIndex, _hitX, _hitY, _hitDist);
+		float multiplyer = _strength / _raycastResolution;
+		for (int i=0; i<count; i++) {
+			if (_hitIndex[i] < 0) 
+				continue;
+			PhysicsEntity hit = _world.getEntity(_hitIndex[i]);
+			if (this.getLocation().dist(hit.getLocation()) < _blastRadius) {
+				Vec2f poi = new Vec2f(_hitX[i], _hitY[i]);
+				hit.applyImpulse(poi.minus(src).smult(multiplyer), poi);
 			}
 		}
 	}
 	
+	/*Grows ray arrays to hold at least n rays.*/
+	private void ensureRays(int n) {
+		if (_dstX.length >= n) 
+			return;
+		int capacity = Math.max(n, 2*_dstX.length);
+		_dstX = Arrays.copyOf(_dstX, capacity);
+		_dstY = Arrays.copyOf(_dstY, capacity);
+		_hitIndex = new int[capacity];
+		_hitX = new float[capacity];
+		_hitY = new float[capacity];
+		_hitDist = new float[capacity];
+	}
+	
 	@Override
 	public void draw(Graphics2D g) {
 		super.draw(g);
@@ -164,4 +224,19 @@ public class Grenade extends PhysicsEntity {
 			_fire.draw(g);
 		}
 	}
+	
+	@Override
+	public Drawable snapshot() {
+		if (_fire == null)
+			return super.snapshot();
+		final Drawable grenade = super.snapshot();
+		_fire.setRadius(_fireRad);
+		final Drawable fire = _fire.snapshot();
+		return new Drawable() {
+			public void draw(Graphics2D g) {
+				grenade.draw(g);
+				fire.draw(g);
+			}
+		};
+	}
 }
@@ -40,7 +40,7 @@ public class LevelBounds extends SensorEntity {
 	@Override
 	public void onTick(long nanos) {
 		super.onTick(nanos);
-		if (!condition()) {
+		if (!isDetecting()) {
 			_saved = true;
 		}
 		
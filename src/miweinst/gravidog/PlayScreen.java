@@ -13,6 +13,7 @@ import miweinst.engine.App;
 import miweinst.engine.screen.Viewport;
 import miweinst.engine.shape.AARectShape;
 import miweinst.engine.world.PhysicsEntity;
+import miweinst.engine.world.RenderSnapshot;
 import cs195n.Vec2f;
 import cs195n.Vec2i;
 
@@ -49,7 +50,11 @@ public class PlayScreen extends GravidogScreen {
 
 	@Override
 	public void onTick(long nanosSincePreviousTick) {
-		_gameWorld.onTick(nanosSincePreviousTick);
+		//Threaded world steps itself; only follow the player here
+		if (_gameWorld.isThreaded()) 
+			_gameWorld.startSimulation();
+		else 
+			_gameWorld.onTick(nanosSincePreviousTick);
 		panToPlayer();
 		rotateToPlayer(nanosSincePreviousTick);		
 	}
@@ -67,7 +72,7 @@ public class PlayScreen extends GravidogScreen {
 	}
 
 	@Override
-	public void onKeyPressed(KeyEvent e) {
+	public void onKeyPressed(final KeyEvent e) {
 		if (e.getKeyChar() == 'q') {
 			_gameWorld.quitReset();
 			System.exit(0);
@@ -76,14 +81,20 @@ public class PlayScreen extends GravidogScreen {
 			LevelMenuScreen.levelIncomplete();
 			app.setScreen(new MainMenuScreen(app));
 		}	
-		_gameWorld.onKeyPressed(e);
-
-		
+		_gameWorld.invoke(new Runnable() {
+			public void run() {
+				_gameWorld.onKeyPressed(e);
+			}
+		});
 	}
 
 	@Override
-	public void onKeyReleased(KeyEvent e) {
-		_gameWorld.onKeyReleased(e);	
+	public void onKeyReleased(final KeyEvent e) {
+		_gameWorld.invoke(new Runnable() {
+			public void run() {
+				_gameWorld.onKeyReleased(e);
+			}
+		});
 	}
 
 	@Override
@@ -92,9 +103,13 @@ public class PlayScreen extends GravidogScreen {
 	}
 
 	@Override
-	public void onMousePressed(MouseEvent e) {
+	public void onMousePressed(final MouseEvent e) {
 		if (!e.isAltDown())
-			_gameWorld.onMousePressed(e);		
+			_gameWorld.invoke(new Runnable() {
+				public void run() {
+					_gameWorld.onMousePressed(e);
+				}
+			});
 		_lastMouse = new Vec2f(e.getX(), e.getY());
 	}
 
@@ -104,7 +119,7 @@ public class PlayScreen extends GravidogScreen {
 	}
 
 	@Override
-	public void onMouseDragged(MouseEvent e) {
+	public void onMouseDragged(final MouseEvent e) {
 		if (SwingUtilities.isRightMouseButton(e)) {
 			if (_lastMouse != null) {
 				float dx = _lastMouse.x - e.getX();
@@ -112,13 +127,21 @@ public class PlayScreen extends GravidogScreen {
 				_viewport.panInPixels(new Vec2f(dx, dy));
 			}
 		}
-		_gameWorld.onMouseDragged(e);	
+		_gameWorld.invoke(new Runnable() {
+			public void run() {
+				_gameWorld.onMouseDragged(e);
+			}
+		});
 		_lastMouse = new Vec2f(e.getX(), e.getY());
 	}
 
 	@Override
-	public void onMouseMoved(MouseEvent e) {
-		_gameWorld.onMouseMoved(e);
+	public void onMouseMoved(final MouseEvent e) {
+		_gameWorld.invoke(new Runnable() {
+			public void run() {
+				_gameWorld.onMouseMoved(e);
+			}
+		});
 	}
 
 	@Override
@@ -131,6 +154,11 @@ public class PlayScreen extends GravidogScreen {
 		_viewport.zoom(zoom*_viewport.getScale()); 
 	}
 
+	@Override
+	public void onExit() {
+		_gameWorld.stopSimulation();
+	}
+
 	@Override
 	public void onResize(Vec2i size) {
 		super.onResize(size);
@@ -151,7 +179,12 @@ public class PlayScreen extends GravidogScreen {
 	 * and the center of the screen, then this method moves the viewport 
 	 * such that the player is within this circle*/
 	private void panToPlayer() {
-		Vec2f playerLocOnScreen = _viewport.gamePointToScreen(_gameWorld.getPlayer().getLocation());
+		Vec2f playerLoc = _gameWorld.getPlayer().getLocation();
+		//Follow where the player was drawn, not where the other thread has it now
+		RenderSnapshot snapshot = _gameWorld.getSnapshot();
+		if (snapshot != null && snapshot.getLocation(_gameWorld.getPlayer()) != null) 
+			playerLoc = snapshot.getLocation(_gameWorld.getPlayer());
+		Vec2f playerLocOnScreen = _viewport.gamePointToScreen(playerLoc);
 		Vec2f playerOffsetFromCenter = playerLocOnScreen.minus(_viewport.getCenterOfScreen());
 		if(!playerOffsetFromCenter.isZero()) {
 			Vec2f offsetNorm = playerOffsetFromCenter.normalized();
@@ -165,7 +198,8 @@ public class PlayScreen extends GravidogScreen {
 
 	private void rotateToPlayer(long nanosSincePreviousTick) {
 		//set the goal angle (the player's current orientation)
-		Vec2f dir = PhysicsEntity.GRAVITY.normalized();
+		RenderSnapshot snapshot = _gameWorld.getSnapshot();
+		Vec2f dir = (snapshot != null ? snapshot.getGravity() : PhysicsEntity.GRAVITY).normalized();
 		float goalTheta = 0f;
 		if(dir.x != 0f) {
 			goalTheta = (float) Math.atan(dir.y/dir.x); //offset from positive x axis
@@ -10,6 +10,7 @@ import java.util.Map;
 
 import miweinst.engine.collisiondetection.PhysicsCollisionInfo;
 import miweinst.engine.entityIO.Input;
+import miweinst.engine.gfx.Drawable;
 import miweinst.engine.shape.CircleShape;
 import miweinst.engine.shape.Shape;
 import miweinst.engine.world.GameWorld;
@@ -119,6 +120,10 @@ public class Player extends PhysicsEntity {
 		
 		
 		this.setStatic(false);		
+		//Friction and jumping need collision info every tick
+		this.setSleepingAllowed(false);
+		//Jumps and falls are fast enough to go through thin walls
+		this.setBullet(true);
 		_gravitySwitched = false;
 		_secondsSinceFirstFrame = 0f;
 		
@@ -243,6 +248,12 @@ public class Player extends PhysicsEntity {
 
 	@Override
 	public void draw(Graphics2D g) {
+		this.snapshot().draw(g);
+	}
+
+	/*Frame of current animation, placed where Player is now.*/
+	@Override
+	public Drawable snapshot() {
 		
 		BufferedImage[] walking = GravidogResources.getValue("walking");
 		BufferedImage[] running = GravidogResources.getValue("running");
@@ -268,9 +279,9 @@ public class Player extends PhysicsEntity {
 		}
 		
 		int i = (int)((_secondsSinceFirstFrame/SPRITE_CYCLE_PERIOD)*currentImageSequence.length);
-		BufferedImage currentImage = currentImageSequence[i];
+		final BufferedImage currentImage = currentImageSequence[i];
 		
-		AffineTransform at = new AffineTransform();
+		final AffineTransform at = new AffineTransform();
 		float playerWidth = 2*((CircleShape)getShape()).getRadius();
 		float scale = playerWidth/currentImage.getWidth();
 		scale*= 1.5f; //make the image a little larger to accommodate image margins
@@ -294,9 +305,11 @@ public class Player extends PhysicsEntity {
 		at.scale(dir, 1f);
 		at.translate(-125, -65); //pixel offset to center the image
 		
-		
-		g.drawImage(currentImage, at, null);
-		
+		return new Drawable() {
+			public void draw(Graphics2D g) {
+				g.drawImage(currentImage, at, null);
+			}
+		};
 	}
 
 	@Override
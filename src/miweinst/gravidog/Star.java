@@ -6,6 +6,7 @@ import java.util.Map;
 
 import miweinst.engine.entityIO.Connection;
 import miweinst.engine.entityIO.Input;
+import miweinst.engine.gfx.Drawable;
 import miweinst.engine.gfx.sprite.Sprite;
 import miweinst.engine.world.GameWorld;
 import miweinst.engine.world.SensorEntity;
@@ -83,4 +84,12 @@ public class Star extends SensorEntity {
 		loc = new Vec2f(loc.x - dim.x/2, loc.y - dim.y/2);
 		_sprite.draw(g, getShape().getLocation().minus(getDimensions().sdiv(2)), getShape().getWidth());
 	}
+	
+	/*Sprite where Star is now; nothing once collected.*/
+	@Override
+	public Drawable snapshot() {
+		if (!_sprite.isVisible())
+			return NOTHING;
+		return _sprite.snapshot(getShape().getLocation().minus(getDimensions().sdiv(2)), getShape().getWidth());
+	}
 }